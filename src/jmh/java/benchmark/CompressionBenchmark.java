@@ -0,0 +1,184 @@
+package benchmark;
+
+import com.rag.service.service.PayloadCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares plain TEXT storage of message content against zstd BYTEA (with and without a trained dictionary),
+ * and pglz against lz4 for JSONB conversations, reporting table size and write/read latency. Runs against a
+ * scratch database and is not part of the test suite:
+ * <pre>
+ * mvn -q -Pbenchmarks test-compile exec:java -Dexec.mainClass=benchmark.CompressionBenchmark
+ * </pre>
+ * Connection settings come from BENCH_DB_URL, BENCH_DB_USER and BENCH_DB_PASSWORD. Samples are read from
+ * chat_messages when BENCH_SAMPLE_FROM_DB=true, otherwise synthetic RAG-style answers are generated. Set
+ * BENCH_DICTIONARY_OUT to save the trained dictionary for use as chat.compression.active-dictionary.
+ */
+public class CompressionBenchmark {
+    private static final int ROWS = Integer.parseInt(env("BENCH_ROWS", "20000"));
+    private static final int DICTIONARY_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        try (Connection connection = DriverManager.getConnection(env("BENCH_DB_URL", "jdbc:postgresql://localhost:5432/ragchat"),
+                env("BENCH_DB_USER", "postgres"), env("BENCH_DB_PASSWORD", "admin"))) {
+            List<String> samples = Boolean.parseBoolean(env("BENCH_SAMPLE_FROM_DB", "false")) ?
+                    sampleMessages(connection) : syntheticMessages();
+            long plainBytes = samples.stream().mapToLong(s -> s.getBytes(StandardCharsets.UTF_8).length).sum();
+            System.out.printf("%d samples, %.1f MB of raw text%n", samples.size(), plainBytes / 1e6);
+
+            List<byte[]> training = samples.stream().limit(5000).map(s -> s.getBytes(StandardCharsets.UTF_8)).toList();
+            Path dictionaryDir = Files.createTempDirectory("zstd-dict");
+            byte[] dictionary = PayloadCodec.trainDictionary(training, DICTIONARY_SIZE);
+            Files.write(dictionaryDir.resolve("bench" + PayloadCodec.DICTIONARY_SUFFIX), dictionary);
+            if (System.getenv("BENCH_DICTIONARY_OUT") != null) {
+                Files.write(Path.of(System.getenv("BENCH_DICTIONARY_OUT")), dictionary);
+            }
+
+            System.out.printf("%-22s %12s %12s %12s%n", "layout", "table bytes", "write ms", "read ms");
+            benchmarkText(connection, samples, "text", null);
+            benchmarkText(connection, samples, "zstd", new PayloadCodec(true, 0, 3, "", ""));
+            benchmarkText(connection, samples, "zstd + dictionary",
+                    new PayloadCodec(true, 0, 3, dictionaryDir.toString(), "bench" + PayloadCodec.DICTIONARY_SUFFIX));
+            benchmarkJsonb(connection, samples, "pglz");
+            benchmarkJsonb(connection, samples, "lz4");
+        }
+    }
+
+    private static void benchmarkText(Connection connection, List<String> samples, String label, PayloadCodec codec)
+            throws SQLException {
+        execute(connection, "DROP TABLE IF EXISTS bench_payload");
+        execute(connection, "CREATE UNLOGGED TABLE bench_payload (id INT PRIMARY KEY, content TEXT NOT NULL, content_zstd BYTEA)");
+
+        long writeStart = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bench_payload VALUES (?, ?, ?)")) {
+            for (int i = 0; i < samples.size(); i++) {
+                byte[] compressed = codec != null ? codec.compress(samples.get(i)) : null;
+                insert.setInt(1, i);
+                insert.setString(2, compressed != null ? "" : samples.get(i));
+                insert.setBytes(3, compressed);
+                insert.addBatch();
+                if (i % 500 == 499) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        long writeNanos = System.nanoTime() - writeStart;
+
+        long readStart = System.nanoTime();
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery("SELECT content, content_zstd FROM bench_payload")) {
+            while (rs.next()) {
+                byte[] compressed = rs.getBytes(2);
+                String content = compressed != null ? codec.decompress(compressed) : rs.getString(1);
+            }
+        }
+        long readNanos = System.nanoTime() - readStart;
+        report(connection, label, writeNanos, readNanos);
+    }
+
+    private static void benchmarkJsonb(Connection connection, List<String> samples, String compression) throws SQLException {
+        execute(connection, "DROP TABLE IF EXISTS bench_payload");
+        try {
+            execute(connection, "CREATE UNLOGGED TABLE bench_payload (id INT PRIMARY KEY, conversation JSONB COMPRESSION " +
+                    compression + " NOT NULL)");
+        } catch (SQLException e) {
+            System.out.printf("%-22s %s%n", "jsonb " + compression, e.getMessage());
+            return;
+        }
+
+        long writeStart = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_payload VALUES (?, cast(? AS jsonb))")) {
+            // a conversation of 20 messages per row, the shape session_chat stores
+            for (int i = 0, row = 0; i < samples.size(); i += 20, row++) {
+                StringBuilder conversation = new StringBuilder("[");
+                for (int j = i; j < Math.min(i + 20, samples.size()); j++) {
+                    conversation.append(j > i ? "," : "").append("{\"sender\":\"assistant\",\"content\":\"")
+                            .append(samples.get(j).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                            .append("\"}");
+                }
+                insert.setInt(1, row);
+                insert.setString(2, conversation.append(']').toString());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        long writeNanos = System.nanoTime() - writeStart;
+
+        long readStart = System.nanoTime();
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery("SELECT cast(conversation AS text) FROM bench_payload")) {
+            while (rs.next()) {
+                rs.getString(1);
+            }
+        }
+        report(connection, "jsonb " + compression, writeNanos, System.nanoTime() - readStart);
+    }
+
+    private static void report(Connection connection, String label, long writeNanos, long readNanos) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_total_relation_size('bench_payload')")) {
+            rs.next();
+            System.out.printf("%-22s %12d %12d %12d%n", label, rs.getLong(1), writeNanos / 1_000_000, readNanos / 1_000_000);
+        }
+        execute(connection, "DROP TABLE bench_payload");
+    }
+
+    private static List<String> sampleMessages(Connection connection) throws SQLException {
+        List<String> samples = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT content FROM chat_messages WHERE content_zstd IS NULL AND content <> '' ORDER BY random() LIMIT ?")) {
+            select.setInt(1, ROWS);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    samples.add(rs.getString(1));
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static List<String> syntheticMessages() {
+        String[] topics = {"refund policy", "vacuum tuning", "index bloat", "replication lag", "connection pooling",
+                "rate limiting", "TLS certificates", "backup retention"};
+        Random random = new Random(42);
+        List<String> samples = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            StringBuilder answer = new StringBuilder("Based on the retrieved documents, here is what I found about ");
+            answer.append(topics[random.nextInt(topics.length)]).append(".\n\n");
+            int passages = 2 + random.nextInt(6);
+            for (int p = 0; p < passages; p++) {
+                answer.append("According to [doc-").append(random.nextInt(500)).append("], the recommended setting for ")
+                        .append(topics[random.nextInt(topics.length)]).append(" depends on workload; values between ")
+                        .append(random.nextInt(100)).append(" and ").append(100 + random.nextInt(900))
+                        .append(" are typical, and changes should be validated in staging first.\n\n");
+            }
+            samples.add(answer.append("Let me know if you need more detail.").toString());
+        }
+        return samples;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
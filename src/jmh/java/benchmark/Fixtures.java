@@ -0,0 +1,98 @@
+package benchmark;
+
+import com.rag.service.dto.Message;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.mapper.ChatMessageMapper;
+import com.rag.service.mapper.ChatMessageMapperImpl;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.PayloadCodec;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Seeded, production-sized payloads: questions of a few hundred characters, answers of one to three KB (compressed
+ * above chat.compression.min-bytes, as stored) and retrieved contexts of a few KB.
+ */
+final class Fixtures {
+    private static final String[] WORDS = {"the", "index", "retrieval", "embedding", "vector", "document", "chunk",
+            "query", "answer", "policy", "customer", "invoice", "shipment", "contract", "clause", "section", "model",
+            "latency", "database", "session", "response", "context", "relevant", "according", "to", "and", "of", "in"};
+
+    private Fixtures() {
+    }
+
+    static PayloadCodec payloadCodec() {
+        return new PayloadCodec(true, 1024, 3, "", "");
+    }
+
+    // wired as Spring wires the generated mapper; without chunk hashes contexts never reach the database
+    static ChatMessageMapper chatMessageMapper(PayloadCodec payloadCodec) {
+        ChatMessageMapperImpl mapper = new ChatMessageMapperImpl();
+        ReflectionTestUtils.setField(mapper, "payloadCodec", payloadCodec);
+        ReflectionTestUtils.setField(mapper, "contextChunkStore", new ContextChunkStore(new JdbcTemplate(), payloadCodec, 10000));
+        return mapper;
+    }
+
+    static ChatSession session(Random random) {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 14, 9, 30, 12, 123_456_000);
+        return ChatSession.builder()
+                .id(new UUID(random.nextLong(), random.nextLong()))
+                .name(text(random, 40))
+                .favorite(random.nextBoolean())
+                .createdAt(createdAt)
+                .updatedAt(createdAt.plusMinutes(random.nextInt(600)))
+                .messageCount(random.nextInt(200))
+                .lastMessageAt(createdAt.plusMinutes(random.nextInt(600)))
+                .lastMessagePreview(text(random, 160))
+                .user(User.builder().id(new UUID(random.nextLong(), random.nextLong())).build())
+                .build();
+    }
+
+    static List<ChatMessage> messages(Random random, ChatSession session, int count, PayloadCodec payloadCodec) {
+        List<ChatMessage> messages = new ArrayList<>(count);
+        LocalDateTime createdAt = session.getCreatedAt();
+        for (int i = 0; i < count; i++) {
+            boolean user = i % 2 == 0;
+            createdAt = createdAt.plusSeconds(5 + random.nextInt(120)).plusNanos(random.nextInt(1_000_000) * 1000L);
+            messages.add(ChatMessage.builder()
+                    .id(new UUID(random.nextLong(), random.nextLong()))
+                    .session(session)
+                    .sender(user ? "user" : "assistant")
+                    .content(user ? text(random, 80 + random.nextInt(400)) : text(random, 1000 + random.nextInt(2000)))
+                    .retrievedContext(user ? null : text(random, 2000 + random.nextInt(4000)))
+                    .createdAt(createdAt)
+                    .build());
+        }
+        payloadCodec.compressAll(messages);
+        return messages;
+    }
+
+    static List<Message> conversation(Random random, int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean user = i % 2 == 0;
+            messages.add(Message.builder()
+                    .sender(user ? "user" : "assistant")
+                    .messageContent(user ? text(random, 80 + random.nextInt(400)) : text(random, 1000 + random.nextInt(2000)))
+                    .time(LocalDateTime.of(2024, 5, 14, 9, 30).plusMinutes(i).toString())
+                    .build());
+        }
+        return messages;
+    }
+
+    static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.substring(0, length);
+    }
+}
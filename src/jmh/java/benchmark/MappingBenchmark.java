@@ -0,0 +1,71 @@
+package benchmark;
+
+import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.mapper.ChatMessageMapper;
+import com.rag.service.mapper.ChatSessionMapper;
+import com.rag.service.mapper.ChatSessionMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping of a message page and a session, as done on every list request. Message content above the
+ * compression threshold is decompressed by the mapper, so that cost is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+    @Param({"20", "100"})
+    int pageSize;
+
+    private ChatMessageMapper chatMessageMapper;
+    private ChatSessionMapper chatSessionMapper;
+    private ChatSession session;
+    private List<ChatMessage> messages;
+    private LocalDateTime createdAt;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        chatMessageMapper = Fixtures.chatMessageMapper(Fixtures.payloadCodec());
+        chatSessionMapper = new ChatSessionMapperImpl();
+        session = Fixtures.session(random);
+        messages = Fixtures.messages(random, session, pageSize, Fixtures.payloadCodec());
+        createdAt = messages.get(0).getCreatedAt();
+    }
+
+    @Benchmark
+    public List<MessageResponseDto> messagePage() {
+        return chatMessageMapper.toMessageResponseDtoList(messages);
+    }
+
+    @Benchmark
+    public String localDateTimeToString() {
+        return chatMessageMapper.localDateTimeToString(createdAt);
+    }
+
+    @Benchmark
+    public ChatSessionResponse session() {
+        return chatSessionMapper.toChatSessionResponse(session);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmark;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done on every request before it reaches the database: parsing the ids in the path and taking a token from
+ * the rate limit bucket. Requests share one bucket per API key, so the bucket is measured with one thread and with
+ * eight threads competing for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestGateBenchmark {
+    private String id;
+    private Bucket bucket;
+
+    @Setup
+    public void setUp() {
+        id = UUID.randomUUID().toString();
+        // as ApiKeyAuthFilter builds it, with a limit a run cannot exhaust (bucket4j refills at most a token per ns)
+        long rateLimit = 10_000_000_000L;
+        bucket = Bucket.builder()
+                .addLimit(Bandwidth.classic(rateLimit, Refill.greedy(rateLimit, Duration.ofMinutes(1))))
+                .build();
+    }
+
+    @Benchmark
+    public UUID parseUuid() {
+        return UUID.fromString(id);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean tryConsume() {
+        return bucket.tryConsume(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean tryConsumeContended() {
+        return bucket.tryConsume(1);
+    }
+}
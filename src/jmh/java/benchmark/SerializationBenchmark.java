@@ -0,0 +1,68 @@
+package benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.dto.Message;
+import com.rag.service.dto.PageableResponse;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.mapper.ChatMessageMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the message page body and of a session-chat conversation, with the ObjectMapper
+ * configured as Spring Boot configures it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"20", "100"})
+    int pageSize;
+
+    private ObjectMapper objectMapper;
+    private PageableResponse messagePage;
+    private List<Message> conversation;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ChatMessageMapper chatMessageMapper = Fixtures.chatMessageMapper(Fixtures.payloadCodec());
+        ChatSession session = Fixtures.session(random);
+        messagePage = PageableResponse.builder()
+                .data(chatMessageMapper.toChatMessageResponse(session, chatMessageMapper.toMessageResponseDtoList(
+                        Fixtures.messages(random, session, pageSize, Fixtures.payloadCodec()))))
+                .totalElements(pageSize * 7L)
+                .totalPages(7)
+                .build();
+        conversation = Fixtures.conversation(random, pageSize);
+    }
+
+    @Benchmark
+    public byte[] messagePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(messagePage);
+    }
+
+    @Benchmark
+    public byte[] conversation() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(conversation);
+    }
+}
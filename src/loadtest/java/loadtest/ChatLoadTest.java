@@ -0,0 +1,138 @@
+package loadtest;
+
+import com.rag.service.ServiceApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the whole application against an embedded PostgreSQL 15 (the changelog is applied on startup) and drives
+ * mixed closed-loop traffic through the HTTP API, reporting throughput and p50/p99/p999 latency per operation:
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec
+ * BENCH_SCENARIOS=relational BENCH_POOL_SIZES=5,10,20,40 BENCH_CONCURRENCY=200 mvn -Ploadtest test-compile exec:exec
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--session-chat.storage.segmented=true"
+ * </pre>
+ * The application is restarted for every size in BENCH_POOL_SIZES (the Hikari maximum pool size) and runs each of
+ * BENCH_SCENARIOS in turn: {@code relational} goes through /api/chat, {@code jsonb} through /api/session-chat. Each of
+ * BENCH_CONCURRENCY clients runs its scenario back to back for BENCH_DURATION_SECONDS after BENCH_WARMUP_SECONDS;
+ * appends come in bursts of BENCH_BURST messages. Arguments are passed on to the application, so any property can be
+ * overridden. Set BENCH_HISTOGRAM_DIR to also write the full latency distributions as .hgrm files.
+ * <p>
+ * Clients wait for each response before sending the next request, so latency under overload is understated;
+ * compare runs at the same concurrency.
+ */
+public class ChatLoadTest {
+    static final String API_KEY = "dummy-api-key1";
+    private static final int CONCURRENCY = Integer.parseInt(env("BENCH_CONCURRENCY", "64"));
+    private static final int DURATION_SECONDS = Integer.parseInt(env("BENCH_DURATION_SECONDS", "60"));
+    private static final int WARMUP_SECONDS = Integer.parseInt(env("BENCH_WARMUP_SECONDS", "10"));
+    private static final int BURST = Integer.parseInt(env("BENCH_BURST", "5"));
+    private static final List<String> SCENARIOS = Arrays.asList(env("BENCH_SCENARIOS", "relational,jsonb").split(","));
+    private static final int[] POOL_SIZES = Arrays.stream(env("BENCH_POOL_SIZES", "10").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+    private static final String HISTOGRAM_DIR = env("BENCH_HISTOGRAM_DIR", "");
+
+    public static void main(String[] args) throws Exception {
+        Path dataDir = Files.createTempDirectory("ragchat-loadtest");
+        int maxConnections = Arrays.stream(POOL_SIZES).max().orElse(10) + 50;
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder()
+                .setServerConfig("max_connections", String.valueOf(maxConnections))
+                .start()) {
+            String jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            System.out.printf("%d clients, bursts of %d, %d s per scenario%n", CONCURRENCY, BURST, DURATION_SECONDS);
+            for (int poolSize : POOL_SIZES) {
+                try (ConfigurableApplicationContext context = start(jdbcUrl, poolSize, dataDir, args)) {
+                    if (!jdbcUrl.equals(context.getEnvironment().getProperty("spring.datasource.url"))) {
+                        throw new IllegalStateException("Refusing to load a database other than the embedded one");
+                    }
+                    int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                    String baseUrl = "http://localhost:" + port + "/ragchat";
+                    for (String name : SCENARIOS) {
+                        Scenario scenario = Scenario.named(name, http, baseUrl, BURST);
+                        List<Scenario.Client> clients = new ArrayList<>(CONCURRENCY);
+                        for (int i = 0; i < CONCURRENCY; i++) {
+                            clients.add(scenario.newClient(i));
+                        }
+                        run(clients, Duration.ofSeconds(WARMUP_SECONDS), new LatencyReport());
+                        LatencyReport report = new LatencyReport();
+                        run(clients, Duration.ofSeconds(DURATION_SECONDS), report);
+                        String label = name + ", pool " + poolSize;
+                        report.print(label, DURATION_SECONDS);
+                        if (!HISTOGRAM_DIR.isEmpty()) {
+                            report.write(Path.of(HISTOGRAM_DIR), name + "-pool" + poolSize);
+                        }
+                    }
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext start(String jdbcUrl, int poolSize, Path dataDir, String[] args) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.rag.service", "WARN");
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.username", "postgres");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.hikari.maximum-pool-size", poolSize);
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.jpa.properties.hibernate.format_sql", false);
+        // far above what the clients can send, so no request is rejected
+        properties.put("rate.limit.capacity", 1_000_000_000);
+        properties.put("chat.search.index-dir", dataDir.resolve("search-index").toString());
+        properties.put("chat.archive.dir", dataDir.resolve("archive").toString());
+        // above application.properties, which points at the development database; arguments still take precedence
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("loadtest", properties));
+        return new SpringApplicationBuilder(ServiceApplication.class)
+                .environment(environment)
+                .run(args);
+    }
+
+    private static void run(List<Scenario.Client> clients, Duration duration, LatencyReport report)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(clients.size());
+        for (Scenario.Client client : clients) {
+            executor.execute(() -> {
+                LatencyReport.Recorder recorder = report.newRecorder();
+                while (System.nanoTime() < deadline) {
+                    client.step(recorder);
+                }
+                report.add(recorder);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.toSeconds() + 120, TimeUnit.SECONDS);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,86 @@
+package loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms per operation, in microseconds up to a minute. Each client records into its own
+ * {@link Recorder}, which is merged in when the client finishes.
+ */
+class LatencyReport {
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final String TOTAL = "total";
+
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+    private final Map<String, Long> errors = new TreeMap<>();
+
+    Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    synchronized void add(Recorder recorder) {
+        recorder.histograms.forEach((operation, histogram) -> {
+            histograms.computeIfAbsent(operation, key -> newHistogram()).add(histogram);
+            histograms.computeIfAbsent(TOTAL, key -> newHistogram()).add(histogram);
+        });
+        recorder.errors.forEach((operation, count) -> {
+            errors.merge(operation, count, Long::sum);
+            errors.merge(TOTAL, count, Long::sum);
+        });
+    }
+
+    synchronized void print(String label, int durationSeconds) {
+        System.out.printf("%n%s%n", label);
+        System.out.printf("%-16s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        histograms.forEach((operation, histogram) -> System.out.printf("%-16s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, histogram.getTotalCount(), errors.getOrDefault(operation, 0L),
+                (double) histogram.getTotalCount() / durationSeconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue())));
+    }
+
+    // percentile distributions in milliseconds, as read by the HdrHistogram plotter
+    synchronized void write(Path dir, String prefix) {
+        try {
+            Files.createDirectories(dir);
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                Path file = dir.resolve(prefix + "-" + entry.getKey().replace(' ', '-') + ".hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                    entry.getValue().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_MICROS, 3);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    static final class Recorder {
+        private final Map<String, Histogram> histograms = new TreeMap<>();
+        private final Map<String, Long> errors = new TreeMap<>();
+
+        void record(String operation, long startNanos, boolean success) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            histograms.computeIfAbsent(operation, key -> newHistogram()).recordValue(Math.min(micros, HIGHEST_MICROS));
+            if (!success) {
+                errors.merge(operation, 1L, Long::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load against one or more running instances, reporting throughput and latency percentiles per
+ * instance, e.g. to compare the platform-thread model with chat.virtual-threads.enabled=true (Java 21):
+ * <pre>
+ * java -jar target/service-0.0.1-SNAPSHOT.jar --server.port=8082 --rate.limit.capacity=100000000
+ * java -jar target/service-0.0.1-SNAPSHOT.jar --server.port=8083 --rate.limit.capacity=100000000 --chat.virtual-threads.enabled=true
+ * BENCH_TARGETS=platform=http://localhost:8082/ragchat,virtual=http://localhost:8083/ragchat BENCH_USER_ID=... BENCH_SESSION_ID=... \
+ *   mvn -q -Ploadtest test-compile exec:java -Dexec.mainClass=loadtest.RequestLoadBenchmark
+ * </pre>
+ * BENCH_CONCURRENCY clients (default 1000) each send requests back to back for BENCH_DURATION_SECONDS after a
+ * BENCH_WARMUP_SECONDS warmup; BENCH_WRITE_PERCENT of them add a message to the session, the rest read its latest
+ * page. The session should belong to BENCH_USER_ID and already hold a few pages of messages.
+ */
+public class RequestLoadBenchmark {
+    private static final int CONCURRENCY = Integer.parseInt(env("BENCH_CONCURRENCY", "1000"));
+    private static final int DURATION_SECONDS = Integer.parseInt(env("BENCH_DURATION_SECONDS", "30"));
+    private static final int WARMUP_SECONDS = Integer.parseInt(env("BENCH_WARMUP_SECONDS", "5"));
+    private static final int WRITE_PERCENT = Integer.parseInt(env("BENCH_WRITE_PERCENT", "15"));
+    private static final String API_KEY = env("BENCH_API_KEY", "dummy-api-key1");
+    private static final String USER_ID = env("BENCH_USER_ID", "");
+    private static final String SESSION_ID = env("BENCH_SESSION_ID", "");
+
+    public static void main(String[] args) throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors())))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        System.out.printf("%d clients, %d%% writes, %d s per target%n", CONCURRENCY, WRITE_PERCENT, DURATION_SECONDS);
+        System.out.printf("%-12s %10s %8s %10s %9s %9s %9s %9s%n",
+                "target", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (String target : env("BENCH_TARGETS", "default=http://localhost:8082/ragchat").split(",")) {
+            String[] labelAndUrl = target.split("=", 2);
+            run(client, labelAndUrl[1], Duration.ofSeconds(WARMUP_SECONDS), null);
+            Result result = new Result();
+            run(client, labelAndUrl[1], Duration.ofSeconds(DURATION_SECONDS), result);
+            result.report(labelAndUrl[0], DURATION_SECONDS);
+        }
+        System.exit(0);
+    }
+
+    private static void run(HttpClient client, String baseUrl, Duration duration, Result result)
+            throws InterruptedException {
+        HttpRequest read = HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat/sessions/" + SESSION_ID +
+                        "/messages?page=0&size=20"))
+                .header("X-API-Key", API_KEY)
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clients.execute(() -> {
+                List<Long> latencies = new ArrayList<>();
+                long errors = 0;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = ThreadLocalRandom.current().nextInt(100) < WRITE_PERCENT ?
+                            write(baseUrl) : read;
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() >= 300) {
+                            errors++;
+                        }
+                    } catch (Exception e) {
+                        errors++;
+                    }
+                    latencies.add(System.nanoTime() - start);
+                }
+                if (result != null) {
+                    result.add(latencies, errors);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(duration.toSeconds() + 120, TimeUnit.SECONDS);
+    }
+
+    private static HttpRequest write(String baseUrl) {
+        String body = "{\"userId\":\"" + USER_ID + "\",\"sender\":\"USER\",\"content\":\"load test message "
+                + System.nanoTime() + "\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/chat/sessions/" + SESSION_ID + "/messages"))
+                .header("X-API-Key", API_KEY)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static final class Result {
+        private final List<Long> latencies = new ArrayList<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void add(List<Long> clientLatencies, long clientErrors) {
+            latencies.addAll(clientLatencies);
+            errors.addAndGet(clientErrors);
+        }
+
+        synchronized void report(String label, int seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            System.out.printf("%-12s %10d %8d %10.0f %9.1f %9.1f %9.1f %9.1f%n", label, sorted.length, errors.get(),
+                    sorted.length / (double) seconds, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 99), sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
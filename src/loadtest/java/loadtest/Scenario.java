@@ -0,0 +1,213 @@
+package loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A mix of operations run by each client. Message bodies are generated up front with production-like sizes:
+ * questions of a few hundred characters, answers of one to three KB with a few KB of retrieved context.
+ */
+abstract class Scenario {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int BODIES = 256;
+    private static final int PAGE_SIZE = 20;
+    private static final String[] WORDS = {"the", "index", "retrieval", "embedding", "vector", "document", "chunk",
+            "query", "answer", "policy", "customer", "invoice", "shipment", "contract", "clause", "section", "model",
+            "latency", "database", "session", "response", "context", "relevant", "according", "to", "and", "of", "in"};
+
+    protected final HttpClient http;
+    protected final String baseUrl;
+    protected final int burst;
+    // message fields without the userId, which each client prepends
+    private final List<String> messageFields = new ArrayList<>(BODIES);
+
+    protected Scenario(HttpClient http, String baseUrl, int burst) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.burst = burst;
+        Random random = new Random(42);
+        for (int i = 0; i < BODIES; i++) {
+            boolean user = i % 2 == 0;
+            ObjectNode message = OBJECT_MAPPER.createObjectNode()
+                    .put("sender", user ? "user" : "assistant")
+                    .put("content", user ? text(random, 80 + random.nextInt(400)) : text(random, 1000 + random.nextInt(2000)));
+            if (!user) {
+                message.put("context", text(random, 2000 + random.nextInt(4000)));
+            }
+            messageFields.add(message.toString().substring(1));
+        }
+    }
+
+    static Scenario named(String name, HttpClient http, String baseUrl, int burst) {
+        return switch (name) {
+            case "relational" -> new Relational(http, baseUrl, burst);
+            case "jsonb" -> new SessionChat(http, baseUrl, burst);
+            default -> throw new IllegalArgumentException("Unknown scenario " + name + ", expected relational or jsonb");
+        };
+    }
+
+    abstract Client newClient(int index);
+
+    interface Client {
+        void step(LatencyReport.Recorder recorder);
+    }
+
+    protected String messageBody(Random random, int sequence, String userId) {
+        return "{\"userId\":\"" + userId + "\"," + messageFields.get(sequence % 2 + 2 * random.nextInt(BODIES / 2));
+    }
+
+    protected HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("X-API-Key", ChatLoadTest.API_KEY)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    /**
+     * Sends and records the request; returns null when it failed.
+     */
+    protected HttpResponse<byte[]> send(LatencyReport.Recorder recorder, String operation, HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            boolean success = response.statusCode() < 300;
+            recorder.record(operation, start, success);
+            return success ? response : null;
+        } catch (IOException e) {
+            recorder.record(operation, start, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recorder.record(operation, start, false);
+            return null;
+        }
+    }
+
+    protected static String id(HttpResponse<byte[]> response) {
+        try {
+            JsonNode body = OBJECT_MAPPER.readTree(response.body());
+            return body.path("id").asText();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.substring(0, length);
+    }
+
+    /**
+     * Sessions and messages in PostgreSQL tables through /api/chat: each client owns a user and up to
+     * {@link #MAX_SESSIONS} sessions, which it creates, appends to, pages through, lists and deletes.
+     */
+    static final class Relational extends Scenario {
+        private static final int MAX_SESSIONS = 20;
+
+        Relational(HttpClient http, String baseUrl, int burst) {
+            super(http, baseUrl, burst);
+        }
+
+        @Override
+        Client newClient(int index) {
+            String user = "{\"name\":\"load " + index + "\",\"email\":\"load-" + UUID.randomUUID() + "@example.com\"}";
+            HttpResponse<byte[]> response = send(new LatencyReport().newRecorder(), "setup",
+                    request("/api/users").POST(HttpRequest.BodyPublishers.ofString(user)).build());
+            if (response == null) {
+                throw new IllegalStateException("Could not create the user of client " + index);
+            }
+            String userId = id(response);
+            Random random = new Random(index);
+            Deque<String> sessions = new ArrayDeque<>();
+            int[] sequence = {0};
+            return recorder -> {
+                int roll = random.nextInt(100);
+                if (sessions.isEmpty() || roll < 5 && sessions.size() < MAX_SESSIONS) {
+                    String body = "{\"name\":\"load " + UUID.randomUUID() + "\",\"userId\":\"" + userId + "\"}";
+                    HttpResponse<byte[]> created = send(recorder, "create session",
+                            request("/api/chat/sessions").POST(HttpRequest.BodyPublishers.ofString(body)).build());
+                    if (created != null) {
+                        sessions.addLast(id(created));
+                    }
+                } else if (roll < 35) {
+                    String sessionId = pick(random, sessions);
+                    for (int i = 0; i < burst; i++) {
+                        send(recorder, "append", request("/api/chat/sessions/" + sessionId + "/messages")
+                                .POST(HttpRequest.BodyPublishers.ofString(messageBody(random, sequence[0]++, userId))).build());
+                    }
+                } else if (roll < 80) {
+                    send(recorder, "read page", request("/api/chat/sessions/" + pick(random, sessions) +
+                            "/messages?page=" + random.nextInt(3) + "&size=" + PAGE_SIZE).GET().build());
+                } else if (roll < 95 || sessions.size() < 2) {
+                    send(recorder, "list sessions", request("/api/chat/sessions?userId=" + userId +
+                            "&page=0&size=" + PAGE_SIZE).GET().build());
+                } else {
+                    send(recorder, "delete session", request("/api/chat/sessions/" + sessions.pollFirst() +
+                            "?userId=" + userId).DELETE().build());
+                }
+            };
+        }
+
+        private static String pick(Random random, Deque<String> sessions) {
+            int skip = random.nextInt(sessions.size());
+            return sessions.stream().skip(skip).findFirst().orElseThrow();
+        }
+    }
+
+    /**
+     * Conversations stored as JSONB documents through /api/session-chat: each client appends to and pages through
+     * its own conversations, starting a new one now and then. The API has no delete.
+     */
+    static final class SessionChat extends Scenario {
+        SessionChat(HttpClient http, String baseUrl, int burst) {
+            super(http, baseUrl, burst);
+        }
+
+        @Override
+        Client newClient(int index) {
+            String userId = UUID.randomUUID().toString();
+            Random random = new Random(index);
+            List<String> sessions = new ArrayList<>();
+            int[] sequence = {0};
+            return recorder -> {
+                int roll = random.nextInt(100);
+                String sessionId;
+                if (sessions.isEmpty() || roll < 5) {
+                    // created by its first message
+                    sessionId = "load-" + UUID.randomUUID();
+                    sessions.add(sessionId);
+                    roll = 5;
+                } else {
+                    sessionId = sessions.get(random.nextInt(sessions.size()));
+                }
+                if (roll < 45) {
+                    for (int i = 0; i < burst; i++) {
+                        send(recorder, "append", request("/api/session-chat/" + sessionId + "/add-message")
+                                .POST(HttpRequest.BodyPublishers.ofString(messageBody(random, sequence[0]++, userId))).build());
+                    }
+                } else {
+                    send(recorder, "read page", request("/api/session-chat/" + sessionId + "/messages?page=" +
+                            random.nextInt(3) + "&size=" + PAGE_SIZE).GET().build());
+                }
+            };
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.rag.service.config;
 
+import com.rag.service.service.ChatMetrics;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Bucket4j;
@@ -31,9 +32,14 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
     @Value("${api.keys}")
     private String apiKeysConfig;
 
+    @Value("${rate.limit.capacity:100}")
+    private int rateLimit = 100;
+
     private static final String API_KEY_HEADER = "X-API-Key";
     private Set<String> apiKeys;
     private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+    private final ChatMetrics chatMetrics;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -73,9 +79,12 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             return;
         }
         Bucket bucket = buckets.computeIfAbsent(requestApiKey, k -> Bucket4j.builder()
-                .addLimit(Bandwidth.classic(100, Refill.greedy(100, Duration.ofMinutes(1))))
+                .addLimit(Bandwidth.classic(rateLimit, Refill.greedy(rateLimit, Duration.ofMinutes(1))))
                 .build());
+        String fingerprint = fingerprints.computeIfAbsent(requestApiKey, ChatMetrics::fingerprint);
+        request.setAttribute(ChatMetrics.API_KEY_FINGERPRINT_ATTRIBUTE, fingerprint);
         if (!bucket.tryConsume(1)) {
+            chatMetrics.rateLimited(ChatMetrics.API_KEY_LIMIT, fingerprint);
             response.sendError(429, RATE_LIMIT_EXCEED_MSG);
             return;
         }
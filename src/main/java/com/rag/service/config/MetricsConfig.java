@@ -0,0 +1,21 @@
+package com.rag.service.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Times the methods of beans annotated with {@link io.micrometer.core.annotation.Timed}, tagged with class, method
+ * and exception. Service level buckets for these timers, the HTTP server and the repository invocations Spring Boot
+ * already times are set under management.metrics.distribution.slo, so one request can be followed from the filter
+ * chain through the services down to the queries.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.rag.service.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.controller.ReactiveChatHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * Serves {@link ReactiveChatHandler} from the existing Tomcat next to the MVC dispatcher. The adapter uses
+ * non-blocking servlet I/O, so a response is written only as fast as the client reads it, without holding a
+ * request thread; requests still pass the security filter chain.
+ */
+@Configuration
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+public class ReactiveReadConfig {
+
+    @Bean
+    public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveReadServlet(ReactiveChatHandler reactiveChatHandler,
+                                                                                 ObjectMapper objectMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper)))
+                .build();
+        ServletHttpHandlerAdapter adapter =
+                new ServletHttpHandlerAdapter(RouterFunctions.toHttpHandler(reactiveChatHandler.routes(), strategies));
+        ServletRegistrationBean<ServletHttpHandlerAdapter> registration =
+                new ServletRegistrationBean<>(adapter, "/api/reactive/*");
+        registration.setName("reactiveRead");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
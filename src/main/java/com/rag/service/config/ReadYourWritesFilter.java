@@ -0,0 +1,87 @@
+package com.rag.service.config;
+
+import com.rag.service.service.ChatMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Pins a client to the primary for its writes and for the read-your-writes window after each of them, so replica
+ * lag never hides the client's own changes. Runs after {@link ApiKeyAuthFilter} and identifies clients by the
+ * fingerprint of their accepted API key, so only configured keys are tracked; failed writes are not recorded.
+ * <p>
+ * A successful write also sets the {@value #LAST_WRITE_COOKIE} cookie to its time, which pins the client on whichever
+ * instance serves its next reads. Clients that do not send cookies back are pinned only by the instance that took
+ * the write.
+ */
+@RequiredArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String LAST_WRITE_COOKIE = "ragchat-last-write";
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Object client = request.getAttribute(ChatMetrics.API_KEY_FINGERPRINT_ATTRIBUTE);
+        if (client == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        ReplicaRoutingDataSource.pinToPrimary(write || routingDataSource.wroteRecently(client.toString())
+                || wroteRecently(request));
+        try {
+            if (!write) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            // write responses are small; buffering them leaves the headers open until the outcome is known
+            ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(request, buffered);
+            if (buffered.getStatus() < HttpServletResponse.SC_BAD_REQUEST) {
+                routingDataSource.recordWrite(client.toString());
+                addLastWriteCookie(request, buffered);
+            }
+            buffered.copyBodyToResponse();
+        } finally {
+            ReplicaRoutingDataSource.pinToPrimary(false);
+        }
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return routingDataSource.wroteRecently(Long.parseLong(cookie.getValue()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void addLastWriteCookie(HttpServletRequest request, HttpServletResponse response) {
+        long window = routingDataSource.getReadYourWritesMillis();
+        if (window <= 0) {
+            return;
+        }
+        Cookie cookie = new Cookie(LAST_WRITE_COOKIE, Long.toString(System.currentTimeMillis()));
+        cookie.setPath(StringUtils.hasLength(request.getContextPath()) ? request.getContextPath() : "/");
+        cookie.setMaxAge((int) Math.ceil(window / 1000.0));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+    }
+}
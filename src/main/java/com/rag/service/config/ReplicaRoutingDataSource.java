@@ -0,0 +1,214 @@
+package com.rag.service.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sends read-only transactions to a healthy replica, round robin, and everything else to the primary. Replicas
+ * are checked periodically and skipped while unreachable or lagging more than max-lag-ms; a replica that fails
+ * to hand out a connection is marked down and the primary serves the request. Clients that wrote within the
+ * read-your-writes window are pinned to the primary (see {@link ReadYourWritesFilter}): this instance remembers its
+ * own clients' writes, and the write time a client sends back covers writes taken by any instance.
+ * <p>
+ * Must be wrapped in a LazyConnectionDataSourceProxy so the route is chosen once the transaction is marked
+ * read-only, not when Hibernate asks for the connection.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private static final String PRIMARY = "primary";
+    private static final String LAG_SQL = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<? extends DataSource> replicas;
+    private final long maxLagMillis;
+    private final long readYourWritesMillis;
+    private final long readYourWritesNanos;
+    private final AtomicReferenceArray<ReplicaState> states;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final Counter fallbacks;
+
+    record ReplicaState(boolean inRotation, long lagMs) {
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas, long maxLagMillis,
+                                    long readYourWritesMillis, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagMillis = maxLagMillis;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.states = new AtomicReferenceArray<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            states.set(i, new ReplicaState(false, -1));
+        }
+        this.fallbacks = meterRegistry.counter("chat.datasource.replica.fallbacks");
+        Gauge.builder("chat.datasource.replicas.healthy", this, ReplicaRoutingDataSource::healthyReplicas)
+                .register(meterRegistry);
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || Boolean.TRUE.equals(PINNED_TO_PRIMARY.get())) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            int candidate = (start + i) % size;
+            if (states.get(candidate).inRotation()) {
+                return candidate;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        int replica = (Integer) key;
+        try {
+            return replicas.get(replica).getConnection();
+        } catch (SQLException e) {
+            states.set(replica, new ReplicaState(false, -1));
+            fallbacks.increment();
+            log.warn("Replica {} is unavailable, reading from the primary: {}", replica, e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // replica pools take their credentials from the primary's configuration, so explicit ones mean the primary
+        return primary.getConnection(username, password);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        // clients that stopped writing are otherwise only dropped when they read again
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(lastWrite -> now - lastWrite >= readYourWritesNanos);
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaState state;
+            try (Connection connection = replicas.get(i).getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(5);
+                try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    long lag = rs.getLong(1);
+                    state = new ReplicaState(lag <= maxLagMillis, lag);
+                }
+            } catch (SQLException e) {
+                state = new ReplicaState(false, -1);
+            }
+            if (states.getAndSet(i, state).inRotation() != state.inRotation()) {
+                log.info("Replica {} is now {} (lag {} ms)", i, state.inRotation() ? "in rotation" : "out of rotation",
+                        state.lagMs());
+            }
+        }
+    }
+
+    /**
+     * Routes every transaction of the current thread to the primary until called with false.
+     */
+    public static void pinToPrimary(boolean pinned) {
+        if (pinned) {
+            PINNED_TO_PRIMARY.set(true);
+        } else {
+            PINNED_TO_PRIMARY.remove();
+        }
+    }
+
+    public void recordWrite(String client) {
+        if (readYourWritesNanos > 0) {
+            lastWrites.put(client, System.nanoTime());
+        }
+    }
+
+    public boolean wroteRecently(String client) {
+        Long lastWrite = lastWrites.get(client);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+            return true;
+        }
+        lastWrites.remove(client, lastWrite);
+        return false;
+    }
+
+    /**
+     * Whether a write at the given wall-clock time, as reported by the client, is within the read-your-writes window.
+     * Instance clocks may differ by less than the window.
+     */
+    public boolean wroteRecently(long writtenAtMillis) {
+        return Math.abs(System.currentTimeMillis() - writtenAtMillis) < readYourWritesMillis;
+    }
+
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    public Map<String, Object> replicaStates() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            ReplicaState state = states.get(i);
+            details.put("replica-" + i, Map.of("inRotation", state.inRotation(), "lagMs", state.lagMs()));
+        }
+        return details;
+    }
+
+    private double healthyReplicas() {
+        int count = 0;
+        for (int i = 0; i < states.length(); i++) {
+            count += states.get(i).inRotation() ? 1 : 0;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
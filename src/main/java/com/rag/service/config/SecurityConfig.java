@@ -3,6 +3,7 @@ package com.rag.service.config;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -11,12 +12,15 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 @Configuration
 @EnableWebSecurity
@@ -46,7 +50,10 @@ public class SecurityConfig {
             )
             // Configure authorization rules
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers(
+                // async dispatches (e.g. completing a streamed export) continue an already authorized request
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                // ant matchers: with the reactive read servlet there is more than one servlet to match against
+                .requestMatchers(Stream.of(
                     // Standard paths
                     "/actuator/**",
                     "/api/health",
@@ -65,7 +72,7 @@ public class SecurityConfig {
                     "/ragchat/swagger-ui/**",
                     "/ragchat/api-docs/**",
                     "/ragchat/v3/api-docs/**"
-                ).permitAll()
+                ).map(AntPathRequestMatcher::antMatcher).toArray(RequestMatcher[]::new)).permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(apiKeyAuthFilter, UsernamePasswordAuthenticationFilter.class);
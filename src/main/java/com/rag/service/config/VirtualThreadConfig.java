@@ -0,0 +1,86 @@
+package com.rag.service.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs each HTTP request, and with it the blocking JPA work of the services, on its own virtual thread instead of
+ * Tomcat's platform thread pool. Virtual threads are created reflectively as the service is built for Java 17; on
+ * an older runtime the mode logs a warning and requests keep using the platform pool.
+ * <p>
+ * As requests are then limited by server.tomcat.max-connections rather than threads, the application data source
+ * is wrapped in a {@link ConnectionLimitingDataSource} so waiting requests queue on a semaphore, not inside Hikari.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "chat.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadExecutor("http-vt-");
+        if (executor == null) {
+            log.warn("Virtual threads need Java 21 or newer (running {}), requests stay on the platform thread pool",
+                    Runtime.version());
+            return protocolHandler -> { };
+        }
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(Environment environment) {
+        int maxConnections = environment.getProperty("chat.virtual-threads.max-concurrent-connections", Integer.class,
+                environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        long timeoutMillis = environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return "dataSource".equals(beanName) && bean instanceof DataSource dataSource ?
+                        new ConnectionLimitingDataSource(dataSource, maxConnections, timeoutMillis) : bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder connectionLimitMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConnectionLimitingDataSource limited) {
+                Gauge.builder("chat.datasource.connections.active", limited, ConnectionLimitingDataSource::getActiveConnections)
+                        .register(registry);
+                Gauge.builder("chat.datasource.connections.waiting", limited, ConnectionLimitingDataSource::getWaitingThreads)
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * Returns a thread-per-task executor of virtual threads named prefix + counter, or null before Java 21.
+     */
+    static ExecutorService newVirtualThreadExecutor(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            // missing before Java 21, or a preview feature that is not enabled
+            return null;
+        }
+    }
+}
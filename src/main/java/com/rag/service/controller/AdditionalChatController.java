@@ -6,9 +6,14 @@ import com.rag.service.dto.Message;
 import com.rag.service.service.SessionChatService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -17,8 +22,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 
 @RestController
@@ -33,11 +37,26 @@ public class AdditionalChatController {
         summary = "Get paginated messages",
         description = "Retrieves messages for a specific session with pagination support"
     )
-    public ResponseEntity<List<Message>> getMessages(
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(schema = @Schema(implementation = Message.class))))
+    public ResponseEntity<byte[]> getMessages(
             @Parameter(description = "Session ID", required = true) @PathVariable String sessionId,
             @Parameter(description = "Page number (0-based)", example = "0") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Number of items per page", example = "10") @RequestParam(defaultValue = "10") int size) {
-        return ResponseEntity.ok(service.getPaginatedMessages(sessionId, page, size));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(service.getPaginatedMessagesJson(sessionId, page, size));
+    }
+
+    @GetMapping(value = "/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream new messages",
+        description = "Server-Sent Events: a 'message' event for every message added to the session from now on. " +
+                "A 'reset' event means messages may have been missed and the latest page should be reloaded."
+    )
+    public ResponseEntity<SseEmitter> streamMessages(
+            @Parameter(description = "Session ID", required = true) @PathVariable String sessionId) {
+        return ResponseEntity.ok(service.streamMessages(sessionId));
     }
 
     @PostMapping("{sessionId}/add-message")
@@ -1,10 +1,20 @@
 package com.rag.service.controller;
 
 import com.rag.service.dto.AddMessageRequest;
+import com.rag.service.dto.BatchAddMessageRequest;
+import com.rag.service.dto.BatchAddMessageResponse;
 import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.ConditionalResponse;
 import com.rag.service.dto.CreateSessionRequest;
+import com.rag.service.dto.CursorPageResponse;
+import com.rag.service.dto.ImportJobResponse;
+import com.rag.service.dto.MessageSearchResult;
 import com.rag.service.dto.PageableResponse;
+import com.rag.service.dto.SimilarMessagesRequest;
+import com.rag.service.dto.SliceResponse;
 import com.rag.service.dto.UpdateSessionRequest;
+import com.rag.service.service.ChatExportService;
+import com.rag.service.service.ChatImportService;
 import com.rag.service.service.ChatService;
 import io.github.bucket4j.Bucket;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,6 +24,11 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -21,9 +36,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -31,6 +52,8 @@ import org.springframework.web.bind.annotation.RestController;
 @Tag(name = "Chat Sessions", description = "Operations for managing chat sessions and messages")
 public class ChatController {
     private final ChatService chatService;
+    private final ChatExportService chatExportService;
+    private final ChatImportService chatImportService;
     private final Bucket rateLimitBucket;
 
     @PostMapping("/sessions")
@@ -50,20 +73,45 @@ public class ChatController {
     }
 
     @GetMapping("/sessions")
-    @Operation(summary = "Get chat sessions", description = "Returns a paginated list of chat sessions. Optionally filter by favorite.")
+    @Operation(summary = "Get chat sessions", description = "Returns a paginated list of chat sessions. Optionally filter by favorite. " +
+            "Responds 304 Not Modified when no session of the user changed since the ETag sent in If-None-Match.")
     public ResponseEntity<Page<ChatSessionResponse>> getSessions(
             @RequestParam String userId,
             @RequestParam(required = false) Boolean favorite,
-            Pageable pageable) {
-        Page<ChatSessionResponse> sessions = processSessionsRequest(userId, favorite, pageable);
-        return ResponseEntity.ok(sessions);
+            Pageable pageable,
+            @Parameter(description = "ETag of a previous response") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch) {
+        return conditional(processSessionsRequest(userId, favorite, pageable, ifNoneMatch));
+    }
+
+    @GetMapping(value = "/sessions", params = "slice=true")
+    @Operation(summary = "Get chat sessions without a total count",
+            description = "Returns a page of chat sessions with a hasNext flag instead of running a count query. Set includeCount=true for an approximate total. " +
+                    "Responds 304 Not Modified when no session of the user changed since the ETag sent in If-None-Match.")
+    public ResponseEntity<SliceResponse<ChatSessionResponse>> getSessionsSlice(
+            @RequestParam String userId,
+            @RequestParam(required = false) Boolean favorite,
+            @Parameter(description = "Include an approximate total maintained on session writes") @RequestParam(defaultValue = "false") boolean includeCount,
+            Pageable pageable,
+            @Parameter(description = "ETag of a previous response") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch) {
+        return conditional(chatService.getSessionsSlice(userId, Boolean.TRUE.equals(favorite), includeCount, pageable, ifNoneMatch, rateLimitBucket));
     }
 
-    private Page<ChatSessionResponse> processSessionsRequest(String userId, Boolean favorite, Pageable pageable) {
+    private ConditionalResponse<Page<ChatSessionResponse>> processSessionsRequest(String userId, Boolean favorite, Pageable pageable,
+                                                                                  List<String> ifNoneMatch) {
 
         return favorite != null && favorite ?
-                chatService.getFavoriteSessions(userId, pageable, rateLimitBucket) :
-                chatService.getAllSessions(userId, pageable, rateLimitBucket);
+                chatService.getFavoriteSessions(userId, pageable, ifNoneMatch, rateLimitBucket) :
+                chatService.getAllSessions(userId, pageable, ifNoneMatch, rateLimitBucket);
+    }
+
+    // replaces Spring Security's default no-store: clients may keep the body but must revalidate it on every use
+    private static <T> ResponseEntity<T> conditional(ConditionalResponse<T> response) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.isNotModified() ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if (response.etag() != null) {
+            builder.eTag(response.etag());
+        }
+        return response.isNotModified() ? builder.build() : builder.body(response.body());
     }
 
     @DeleteMapping("/sessions/{sessionId}")
@@ -85,12 +133,93 @@ public class ChatController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/messages/batch")
+    @Operation(summary = "Add messages in batch", description = "Stores up to 1000 messages for one or more sessions owned by the user in a single transaction. Message IDs may be generated by the client.")
+    public ResponseEntity<BatchAddMessageResponse> addMessages(
+            @Valid @RequestBody BatchAddMessageRequest request) {
+        return ResponseEntity.ok(chatService.saveMessages(request, rateLimitBucket));
+    }
+
     @GetMapping("/sessions/{sessionId}/messages")
-    @Operation(summary = "Get messages for a chat session", description = "Returns a paginated list of messages for the specified chat session.")
+    @Operation(summary = "Get messages for a chat session", description = "Returns a paginated list of messages for the specified chat session. " +
+            "Responds 304 Not Modified when the session and its messages did not change since the ETag sent in If-None-Match.")
     public ResponseEntity<PageableResponse> getMessages(
             @Parameter(description = "Session ID", required = true)
             @PathVariable String sessionId,
-            Pageable pageable) {
-        return ResponseEntity.ok(chatService.getSessionMessages(sessionId, pageable, rateLimitBucket));
+            Pageable pageable,
+            @Parameter(description = "ETag of a previous response") @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch) {
+        return conditional(chatService.getSessionMessages(sessionId, pageable, ifNoneMatch, rateLimitBucket));
+    }
+
+    @GetMapping(value = "/sessions/{sessionId}/messages", params = "cursor")
+    @Operation(summary = "Get messages for a chat session by cursor",
+            description = "Returns messages newest first using keyset pagination. Pass an empty cursor for the first page and the returned nextCursor for the following ones.")
+    public ResponseEntity<CursorPageResponse> getMessagesByCursor(
+            @Parameter(description = "Session ID", required = true)
+            @PathVariable String sessionId,
+            @Parameter(description = "Opaque cursor returned by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Number of items per page, at most 100", example = "20") @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(chatService.getSessionMessagesByCursor(sessionId, cursor, size, rateLimitBucket));
+    }
+
+    @GetMapping(value = "/sessions/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream new messages of a chat session",
+            description = "Server-Sent Events: a 'message' event for every message saved to the session from now on, oldest first. " +
+                    "Reconnecting with Last-Event-ID replays the messages missed in between. A 'reset' event means messages " +
+                    "may have been missed and the latest page should be reloaded.")
+    public ResponseEntity<SseEmitter> streamMessages(
+            @Parameter(description = "Session ID", required = true)
+            @PathVariable String sessionId,
+            @Parameter(description = "Id of the last event received") @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return ResponseEntity.ok(chatService.streamMessages(sessionId, lastEventId, rateLimitBucket));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Search messages",
+            description = "Full-text search over message content and retrieved context across all sessions of the user, best matches first.")
+    public ResponseEntity<List<MessageSearchResult>> searchMessages(
+            @RequestParam String userId,
+            @Parameter(description = "Search terms; supports quoted phrases, +, | and - operators and trailing * wildcards") @RequestParam String q,
+            @Parameter(description = "Maximum number of results", example = "10") @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(chatService.searchMessages(userId, q, k, rateLimitBucket));
+    }
+
+    @PostMapping("/search/similar")
+    @Operation(summary = "Find similar messages",
+            description = "Approximate nearest-neighbour search over stored message embeddings, restricted to one user and optionally one session, most similar first.")
+    public ResponseEntity<List<MessageSearchResult>> searchSimilarMessages(
+            @Valid @RequestBody SimilarMessagesRequest request) {
+        return ResponseEntity.ok(chatService.searchSimilarMessages(request, rateLimitBucket));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export chat history",
+            description = "Streams every session of the user, or only the given session, followed by all of their messages as newline-delimited JSON.")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam String userId,
+            @Parameter(description = "Export only this session") @RequestParam(required = false) String sessionId) {
+        StreamingResponseBody body = chatExportService.export(userId, sessionId, rateLimitBucket);
+        String filename = "chat-export-" + (sessionId != null && !sessionId.isBlank() ? sessionId : userId) + ".ndjson";
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Import chat history",
+            description = "Bulk loads users, sessions and messages from NDJSON in the export format, committing every few thousand lines. " +
+                    "To resume a failed import, send the same file again with the jobId of the failed job.")
+    public ResponseEntity<ImportJobResponse> importHistory(
+            @Parameter(description = "Job to resume") @RequestParam(required = false) String jobId,
+            InputStream body) {
+        return ResponseEntity.ok(chatImportService.importHistory(jobId, body, rateLimitBucket));
+    }
+
+    @GetMapping("/import/{jobId}")
+    @Operation(summary = "Get import progress", description = "Returns the status and row counts of an import job.")
+    public ResponseEntity<ImportJobResponse> getImportJob(
+            @Parameter(description = "Import job ID", required = true) @PathVariable String jobId) {
+        return ResponseEntity.ok(chatImportService.getJob(jobId));
     }
 }
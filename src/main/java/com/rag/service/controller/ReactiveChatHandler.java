@@ -0,0 +1,81 @@
+package com.rag.service.controller;
+
+import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.exception.ErrorResponse;
+import com.rag.service.service.ReactiveChatReader;
+import io.github.bucket4j.Bucket;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+import static com.rag.service.util.Constant.INVALID_STREAM_LIMIT_MSG;
+import static com.rag.service.util.Constant.RATE_LIMIT_EXCEED_MSG;
+import static com.rag.service.util.Constant.SESSION_NOT_FOUND_MSG;
+import static com.rag.service.util.Constant.USER_ID_REQUIRED_MSG;
+
+/**
+ * Streaming, non-blocking counterparts of the session and message reads of {@link ChatController}, served as
+ * newline-delimited JSON under /api/reactive. A message stream can be resumed with the cursor of the last message
+ * received; limit caps the number of messages.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class ReactiveChatHandler {
+    private final ReactiveChatReader reactiveChatReader;
+    private final Bucket rateLimitBucket;
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                // deferred so that parameter errors thrown by a handler reach onError as signals
+                .GET("/sessions", request -> Mono.defer(() -> getSessions(request)))
+                .GET("/sessions/{sessionId}/messages", request -> Mono.defer(() -> getMessages(request)))
+                .filter((request, next) -> rateLimitBucket.tryConsume(1) ?
+                        next.handle(request) : error(HttpStatus.TOO_MANY_REQUESTS, RATE_LIMIT_EXCEED_MSG))
+                .onError(IllegalArgumentException.class, (e, request) -> error(HttpStatus.BAD_REQUEST, e.getMessage()))
+                .build();
+    }
+
+    Mono<ServerResponse> getSessions(ServerRequest request) {
+        UUID userId = UUID.fromString(request.queryParam("userId")
+                .orElseThrow(() -> new IllegalArgumentException(USER_ID_REQUIRED_MSG)));
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(reactiveChatReader.streamSessions(userId), ChatSessionResponse.class);
+    }
+
+    Mono<ServerResponse> getMessages(ServerRequest request) {
+        UUID sessionId = UUID.fromString(request.pathVariable("sessionId"));
+        MessageCursor after = request.queryParam("cursor").filter(c -> !c.isBlank()).map(MessageCursor::decode).orElse(null);
+        long limit = request.queryParam("limit").map(Long::parseLong).orElse(Long.MAX_VALUE);
+        if (limit < 1) {
+            throw new IllegalArgumentException(INVALID_STREAM_LIMIT_MSG);
+        }
+        return reactiveChatReader.findSession(sessionId)
+                .flatMap(session -> ServerResponse.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(reactiveChatReader.streamMessages(session, after).take(limit, true), MessageResponseDto.class))
+                .switchIfEmpty(Mono.defer(() -> error(HttpStatus.NOT_FOUND, SESSION_NOT_FOUND_MSG)));
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, String message) {
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ErrorResponse.builder()
+                        .status(status.value())
+                        .error(status.getReasonPhrase())
+                        .message(message)
+                        .build());
+    }
+}
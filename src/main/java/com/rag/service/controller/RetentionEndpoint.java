@@ -0,0 +1,23 @@
+package com.rag.service.controller;
+
+import com.rag.service.dto.RetentionStatus;
+import com.rag.service.service.RetentionSweeper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/retention}: progress and deletion rate of the running retention sweep, or the last one.
+ */
+@Component
+@Endpoint(id = "retention")
+@RequiredArgsConstructor
+public class RetentionEndpoint {
+    private final RetentionSweeper retentionSweeper;
+
+    @ReadOperation
+    public RetentionStatus status() {
+        return retentionSweeper.getStatus();
+    }
+}
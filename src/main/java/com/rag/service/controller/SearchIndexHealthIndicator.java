@@ -0,0 +1,22 @@
+package com.rag.service.controller;
+
+import com.rag.service.service.MessageSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code searchIndex} in /actuator/health: catch-up state of the search index.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchIndexHealthIndicator implements HealthIndicator {
+    private final MessageSearchIndex messageSearchIndex;
+
+    @Override
+    public Health health() {
+        // search answers from what is indexed while catch-up is retried, so a stale index does not make the service unhealthy
+        return Health.up().withDetails(messageSearchIndex.catchUpState()).build();
+    }
+}
@@ -24,6 +24,9 @@ public class AddMessageRequest {
     @Schema(description = "Optional context for the message", example = "Previous discussion context")
     private String context;
 
+    @Schema(description = "Optional embedding of the message, with exactly chat.embeddings.dimensions values")
+    private float[] embedding;
+
     @NotBlank(message = "User ID is required")
     @Schema(description = "ID of the user adding the message", example = "123e4567-e89b-12d3-a456-426614174000")
     private String userId;
@@ -0,0 +1,29 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Schema(description = "Request DTO for adding several messages in one call")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAddMessageRequest {
+    @NotBlank(message = "User ID is required")
+    @Schema(description = "ID of the user owning every target session", example = "123e4567-e89b-12d3-a456-426614174999")
+    private String userId;
+
+    @Valid
+    @NotEmpty(message = "At least one message is required")
+    @Size(max = 1000, message = "At most 1000 messages are accepted per batch")
+    private List<BatchMessageItem> messages;
+}
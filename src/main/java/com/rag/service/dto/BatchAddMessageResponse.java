@@ -0,0 +1,19 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Schema(description = "Response DTO for batch message ingestion")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAddMessageResponse {
+    @Schema(description = "IDs of the stored messages, in request order")
+    private List<String> messageIds;
+}
@@ -0,0 +1,36 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(description = "Single message of a batch ingestion request")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchMessageItem {
+    @Schema(description = "Optional client generated message ID", example = "123e4567-e89b-12d3-a456-426614174001")
+    private String id;
+
+    @NotBlank(message = "Session ID is required")
+    @Schema(description = "ID of the session the message belongs to", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String sessionId;
+
+    @NotBlank(message = "Message content is required")
+    @Schema(description = "Content of the message", example = "Hello, team!")
+    private String content;
+
+    @NotBlank(message = "Sender is required")
+    @Schema(description = "Sender of the message", example = "user")
+    private String sender;
+
+    @Schema(description = "Optional context for the message", example = "Previous discussion context")
+    private String context;
+
+    @Schema(description = "Optional embedding of the message, with exactly chat.embeddings.dimensions values")
+    private float[] embedding;
+}
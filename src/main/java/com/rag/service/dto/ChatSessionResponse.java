@@ -33,4 +33,13 @@ public class ChatSessionResponse {
 
     @Schema(description = "User ID", example = "123e4567-e89b-12d3-a456-426614174999")
     private UUID userId;
+
+    @Schema(description = "Number of messages in the session", example = "42")
+    private int messageCount;
+
+    @Schema(description = "Timestamp of the latest message, null while the session has none", example = "2025-09-14T12:34:56Z")
+    private LocalDateTime lastMessageAt;
+
+    @Schema(description = "Start of the latest message on a single line, at most 160 characters", example = "Sure, here is a summary of")
+    private String lastMessagePreview;
 }
@@ -0,0 +1,38 @@
+package com.rag.service.dto;
+
+import java.util.Collection;
+
+/**
+ * A response body with its strong entity tag. The body is null when a tag sent in If-None-Match still matches, in
+ * which case it was never loaded.
+ */
+public record ConditionalResponse<T>(String etag, T body) {
+    private static final String WEAK_PREFIX = "W/";
+
+    public static <T> ConditionalResponse<T> notModified(String etag) {
+        return new ConditionalResponse<>(etag, null);
+    }
+
+    public boolean isNotModified() {
+        return body == null;
+    }
+
+    /**
+     * Weak comparison, as If-None-Match requires; an unknown representation never matches.
+     */
+    public static boolean matches(String etag, Collection<String> ifNoneMatch) {
+        if (etag == null || ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch) {
+            String candidate = tag.trim();
+            if (candidate.startsWith(WEAK_PREFIX)) {
+                candidate = candidate.substring(WEAK_PREFIX.length());
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package com.rag.service.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "One line of an NDJSON export or import: a user, a session, or a message of a session")
+public class ExportRecord {
+    public static final String USER = "user";
+    public static final String SESSION = "session";
+    public static final String MESSAGE = "message";
+
+    @Schema(description = "Record type", example = "message", allowableValues = {USER, SESSION, MESSAGE})
+    private String type;
+
+    @Schema(description = "Session ID of a message record", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String sessionId;
+
+    @Schema(description = "Exported user, for user records")
+    private UserResponse user;
+
+    @Schema(description = "Exported session, for session records")
+    private ChatSessionResponse session;
+
+    @Schema(description = "Exported message, for message records")
+    private MessageResponseDto message;
+}
@@ -0,0 +1,47 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Schema(description = "Progress of a bulk history import")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobResponse {
+    @Schema(description = "Import job ID, pass it back to resume the import")
+    private UUID id;
+
+    @Schema(description = "Job status", example = "COMPLETED", allowableValues = {"RUNNING", "COMPLETED", "FAILED"})
+    private String status;
+
+    @Schema(description = "Input lines merged so far; a resumed import skips this many lines", example = "250000")
+    private long linesCommitted;
+
+    @Schema(description = "Users inserted", example = "12")
+    private long usersImported;
+
+    @Schema(description = "Sessions inserted", example = "340")
+    private long sessionsImported;
+
+    @Schema(description = "Messages inserted", example = "249648")
+    private long messagesImported;
+
+    @Schema(description = "Rows skipped because they already existed or their parent row is missing", example = "0")
+    private long rowsSkipped;
+
+    @Schema(description = "Why the import failed")
+    private String error;
+
+    @Schema(description = "Job creation timestamp", example = "2025-09-14T12:34:56Z")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Last progress timestamp", example = "2025-09-14T12:34:56Z")
+    private LocalDateTime updatedAt;
+}
@@ -1,11 +1,15 @@
 package com.rag.service.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class MessageResponseDto {
 
     @Schema(description = "Message ID", example = "123e4567-e89b-12d3-a456-426614174001")
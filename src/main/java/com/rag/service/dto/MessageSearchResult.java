@@ -0,0 +1,19 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class MessageSearchResult {
+
+    @Schema(description = "Session ID", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String sessionId;
+
+    @Schema(description = "Relevance score, higher is better", example = "3.42")
+    private float score;
+
+    @Schema(description = "Matching message")
+    private MessageResponseDto message;
+}
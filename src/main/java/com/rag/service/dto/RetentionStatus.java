@@ -0,0 +1,29 @@
+package com.rag.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the current retention sweep, or the outcome of the last one; served by the retention actuator endpoint.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionStatus {
+    private boolean enabled;
+    private boolean running;
+    private String phase;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long messagesDeleted;
+    private long sessionChatsDeleted;
+    private long chunksDeleted;
+    private int partitionsDropped;
+    private double rowsPerSecond;
+    private String error;
+}
@@ -0,0 +1,31 @@
+package com.rag.service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(description = "Request DTO for a nearest-neighbour search over message embeddings")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarMessagesRequest {
+    @NotBlank(message = "User ID is required")
+    @Schema(description = "ID of the user whose messages are searched", example = "123e4567-e89b-12d3-a456-426614174000")
+    private String userId;
+
+    @Schema(description = "Optional session ID to restrict the search to", example = "123e4567-e89b-12d3-a456-426614174001")
+    private String sessionId;
+
+    @NotNull(message = "Embedding is required")
+    @Schema(description = "Query embedding, with exactly chat.embeddings.dimensions values")
+    private float[] embedding;
+
+    @Builder.Default
+    @Schema(description = "Number of neighbours to return", example = "10")
+    private int k = 10;
+}
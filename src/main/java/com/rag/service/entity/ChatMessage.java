@@ -3,19 +3,22 @@ package com.rag.service.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
@@ -24,29 +27,60 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Table(name = "chat_messages")
-public class ChatMessage {
+public class ChatMessage implements Persistable<UUID> {
+    // ids are assigned in the application (or by the client) so inserts can be JDBC batched
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "session_id", nullable = false)
     private ChatSession session;
 
+    // empty when the content is large enough to be stored compressed in contentZstd
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
+    @Column(name = "content_zstd")
+    private byte[] contentZstd;
+
     @Column(nullable = false)
     private String sender;
 
-    @Column(columnDefinition = "TEXT")
+    // written to context_chunks on insert; the column itself only holds context of rows older than that
+    @Column(columnDefinition = "TEXT", insertable = false, updatable = false)
     private String retrievedContext;
 
+    @Column(name = "context_chunk_hashes")
+    private byte[] contextChunkHashes;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    @Transient
+    @Builder.Default
+    private boolean newMessage = true;
+
+    // stored separately in message_embeddings, carried here only on the write path
+    @Transient
+    private float[] embedding;
+
+    @Override
+    public boolean isNew() {
+        return newMessage;
+    }
+
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        if (id == null) {
+            id = UUID.randomUUID();
+        }
+        // the column keeps microseconds; matching it keeps cursors of just-saved messages equal to stored ones
+        createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markPersisted() {
+        newMessage = false;
     }
 }
@@ -18,6 +18,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Formula;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -47,6 +48,25 @@ public class ChatSession {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // maintained by SessionArchiveService only, so a concurrent session update never overwrites it
+    @Column(name = "archived_at", insertable = false, updatable = false)
+    private LocalDateTime archivedAt;
+
+    // maintained by SessionActivityRecorder and the bulk statements in the same transaction as message writes
+    @Column(name = "message_count", insertable = false, updatable = false)
+    private int messageCount;
+
+    @Column(name = "last_message_at", insertable = false, updatable = false)
+    private LocalDateTime lastMessageAt;
+
+    // what sort=lastMessageAt orders by: sessions without messages have the oldest activity, last in descending
+    // order as in ascending; matches idx_sessions_user_last_activity
+    @Formula("coalesce(last_message_at, '-infinity')")
+    private LocalDateTime lastActivityAt;
+
+    @Column(name = "last_message_preview", insertable = false, updatable = false)
+    private String lastMessagePreview;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -0,0 +1,42 @@
+package com.rag.service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.util.UUID;
+
+@Entity
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "message_embeddings")
+public class MessageEmbedding implements Persistable<UUID> {
+    @Id
+    @Column(name = "message_id")
+    private UUID messageId;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(columnDefinition = "real[]", nullable = false)
+    private float[] embedding;
+
+    @Override
+    public UUID getId() {
+        return messageId;
+    }
+
+    // embeddings are written once together with their message, never merged
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -32,5 +32,8 @@ public class SessionChat {
     @Column(name = "conversation", columnDefinition = "jsonb")
     private List<Message> conversation;
 
+    @Column(name = "segmented", nullable = false)
+    private boolean segmented;
+
 
 }
@@ -0,0 +1,10 @@
+package com.rag.service.event;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published after individual messages have been removed, e.g. by the retention sweeper.
+ */
+public record ChatMessagesDeletedEvent(List<UUID> messageIds) {
+}
@@ -0,0 +1,16 @@
+package com.rag.service.event;
+
+import com.rag.service.entity.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Published once chat messages have been written, by the request transaction or by a write-behind batch.
+ * Restored messages (imported, or rehydrated from an archive) existed before and are not new to readers.
+ */
+public record ChatMessagesSavedEvent(List<ChatMessage> messages, boolean restored) {
+
+    public ChatMessagesSavedEvent(List<ChatMessage> messages) {
+        this(messages, false);
+    }
+}
@@ -0,0 +1,6 @@
+package com.rag.service.event;
+
+import java.util.UUID;
+
+public record ChatSessionDeletedEvent(UUID sessionId) {
+}
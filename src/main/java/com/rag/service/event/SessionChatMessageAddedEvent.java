@@ -0,0 +1,9 @@
+package com.rag.service.event;
+
+import com.rag.service.dto.Message;
+
+/**
+ * Published when a message has been appended to a session-chat document.
+ */
+public record SessionChatMessageAddedEvent(String sessionId, Message message) {
+}
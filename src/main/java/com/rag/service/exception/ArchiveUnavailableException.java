@@ -0,0 +1,7 @@
+package com.rag.service.exception;
+
+public class ArchiveUnavailableException extends RuntimeException {
+    public ArchiveUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,10 +1,13 @@
 package com.rag.service.mapper;
 
 import com.rag.service.dto.AddMessageRequest;
+import com.rag.service.dto.BatchMessageItem;
 import com.rag.service.dto.ChatMessageResponse;
 import com.rag.service.dto.MessageResponseDto;
 import com.rag.service.entity.ChatMessage;
 import com.rag.service.entity.ChatSession;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.PayloadCodec;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
@@ -16,11 +19,13 @@ import java.util.List;
 import java.util.UUID;
 
 @Mapper(componentModel = MappingConstants.ComponentModel.SPRING,
-        imports = {UUID.class})
+        imports = {UUID.class},
+        uses = {ContextChunkStore.class, PayloadCodec.class})
 public interface ChatMessageMapper {
 
     @Mapping(target = "id", source = "id", qualifiedByName = "uuidToString")
-    @Mapping(target = "context", source = "retrievedContext")
+    @Mapping(target = "content", source = "message", qualifiedByName = "resolveContent")
+    @Mapping(target = "context", source = "message", qualifiedByName = "resolveContext")
     @Mapping(target = "createdAt", source = "createdAt", qualifiedByName = "localDateTimeToString")
     MessageResponseDto toMessageResponseDto(ChatMessage message);
 
@@ -35,13 +40,30 @@ public interface ChatMessageMapper {
     @Mapping(target = "session",source = "session")
     @Mapping(target = "id",ignore = true)
     @Mapping(target = "createdAt",ignore = true)
+    @Mapping(target = "newMessage", ignore = true)
+    @Mapping(target = "contextChunkHashes", ignore = true)
+    @Mapping(target = "contentZstd", ignore = true)
     ChatMessage toEntity(AddMessageRequest request, ChatSession session );
 
+    @Mapping(target = "id", source = "item.id", qualifiedByName = "stringToUuid")
+    @Mapping(target = "retrievedContext", source = "item.context")
+    @Mapping(target = "session", source = "session")
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "newMessage", ignore = true)
+    @Mapping(target = "contextChunkHashes", ignore = true)
+    @Mapping(target = "contentZstd", ignore = true)
+    ChatMessage toEntity(BatchMessageItem item, ChatSession session);
+
     @Named("uuidToString")
     default String uuidToString(UUID uuid) {
         return uuid != null ? uuid.toString() : null;
     }
 
+    @Named("stringToUuid")
+    default UUID stringToUuid(String value) {
+        return value != null && !value.isBlank() ? UUID.fromString(value) : null;
+    }
+
     @Named("localDateTimeToString")
     default String localDateTimeToString(LocalDateTime dateTime) {
         return dateTime != null ? dateTime.format(DateTimeFormatter.ISO_DATE_TIME) : null;
@@ -31,6 +31,13 @@ public interface ChatSessionMapper {
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     @Mapping(target = "messages", ignore = true)
+    @Mapping(target = "favorite", ignore = true)
+    // maintained by SessionArchiveService and SessionActivityRecorder
+    @Mapping(target = "archivedAt", ignore = true)
+    @Mapping(target = "messageCount", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastActivityAt", ignore = true)
+    @Mapping(target = "lastMessagePreview", ignore = true)
     @Mapping(target = "name", source = "request.name")
     ChatSession toEntity(CreateSessionRequest request, User user);
     
@@ -39,6 +46,12 @@ public interface ChatSessionMapper {
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
     @Mapping(target = "messages", ignore = true)
+    // maintained by SessionArchiveService and SessionActivityRecorder
+    @Mapping(target = "archivedAt", ignore = true)
+    @Mapping(target = "messageCount", ignore = true)
+    @Mapping(target = "lastMessageAt", ignore = true)
+    @Mapping(target = "lastActivityAt", ignore = true)
+    @Mapping(target = "lastMessagePreview", ignore = true)
     void updateEntityFromDto(UpdateSessionRequest request, @MappingTarget ChatSession chatSession);
     
     @Named("localDateTimeToInstant")
@@ -0,0 +1,12 @@
+package com.rag.service.mapper;
+
+import com.rag.service.dto.ImportJobResponse;
+import com.rag.service.entity.ImportJob;
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingConstants;
+
+@Mapper(componentModel = MappingConstants.ComponentModel.SPRING)
+public interface ImportJobMapper {
+
+    ImportJobResponse toImportJobResponse(ImportJob importJob);
+}
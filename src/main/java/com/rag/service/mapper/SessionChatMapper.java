@@ -18,5 +18,7 @@ public interface SessionChatMapper {
     @Mapping(target = "sessionId", source = "sessionId")
     @Mapping(target = "context", source = "context")
     @Mapping(target = "conversation", source = "messages")
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "segmented", ignore = true)
     SessionChat toSessionChat(String sessionId, String context, List<Message> messages);
 }
@@ -4,11 +4,59 @@ import com.rag.service.entity.ChatMessage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
-    Page<ChatMessage> findBySessionIdOrderByCreatedAtDesc(UUID sessionId, Pageable pageable);
+    // chat_messages is partitioned by created_at; the lower bound (the session's creation time) lets the
+    // planner skip every partition older than the session
+    Page<ChatMessage> findBySessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(UUID sessionId, LocalDateTime since,
+                                                                                     Pageable pageable);
+
+    long countBySessionIdAndCreatedAtGreaterThanEqual(UUID sessionId, LocalDateTime since);
+
+    @Query(
+            value = "SELECT * FROM chat_messages WHERE session_id = :sessionId AND created_at >= :since " +
+                    "ORDER BY created_at DESC, id LIMIT :limit",
+            nativeQuery = true
+    )
+    List<ChatMessage> findFirstKeysetPage(@Param("sessionId") UUID sessionId,
+                                          @Param("since") LocalDateTime since,
+                                          @Param("limit") int limit);
+
+    @Query(
+            value = "SELECT * FROM chat_messages WHERE session_id = :sessionId " +
+                    "AND created_at >= :since AND created_at <= :createdAt " +
+                    "AND (created_at < :createdAt OR (created_at = :createdAt AND id > :id)) " +
+                    "ORDER BY created_at DESC, id LIMIT :limit",
+            nativeQuery = true
+    )
+    List<ChatMessage> findKeysetPageAfter(@Param("sessionId") UUID sessionId,
+                                          @Param("since") LocalDateTime since,
+                                          @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") UUID id,
+                                          @Param("limit") int limit);
+
+    // message_ids holds the id of every stored message whatever its partition (V15)
+    @Query(value = "SELECT id FROM message_ids WHERE id IN (:ids)", nativeQuery = true)
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    // the reverse of the keyset order: messages saved after the cursor, oldest first
+    @Query(
+            value = "SELECT * FROM chat_messages WHERE session_id = :sessionId AND created_at >= :createdAt " +
+                    "AND (created_at > :createdAt OR (created_at = :createdAt AND id < :id)) " +
+                    "ORDER BY created_at, id DESC LIMIT :limit",
+            nativeQuery = true
+    )
+    List<ChatMessage> findNewerThan(@Param("sessionId") UUID sessionId,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") UUID id,
+                                    @Param("limit") int limit);
 }
@@ -4,14 +4,23 @@ import com.rag.service.entity.ChatSession;
 import com.rag.service.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
     Page<ChatSession> findByFavoriteTrue(Pageable pageable);
     Page<ChatSession> findByUserId(UUID userId, Pageable pageable);
     Page<ChatSession> findByUserIdAndFavoriteTrue(UUID userId, Pageable pageable);
+    Slice<ChatSession> findSliceByUserId(UUID userId, Pageable pageable);
+    Slice<ChatSession> findSliceByUserIdAndFavoriteTrue(UUID userId, Pageable pageable);
     boolean existsByNameAndUser(String name, User user);
 
+    @Query(value = "SELECT message_version AS messageVersion, updated_at AS updatedAt FROM chat_sessions WHERE id = :id",
+            nativeQuery = true)
+    Optional<SessionVersion> findVersionById(@Param("id") UUID id);
 }
@@ -0,0 +1,41 @@
+package com.rag.service.repository;
+
+import com.rag.service.entity.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, UUID> {
+
+    /**
+     * Marks a failed job, or a running one that stopped reporting progress, as running again.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(
+            value = "UPDATE import_jobs SET status = 'RUNNING', error = NULL, updated_at = now() " +
+                    "WHERE id = :id AND (status = 'FAILED' OR (status = 'RUNNING' AND updated_at < :staleBefore))",
+            nativeQuery = true
+    )
+    int claimForResume(@Param("id") UUID id, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying(clearAutomatically = true)
+    @Query(
+            value = "UPDATE import_jobs SET lines_committed = :linesCommitted, users_imported = users_imported + :users, " +
+                    "sessions_imported = sessions_imported + :sessions, messages_imported = messages_imported + :messages, " +
+                    "rows_skipped = rows_skipped + :skipped, updated_at = now() WHERE id = :id",
+            nativeQuery = true
+    )
+    void recordProgress(@Param("id") UUID id, @Param("linesCommitted") long linesCommitted, @Param("users") long users,
+                        @Param("sessions") long sessions, @Param("messages") long messages, @Param("skipped") long skipped);
+
+    @Modifying(clearAutomatically = true)
+    @Query(
+            value = "UPDATE import_jobs SET status = :status, error = :error, updated_at = now() WHERE id = :id",
+            nativeQuery = true
+    )
+    void finish(@Param("id") UUID id, @Param("status") String status, @Param("error") String error);
+}
@@ -0,0 +1,9 @@
+package com.rag.service.repository;
+
+import com.rag.service.entity.MessageEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface MessageEmbeddingRepository extends JpaRepository<MessageEmbedding, UUID> {
+}
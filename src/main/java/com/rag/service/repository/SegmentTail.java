@@ -0,0 +1,6 @@
+package com.rag.service.repository;
+
+public interface SegmentTail {
+    Integer getSegmentNo();
+    Integer getMessageCount();
+}
@@ -10,18 +10,56 @@ import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 
 public interface SessionChatRepository extends JpaRepository<SessionChat, Long> {
+    String PAGINATED_MESSAGES_SQL = "SELECT jsonb_path_query_array(conversation, cast(:jsonPath as jsonpath)) " +
+            "FROM session_chat WHERE session_id = :sessionId";
+    String SEGMENTED_MESSAGES_SQL = "SELECT jsonb_agg(e.message ORDER BY e.position) FROM (" +
+            "SELECT s.segment_no * :segmentSize + t.ord - 1 AS position, t.message " +
+            "FROM session_chat_segment s " +
+            "CROSS JOIN LATERAL jsonb_array_elements(s.messages) WITH ORDINALITY AS t(message, ord) " +
+            "WHERE s.session_id = :sessionId AND s.segment_no BETWEEN :firstSegment AND :lastSegment" +
+            ") e WHERE e.position BETWEEN :offset AND :end";
+
     Optional<SessionChat> findBySessionId(String sessionId);
 
+    // creates the row or appends to it in one statement; RETURNING tells the caller which layout the row uses
+    @Query(
+            value = "INSERT INTO session_chat (session_id, context, conversation, segmented) " +
+                    "VALUES (:sessionId, :context, " +
+                    "CASE WHEN :segmented THEN cast('[]' as jsonb) ELSE cast(:newMessage as jsonb) END, :segmented) " +
+                    "ON CONFLICT (session_id) DO UPDATE SET conversation = CASE WHEN session_chat.segmented " +
+                    "THEN session_chat.conversation ELSE session_chat.conversation || cast(:newMessage as jsonb) END, " +
+                    "updated_at = CURRENT_TIMESTAMP " +
+                    "RETURNING segmented",
+            nativeQuery = true
+    )
+    boolean upsertMessage(@Param("sessionId") String sessionId, @Param("context") String context,
+                          @Param("newMessage") String newMessageJson, @Param("segmented") boolean segmented);
+
+    @Query(value = "SELECT segmented FROM session_chat WHERE session_id = :sessionId", nativeQuery = true)
+    Boolean findSegmentedBySessionId(@Param("sessionId") String sessionId);
+
+    @Query(
+            value = "SELECT segment_no AS \"segmentNo\", message_count AS \"messageCount\" FROM session_chat_segment " +
+                    "WHERE session_id = :sessionId ORDER BY segment_no DESC LIMIT 1",
+            nativeQuery = true
+    )
+    Optional<SegmentTail> findTailSegment(@Param("sessionId") String sessionId);
+
+    @Modifying
     @Query(
-            value = "SELECT jsonb_path_query_array(conversation, cast(:jsonPath as jsonpath)) FROM session_chat WHERE session_id = :sessionId",
+            value = "INSERT INTO session_chat_segment (session_id, segment_no, message_count, messages) " +
+                    "VALUES (:sessionId, :segmentNo, 1, cast(:newMessage as jsonb))",
             nativeQuery = true
     )
-    String getPaginatedMessages(@Param("sessionId") String sessionId, @Param("jsonPath") String jsonPath);
+    void insertSegment(@Param("sessionId") String sessionId, @Param("segmentNo") int segmentNo,
+                       @Param("newMessage") String newMessageJson);
 
     @Modifying
     @Query(
-            value = "UPDATE session_chat SET conversation = conversation || cast(:newMessage as jsonb) WHERE session_id = :sessionId",
+            value = "UPDATE session_chat_segment SET messages = messages || cast(:newMessage as jsonb), " +
+                    "message_count = message_count + 1 WHERE session_id = :sessionId AND segment_no = :segmentNo",
             nativeQuery = true
     )
-    void appendMessage(@Param("sessionId") String sessionId, @Param("newMessage") String newMessageJson);
+    void appendToSegment(@Param("sessionId") String sessionId, @Param("segmentNo") int segmentNo,
+                         @Param("newMessage") String newMessageJson);
 }
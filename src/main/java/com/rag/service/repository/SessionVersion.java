@@ -0,0 +1,8 @@
+package com.rag.service.repository;
+
+import java.time.LocalDateTime;
+
+public interface SessionVersion {
+    Long getMessageVersion();
+    LocalDateTime getUpdatedAt();
+}
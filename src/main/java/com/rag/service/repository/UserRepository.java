@@ -2,6 +2,9 @@ package com.rag.service.repository;
 
 import com.rag.service.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -10,4 +13,23 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     boolean existsByEmail(String email);
     boolean existsByName(String name);
     Optional<User> findByName(String name);
+
+    // called for every session write, so it also bumps the version the session list is validated against
+    @Modifying
+    @Query(
+            value = "UPDATE users SET session_count = session_count + :delta, " +
+                    "favorite_session_count = favorite_session_count + :favoriteDelta, " +
+                    "sessions_version = sessions_version + 1 WHERE id = :userId",
+            nativeQuery = true
+    )
+    void adjustSessionCounts(@Param("userId") UUID userId, @Param("delta") int delta, @Param("favoriteDelta") int favoriteDelta);
+
+    @Query(value = "SELECT session_count FROM users WHERE id = :userId", nativeQuery = true)
+    Long findSessionCount(@Param("userId") UUID userId);
+
+    @Query(value = "SELECT favorite_session_count FROM users WHERE id = :userId", nativeQuery = true)
+    Long findFavoriteSessionCount(@Param("userId") UUID userId);
+
+    @Query(value = "SELECT sessions_version FROM users WHERE id = :userId", nativeQuery = true)
+    Long findSessionsVersion(@Param("userId") UUID userId);
 }
@@ -0,0 +1,221 @@
+package com.rag.service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.dto.ExportRecord;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.exception.NotFoundException;
+import com.rag.service.exception.RateLimitException;
+import com.rag.service.mapper.ChatMessageMapper;
+import com.rag.service.mapper.ChatSessionMapper;
+import com.rag.service.mapper.UserMapper;
+import com.rag.service.repository.ChatSessionRepository;
+import com.rag.service.repository.UserRepository;
+import io.github.bucket4j.Bucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.rag.service.util.Constant.RATE_LIMIT_EXCEED_MSG;
+import static com.rag.service.util.Constant.SESSION_NOT_FOUND_MSG;
+import static com.rag.service.util.Constant.USER_NOT_FOUND;
+
+/**
+ * Streams a user's (or one session's) full history as NDJSON: the user, then every session, then every message
+ * grouped by session in creation order, which is also the order the import expects. Rows are read through server-side cursors and written as they arrive, so memory
+ * use does not grow with the size of the history. Messages of archived sessions follow, one session at a time.
+ */
+@Slf4j
+@Service
+public class ChatExportService {
+    private static final String SESSIONS_SQL = "SELECT s.id, s.name, s.favorite, s.created_at, s.updated_at, s.archived_at, " +
+            "s.message_count, s.last_message_at, s.last_message_preview FROM chat_sessions s WHERE s.user_id = ? AND (cast(? AS uuid) IS NULL OR s.id = ?) ORDER BY s.created_at, s.id";
+    private static final String MESSAGES_SQL = "SELECT m.id, m.session_id, m.content, m.content_zstd, m.sender, " +
+            "m.retrieved_context, m.context_chunk_hashes, m.created_at " +
+            "FROM chat_messages m JOIN chat_sessions s ON s.id = m.session_id " +
+            "WHERE s.user_id = ? AND (cast(? AS uuid) IS NULL OR m.session_id = ?) ORDER BY m.session_id, m.created_at, m.id";
+
+    private final ChatSessionRepository sessionRepository;
+    private final UserRepository userRepository;
+    private final ChatSessionMapper chatSessionMapper;
+    private final ChatMessageMapper chatMessageMapper;
+    private final UserMapper userMapper;
+    private final ContextChunkStore contextChunkStore;
+    private final SessionArchiveService sessionArchiveService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatMetrics chatMetrics;
+    private final int fetchSize;
+
+    public ChatExportService(ChatSessionRepository sessionRepository,
+                             UserRepository userRepository,
+                             ChatSessionMapper chatSessionMapper,
+                             ChatMessageMapper chatMessageMapper,
+                             UserMapper userMapper,
+                             ContextChunkStore contextChunkStore,
+                             SessionArchiveService sessionArchiveService,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             ChatMetrics chatMetrics,
+                             @Value("${chat.export.fetch-size:500}") int fetchSize) {
+        this.sessionRepository = sessionRepository;
+        this.userRepository = userRepository;
+        this.chatSessionMapper = chatSessionMapper;
+        this.chatMessageMapper = chatMessageMapper;
+        this.userMapper = userMapper;
+        this.contextChunkStore = contextChunkStore;
+        this.sessionArchiveService = sessionArchiveService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.chatMetrics = chatMetrics;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Checks the request up front, while an error can still become a regular error response, and returns the
+     * body that writes the export once the response is committed.
+     */
+    public StreamingResponseBody export(String userId, String sessionId, Bucket bucket) {
+        if (!bucket.tryConsume(1)) {
+            chatMetrics.rateLimited(ChatMetrics.SHARED_LIMIT);
+            throw new RateLimitException(RATE_LIMIT_EXCEED_MSG);
+        }
+        UUID userUUID = UUID.fromString(userId);
+        UUID sessionUUID = sessionId != null && !sessionId.isBlank() ? UUID.fromString(sessionId) : null;
+        if (sessionUUID != null) {
+            sessionRepository.findById(sessionUUID)
+                    .filter(s -> s.getUser().getId().equals(userUUID))
+                    .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
+        }
+        User user = userRepository.findById(userUUID)
+                .orElseThrow(() -> new NotFoundException(USER_NOT_FOUND + userId));
+
+        return out -> {
+            try {
+                write(user, sessionUUID, out);
+            } catch (RuntimeException e) {
+                // the status line is already sent; aborting leaves the client with a truncated, unterminated stream
+                log.error("Export for user {} failed", userUUID, e);
+                throw e;
+            }
+        };
+    }
+
+    private void write(User user, UUID sessionId, OutputStream out) throws IOException {
+        UUID userId = user.getId();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeLine(generator, ExportRecord.builder().type(ExportRecord.USER).user(userMapper.toUserResponse(user)).build());
+            // one snapshot for both queries, so no message can reference a session missing from the export
+            transactionTemplate.executeWithoutResult(status -> {
+                List<ChatSession> archived = new ArrayList<>();
+                stream(SESSIONS_SQL, userId, sessionId, rs -> {
+                    ChatSession session = ChatSession.builder()
+                            .id(rs.getObject(1, UUID.class))
+                            .name(rs.getString(2))
+                            .favorite(rs.getBoolean(3))
+                            .createdAt(rs.getTimestamp(4).toLocalDateTime())
+                            .updatedAt(rs.getTimestamp(5) != null ? rs.getTimestamp(5).toLocalDateTime() : null)
+                            .archivedAt(rs.getTimestamp(6) != null ? rs.getTimestamp(6).toLocalDateTime() : null)
+                            .messageCount(rs.getInt(7))
+                            .lastMessageAt(rs.getTimestamp(8) != null ? rs.getTimestamp(8).toLocalDateTime() : null)
+                            .lastMessagePreview(rs.getString(9))
+                            .user(user)
+                            .build();
+                    if (session.getArchivedAt() != null) {
+                        archived.add(session);
+                    }
+                    writeLine(generator, ExportRecord.builder()
+                            .type(ExportRecord.SESSION)
+                            .session(chatSessionMapper.toChatSessionResponse(session))
+                            .build());
+                });
+
+                List<ChatMessage> page = new ArrayList<>(fetchSize);
+                stream(MESSAGES_SQL, userId, sessionId, rs -> {
+                    page.add(ChatMessage.builder()
+                            .id(rs.getObject(1, UUID.class))
+                            .session(ChatSession.builder().id(rs.getObject(2, UUID.class)).build())
+                            .content(rs.getString(3))
+                            .contentZstd(rs.getBytes(4))
+                            .sender(rs.getString(5))
+                            .retrievedContext(rs.getString(6))
+                            .contextChunkHashes(rs.getBytes(7))
+                            .createdAt(rs.getTimestamp(8).toLocalDateTime())
+                            .build());
+                    if (page.size() >= fetchSize) {
+                        writeMessages(generator, page);
+                    }
+                });
+                if (!page.isEmpty()) {
+                    writeMessages(generator, page);
+                }
+
+                // archived messages are not in chat_messages; each session is read from the archive as a whole
+                for (ChatSession session : archived) {
+                    List<ChatMessage> messages = sessionArchiveService.readArchived(session);
+                    for (int i = messages.size() - 1; i >= 0; i--) {
+                        page.add(messages.get(i));
+                        if (page.size() >= fetchSize || i == 0) {
+                            writeMessages(generator, page);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    private void stream(String sql, UUID userId, UUID sessionId, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            // a positive fetch size inside a transaction makes the driver stream rows through a cursor
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, userId);
+            statement.setObject(2, sessionId);
+            statement.setObject(3, sessionId);
+            return statement;
+        }, handler);
+    }
+
+    // contexts are reassembled from their chunks one fetch-sized page at a time
+    private void writeMessages(JsonGenerator generator, List<ChatMessage> page) {
+        contextChunkStore.prefetch(page);
+        for (ChatMessage message : page) {
+            writeLine(generator, ExportRecord.builder()
+                    .type(ExportRecord.MESSAGE)
+                    .sessionId(message.getSession().getId().toString())
+                    .message(chatMessageMapper.toMessageResponseDto(message))
+                    .build());
+        }
+        page.clear();
+    }
+
+    private static void writeLine(JsonGenerator generator, ExportRecord line) {
+        try {
+            generator.writeObject(line);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.rag.service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.ExportRecord;
+import com.rag.service.dto.ImportJobResponse;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.dto.UserResponse;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.ImportJob;
+import com.rag.service.entity.User;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.exception.NotFoundException;
+import com.rag.service.exception.RateLimitException;
+import com.rag.service.mapper.ImportJobMapper;
+import com.rag.service.repository.ImportJobRepository;
+import io.github.bucket4j.Bucket;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.rag.service.util.Constant.IMPORT_JOB_NOT_FOUND_MSG;
+import static com.rag.service.util.Constant.IMPORT_JOB_RUNNING_MSG;
+import static com.rag.service.util.Constant.INVALID_IMPORT_LINE_MSG;
+import static com.rag.service.util.Constant.RATE_LIMIT_EXCEED_MSG;
+
+/**
+ * Bulk import of chat histories in the NDJSON format written by the export. Lines are validated as they are
+ * read and every {@code batch-lines} lines are loaded with COPY into temporary staging tables and merged into
+ * users, chat_sessions and chat_messages with one statement per table. Each batch commits together with the
+ * job's line watermark, so a failed import is resumed by sending the same file again with its job id.
+ * Sessions must appear before their messages, as they do in an export.
+ */
+@Slf4j
+@Service
+public class ChatImportService {
+    private static final String CREATE_STAGING_SQL =
+            "CREATE TEMP TABLE import_users (id UUID, name TEXT, email TEXT) ON COMMIT DROP; " +
+            "CREATE TEMP TABLE import_sessions (id UUID, name TEXT, favorite BOOLEAN, created_at TIMESTAMP, " +
+            "updated_at TIMESTAMP, user_id UUID) ON COMMIT DROP; " +
+            "CREATE TEMP TABLE import_messages (id UUID, session_id UUID, content TEXT, content_zstd BYTEA, " +
+            "sender TEXT, context_chunk_hashes BYTEA, created_at TIMESTAMP, preview TEXT) ON COMMIT DROP";
+    private static final String COPY_USERS_SQL = "COPY import_users FROM STDIN (FORMAT csv)";
+    private static final String COPY_SESSIONS_SQL = "COPY import_sessions FROM STDIN (FORMAT csv)";
+    private static final String COPY_MESSAGES_SQL = "COPY import_messages FROM STDIN (FORMAT csv)";
+    private static final String MERGE_USERS_SQL = "WITH inserted AS (" +
+            "INSERT INTO users (id, name, email) SELECT id, name, email FROM import_users " +
+            "ON CONFLICT DO NOTHING RETURNING id) SELECT count(*) FROM inserted";
+    // sessions of unknown users are skipped; the per-user counters are kept in step with the inserted rows
+    private static final String MERGE_SESSIONS_SQL = "WITH inserted AS (" +
+            "INSERT INTO chat_sessions (id, name, favorite, created_at, updated_at, user_id) " +
+            "SELECT i.id, i.name, i.favorite, i.created_at, i.updated_at, i.user_id FROM import_sessions i " +
+            "JOIN users u ON u.id = i.user_id ON CONFLICT DO NOTHING RETURNING user_id, favorite), " +
+            "counted AS (UPDATE users u SET session_count = u.session_count + c.total, " +
+            "favorite_session_count = u.favorite_session_count + c.favorites, sessions_version = u.sessions_version + 1 " +
+            "FROM (SELECT user_id, count(*) AS total, count(*) FILTER (WHERE favorite) AS favorites " +
+            "FROM inserted GROUP BY user_id) c WHERE u.id = c.user_id) " +
+            "SELECT count(*) FROM inserted";
+    // ids already stored are skipped through message_ids, and ids repeated in the file keep their first row; sessions are
+    // backdated to their oldest message because session reads only scan partitions from the session's creation on;
+    // the activity columns are maintained as SessionActivityRecorder does, with rows locked in the same order
+    private static final String MERGE_MESSAGES_SQL = "WITH inserted AS (" +
+            "INSERT INTO chat_messages (id, session_id, content, content_zstd, sender, context_chunk_hashes, created_at) " +
+            "SELECT DISTINCT ON (i.id) i.id, i.session_id, i.content, i.content_zstd, i.sender, i.context_chunk_hashes, " +
+            "i.created_at FROM import_messages i JOIN chat_sessions s ON s.id = i.session_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM message_ids m WHERE m.id = i.id) " +
+            "ORDER BY i.id, i.created_at RETURNING id, session_id, created_at), " +
+            "versioned AS (UPDATE chat_sessions s SET created_at = LEAST(s.created_at, f.created_at), " +
+            "message_version = s.message_version + 1, message_count = s.message_count + f.total, " +
+            "last_message_preview = CASE WHEN s.last_message_at IS NULL OR s.last_message_at <= f.last_message_at " +
+            "THEN (SELECT p.preview FROM import_messages p WHERE p.id = f.last_id LIMIT 1) ELSE s.last_message_preview END, " +
+            "last_message_at = GREATEST(s.last_message_at, f.last_message_at) " +
+            "FROM (SELECT session_id, min(created_at) AS created_at, max(created_at) AS last_message_at, count(*) AS total, " +
+            "(array_agg(id ORDER BY created_at DESC))[1] AS last_id FROM inserted GROUP BY session_id) f, " +
+            "(SELECT id FROM chat_sessions WHERE id IN (SELECT session_id FROM inserted) ORDER BY id FOR NO KEY UPDATE) l " +
+            "WHERE s.id = f.session_id AND l.id = s.id RETURNING s.user_id), " +
+            "touched AS (UPDATE users u SET sessions_version = u.sessions_version + 1 " +
+            "FROM (SELECT id FROM users WHERE id IN (SELECT user_id FROM versioned) ORDER BY id FOR NO KEY UPDATE) v " +
+            "WHERE u.id = v.id) " +
+            "SELECT inserted.id, s.user_id, s.archived_at IS NOT NULL FROM inserted JOIN chat_sessions s ON s.id = inserted.session_id";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ImportJobRepository importJobRepository;
+    private final ImportJobMapper importJobMapper;
+    private final ContextChunkStore contextChunkStore;
+    private final PayloadCodec payloadCodec;
+    private final SessionArchiveService sessionArchiveService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatMetrics chatMetrics;
+    private final int batchLines;
+    private final long staleAfterSeconds;
+
+    public ChatImportService(ImportJobRepository importJobRepository,
+                             ImportJobMapper importJobMapper,
+                             ContextChunkStore contextChunkStore,
+                             PayloadCodec payloadCodec,
+                             SessionArchiveService sessionArchiveService,
+                             ApplicationEventPublisher eventPublisher,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             ChatMetrics chatMetrics,
+                             @Value("${chat.import.batch-lines:10000}") int batchLines,
+                             @Value("${chat.import.stale-after-seconds:300}") long staleAfterSeconds) {
+        this.importJobRepository = importJobRepository;
+        this.importJobMapper = importJobMapper;
+        this.contextChunkStore = contextChunkStore;
+        this.payloadCodec = payloadCodec;
+        this.sessionArchiveService = sessionArchiveService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.chatMetrics = chatMetrics;
+        this.batchLines = batchLines;
+        this.staleAfterSeconds = staleAfterSeconds;
+    }
+
+    public ImportJobResponse getJob(String jobId) {
+        return importJobMapper.toImportJobResponse(importJobRepository.findById(UUID.fromString(jobId))
+                .orElseThrow(() -> new NotFoundException(IMPORT_JOB_NOT_FOUND_MSG)));
+    }
+
+    /**
+     * Imports the stream as a new job, or resumes the given job after its last committed line.
+     */
+    public ImportJobResponse importHistory(String jobId, InputStream input, Bucket bucket) {
+        if (!bucket.tryConsume(1)) {
+            chatMetrics.rateLimited(ChatMetrics.SHARED_LIMIT);
+            throw new RateLimitException(RATE_LIMIT_EXCEED_MSG);
+        }
+        ImportJob job = jobId == null || jobId.isBlank() ? startJob() : resumeJob(UUID.fromString(jobId));
+
+        try {
+            load(job, input);
+            transactionTemplate.executeWithoutResult(status ->
+                    importJobRepository.finish(job.getId(), ImportJob.Status.COMPLETED.name(), null));
+        } catch (RuntimeException e) {
+            log.error("Import {} failed", job.getId(), e);
+            transactionTemplate.executeWithoutResult(status ->
+                    importJobRepository.finish(job.getId(), ImportJob.Status.FAILED.name(), String.valueOf(e.getMessage())));
+            throw e;
+        }
+        return getJob(job.getId().toString());
+    }
+
+    private ImportJob startJob() {
+        return transactionTemplate.execute(status -> importJobRepository.save(ImportJob.builder()
+                .id(UUID.randomUUID())
+                .status(ImportJob.Status.RUNNING)
+                .build()));
+    }
+
+    private ImportJob resumeJob(UUID jobId) {
+        Integer claimed = transactionTemplate.execute(status ->
+                importJobRepository.claimForResume(jobId, LocalDateTime.now().minusSeconds(staleAfterSeconds)));
+        ImportJob job = importJobRepository.findById(jobId)
+                .orElseThrow(() -> new NotFoundException(IMPORT_JOB_NOT_FOUND_MSG));
+        if (claimed == null || claimed == 0) {
+            throw new IllegalArgumentException(IMPORT_JOB_RUNNING_MSG);
+        }
+        return job;
+    }
+
+    private void load(ImportJob job, InputStream input) {
+        long resumeAfter = job.getLinesCommitted();
+        Batch batch = new Batch();
+        long lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= resumeAfter || line.isBlank()) {
+                    continue;
+                }
+                batch.add(parse(line, lineNumber));
+                if (batch.lines >= batchLines) {
+                    commit(job.getId(), batch, lineNumber);
+                    batch = new Batch();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (lineNumber > resumeAfter) {
+            commit(job.getId(), batch, lineNumber);
+        }
+    }
+
+    private Object parse(String line, long lineNumber) {
+        ExportRecord record;
+        try {
+            record = objectMapper.readValue(line, ExportRecord.class);
+        } catch (JsonProcessingException e) {
+            throw invalid(lineNumber, "not a JSON object");
+        }
+        if (ExportRecord.USER.equals(record.getType()) && record.getUser() != null) {
+            UserResponse user = record.getUser();
+            require(user.getId() != null && notBlank(user.getName()) && notBlank(user.getEmail()), lineNumber,
+                    "user needs id, name and email");
+            return User.builder().id(user.getId()).name(user.getName()).email(user.getEmail()).build();
+        }
+        if (ExportRecord.SESSION.equals(record.getType()) && record.getSession() != null) {
+            ChatSessionResponse session = record.getSession();
+            require(session.getId() != null && session.getUserId() != null && notBlank(session.getName()), lineNumber,
+                    "session needs id, userId and name");
+            LocalDateTime createdAt = session.getCreatedAt() != null ? session.getCreatedAt() : LocalDateTime.now();
+            return ChatSession.builder()
+                    .id(session.getId())
+                    .name(session.getName())
+                    .favorite(session.isFavorite())
+                    .createdAt(createdAt)
+                    .updatedAt(session.getUpdatedAt() != null ? session.getUpdatedAt() : createdAt)
+                    .user(User.builder().id(session.getUserId()).build())
+                    .build();
+        }
+        if (ExportRecord.MESSAGE.equals(record.getType()) && record.getMessage() != null) {
+            MessageResponseDto message = record.getMessage();
+            require(notBlank(record.getSessionId()) && message.getContent() != null && notBlank(message.getSender()),
+                    lineNumber, "message needs sessionId, content and sender");
+            try {
+                return ChatMessage.builder()
+                        .id(notBlank(message.getId()) ? UUID.fromString(message.getId()) : UUID.randomUUID())
+                        .session(ChatSession.builder().id(UUID.fromString(record.getSessionId())).build())
+                        .content(message.getContent())
+                        .sender(message.getSender())
+                        .retrievedContext(message.getContext())
+                        .createdAt(notBlank(message.getCreatedAt()) ? LocalDateTime.parse(message.getCreatedAt()) : LocalDateTime.now())
+                        .build();
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw invalid(lineNumber, "malformed id or createdAt");
+            }
+        }
+        throw invalid(lineNumber, "unknown record type " + record.getType());
+    }
+
+    private void commit(UUID jobId, Batch batch, long linesCommitted) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!batch.messages.isEmpty()) {
+                contextChunkStore.storeAll(batch.messages);
+                payloadCodec.compressAll(batch.messages);
+            }
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                stage(connection, batch);
+                return null;
+            });
+
+            long users = batch.users.isEmpty() ? 0 : jdbcTemplate.queryForObject(MERGE_USERS_SQL, Long.class);
+            long sessions = batch.sessions.isEmpty() ? 0 : jdbcTemplate.queryForObject(MERGE_SESSIONS_SQL, Long.class);
+            List<ChatMessage> inserted = new ArrayList<>();
+            if (!batch.messages.isEmpty()) {
+                Map<UUID, ChatMessage> byId = new HashMap<>();
+                batch.messages.forEach(message -> byId.put(message.getId(), message));
+                Set<UUID> archivedSessions = new HashSet<>();
+                jdbcTemplate.query(MERGE_MESSAGES_SQL, (RowCallbackHandler) rs -> {
+                    ChatMessage message = byId.get(rs.getObject(1, UUID.class));
+                    message.getSession().setUser(User.builder().id(rs.getObject(2, UUID.class)).build());
+                    inserted.add(message);
+                    if (rs.getBoolean(3)) {
+                        archivedSessions.add(message.getSession().getId());
+                    }
+                });
+                archivedSessions.forEach(sessionArchiveService::rehydrate);
+            }
+            long skipped = batch.users.size() + batch.sessions.size() + batch.messages.size() - users - sessions - inserted.size();
+            importJobRepository.recordProgress(jobId, linesCommitted, users, sessions, inserted.size(), skipped);
+            if (!inserted.isEmpty()) {
+                eventPublisher.publishEvent(new ChatMessagesSavedEvent(inserted, true));
+            }
+        });
+        log.debug("Import {} committed up to line {}", jobId, linesCommitted);
+    }
+
+    private static void stage(Connection connection, Batch batch) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_SQL);
+        }
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        try {
+            if (!batch.users.isEmpty()) {
+                try (Writer out = copyIn(pgConnection, COPY_USERS_SQL)) {
+                    for (User user : batch.users) {
+                        row(out, user.getId(), user.getName(), user.getEmail());
+                    }
+                }
+            }
+            if (!batch.sessions.isEmpty()) {
+                try (Writer out = copyIn(pgConnection, COPY_SESSIONS_SQL)) {
+                    for (ChatSession session : batch.sessions) {
+                        row(out, session.getId(), session.getName(), session.isFavorite(), session.getCreatedAt(),
+                                session.getUpdatedAt(), session.getUser().getId());
+                    }
+                }
+            }
+            if (!batch.messages.isEmpty()) {
+                try (Writer out = copyIn(pgConnection, COPY_MESSAGES_SQL)) {
+                    for (int i = 0; i < batch.messages.size(); i++) {
+                        ChatMessage message = batch.messages.get(i);
+                        row(out, message.getId(), message.getSession().getId(), message.getContent(), message.getContentZstd(),
+                                message.getSender(), message.getContextChunkHashes(), message.getCreatedAt(), batch.previews.get(i));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("COPY into staging tables failed", e);
+        }
+    }
+
+    private static Writer copyIn(PGConnection connection, String sql) throws SQLException {
+        return new BufferedWriter(new OutputStreamWriter(new PGCopyOutputStream(connection, sql), StandardCharsets.UTF_8));
+    }
+
+    // CSV row: unquoted empty is NULL, text is always quoted so an empty string stays empty
+    private static void row(Writer out, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object value = values[i];
+            if (value instanceof String text) {
+                out.write('"');
+                out.write(text.replace("\"", "\"\""));
+                out.write('"');
+            } else if (value instanceof byte[] bytes) {
+                out.write("\\x");
+                out.write(HEX.formatHex(bytes));
+            } else if (value != null) {
+                out.write(value.toString());
+            }
+        }
+        out.write('\n');
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static void require(boolean condition, long lineNumber, String reason) {
+        if (!condition) {
+            throw invalid(lineNumber, reason);
+        }
+    }
+
+    private static IllegalArgumentException invalid(long lineNumber, String reason) {
+        return new IllegalArgumentException(INVALID_IMPORT_LINE_MSG + lineNumber + ": " + reason);
+    }
+
+    private static class Batch {
+        private final List<User> users = new ArrayList<>();
+        private final List<ChatSession> sessions = new ArrayList<>();
+        private final List<ChatMessage> messages = new ArrayList<>();
+        // taken before the content is compressed
+        private final List<String> previews = new ArrayList<>();
+        private int lines;
+
+        private void add(Object row) {
+            if (row instanceof User user) {
+                users.add(user);
+            } else if (row instanceof ChatSession session) {
+                sessions.add(session);
+            } else {
+                ChatMessage message = (ChatMessage) row;
+                messages.add(message);
+                previews.add(SessionActivityRecorder.preview(message.getContent()));
+            }
+            lines++;
+        }
+    }
+}
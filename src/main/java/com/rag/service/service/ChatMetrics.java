@@ -0,0 +1,119 @@
+package com.rag.service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Sizes of message payloads and pages, and rate limit rejections. Rejections are tagged with a fingerprint of the
+ * API key rather than the key itself, which keeps the tag out of scrapes and bounded by the configured keys.
+ */
+@Component
+public class ChatMetrics {
+    /**
+     * Request attribute holding the fingerprint of the caller's API key, set once the key is accepted.
+     */
+    public static final String API_KEY_FINGERPRINT_ATTRIBUTE = ChatMetrics.class.getName() + ".apiKey";
+    public static final String API_KEY_LIMIT = "api-key";
+    public static final String SHARED_LIMIT = "shared";
+    public static final String RELATIONAL = "relational";
+    public static final String JSONB = "jsonb";
+
+    private static final double[] PAYLOAD_BYTES = {256, 1024, 4096, 16384, 65536, 262144, 1048576};
+    private static final double[] PAGE_ITEMS = {1, 10, 20, 50, 100, 200};
+
+    private final MeterRegistry meterRegistry;
+
+    public ChatMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordPayload(String store, String content, String context) {
+        recordPayloadBytes(store, "content", utf8Length(content));
+        if (context != null) {
+            recordPayloadBytes(store, "context", utf8Length(context));
+        }
+    }
+
+    public void recordPayloadBytes(String store, String part, long bytes) {
+        DistributionSummary.builder("chat.payload.size")
+                .description("Size of message payloads and rendered pages")
+                .baseUnit("bytes")
+                .tag("store", store)
+                .tag("part", part)
+                .serviceLevelObjectives(PAYLOAD_BYTES)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    public void recordPage(String resource, int items) {
+        DistributionSummary.builder("chat.page.size")
+                .description("Items returned per page")
+                .baseUnit("items")
+                .tag("resource", resource)
+                .serviceLevelObjectives(PAGE_ITEMS)
+                .register(meterRegistry)
+                .record(items);
+    }
+
+    /**
+     * Counts a rejection by the shared service bucket, attributed to the API key of the current request.
+     */
+    public void rateLimited(String limit) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object fingerprint = attributes != null ?
+                attributes.getAttribute(API_KEY_FINGERPRINT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) : null;
+        rateLimited(limit, fingerprint != null ? fingerprint.toString() : "unknown");
+    }
+
+    public void rateLimited(String limit, String apiKeyFingerprint) {
+        Counter.builder("chat.ratelimit.rejected")
+                .description("Requests rejected by a rate limit")
+                .tag("limit", limit)
+                .tag("api.key", apiKeyFingerprint)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * First eight hex digits of the SHA-256 of the key, enough to tell configured keys apart.
+     */
+    public static String fingerprint(String apiKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 4);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // counted without encoding, which would copy every payload once more
+    static long utf8Length(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                // four bytes per pair
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -1,31 +1,70 @@
 package com.rag.service.service;
 
 import com.rag.service.dto.AddMessageRequest;
+import com.rag.service.dto.BatchAddMessageRequest;
+import com.rag.service.dto.BatchAddMessageResponse;
+import com.rag.service.dto.BatchMessageItem;
 import com.rag.service.dto.ChatMessageResponse;
 import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.ConditionalResponse;
 import com.rag.service.dto.CreateSessionRequest;
+import com.rag.service.dto.CursorPageResponse;
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.dto.MessageSearchResult;
 import com.rag.service.dto.PageableResponse;
+import com.rag.service.dto.SimilarMessagesRequest;
+import com.rag.service.dto.SliceResponse;
 import com.rag.service.entity.ChatMessage;
 import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.MessageEmbedding;
 import com.rag.service.entity.User;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.ChatSessionDeletedEvent;
+import com.rag.service.exception.ConflictException;
 import com.rag.service.exception.NotFoundException;
 import com.rag.service.exception.RateLimitException;
 import com.rag.service.mapper.ChatMessageMapper;
 import com.rag.service.mapper.ChatSessionMapper;
 import com.rag.service.repository.ChatMessageRepository;
 import com.rag.service.repository.ChatSessionRepository;
+import com.rag.service.repository.MessageEmbeddingRepository;
+import com.rag.service.repository.SessionVersion;
 import com.rag.service.repository.UserRepository;
 import io.github.bucket4j.Bucket;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static com.rag.service.util.Constant.DUPLICATE_MESSAGE_ID_MSG;
+import static com.rag.service.util.Constant.INVALID_EMBEDDING_MSG;
+import static com.rag.service.util.Constant.INVALID_PAGE_SIZE_MSG;
+import static com.rag.service.util.Constant.INVALID_SEARCH_LIMIT_MSG;
+import static com.rag.service.util.Constant.INVALID_SEARCH_QUERY_MSG;
+import static com.rag.service.util.Constant.MAX_CURSOR_PAGE_SIZE;
+import static com.rag.service.util.Constant.MAX_SEARCH_RESULTS;
+import static com.rag.service.util.Constant.MESSAGE_ID_EXISTS_MSG;
 import static com.rag.service.util.Constant.RATE_LIMIT_EXCEED_MSG;
 import static com.rag.service.util.Constant.SESSION_ALREADY_EXIST_MSG;
 import static com.rag.service.util.Constant.SESSION_NOT_FOUND_MSG;
@@ -34,12 +73,29 @@ import static com.rag.service.util.Constant.USER_NOT_FOUND;
 
 @Service
 @RequiredArgsConstructor
+@Timed("chat.service")
 public class ChatService {
     private final ChatSessionRepository sessionRepository;
     private final ChatMessageRepository messageRepository;
     private final UserRepository userRepository;
     private final ChatSessionMapper chatSessionMapper;
     private final ChatMessageMapper chatMessageMapper;
+    private final MessageIngestQueue messageIngestQueue;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MessageEmbeddingRepository embeddingRepository;
+    private final ContextChunkStore contextChunkStore;
+    private final PayloadCodec payloadCodec;
+    private final SessionArchiveService sessionArchiveService;
+    private final LiveMessageBus liveMessageBus;
+    private final SessionActivityRecorder sessionActivityRecorder;
+    private final ChatMetrics chatMetrics;
+
+    @Value("${chat.embeddings.dimensions:1536}")
+    private int embeddingDimensions;
+
+    @Value("${chat.stream.buffer-size:256}")
+    private int streamReplayLimit;
 
     @Transactional
     public ChatSessionResponse createSession(CreateSessionRequest request, Bucket rateLimitBucket) {
@@ -55,6 +111,7 @@ public class ChatService {
         ChatSession session = chatSessionMapper.toEntity(request, user);
 
         session = sessionRepository.save(session);
+        userRepository.adjustSessionCounts(user.getId(), 1, 0);
         return chatSessionMapper.toChatSessionResponse(session);
     }
 
@@ -69,15 +126,19 @@ public class ChatService {
                 .filter(s -> s.getUser().getId().equals(userUUID))
                 .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
 
-        if (name != null && !name.equals(session.getName())) {
+        boolean renamed = name != null && !name.equals(session.getName());
+        if (renamed) {
             if (sessionRepository.existsByNameAndUser(name, session.getUser())) {
                 throw new IllegalArgumentException(SESSION_ALREADY_EXIST_MSG);
             }
             session.setName(name);
         }
 
-        if (favorite != null) {
+        if (favorite != null && favorite != session.isFavorite()) {
             session.setFavorite(favorite);
+            userRepository.adjustSessionCounts(userUUID, 0, favorite ? 1 : -1);
+        } else if (renamed) {
+            userRepository.adjustSessionCounts(userUUID, 0, 0);
         }
         return chatSessionMapper.toChatSessionResponse(sessionRepository.save(session));
     }
@@ -103,34 +164,177 @@ public class ChatService {
 //                .retrievedContext(request.getContext())
 //                .build();
 
+        validateEmbedding(request.getEmbedding());
+        chatMetrics.recordPayload(ChatMetrics.RELATIONAL, request.getContent(), request.getContext());
+
+        sessionArchiveService.rehydrateIfArchived(session);
         ChatMessage message=chatMessageMapper.toEntity(request,session);
-        messageRepository.save(message);
+        if (messageIngestQueue.isEnabled()) {
+            enqueueAfterCommit(message);
+        } else {
+            contextChunkStore.storeAll(List.of(message));
+            payloadCodec.compressAll(List.of(message));
+            messageRepository.save(message);
+            if (message.getEmbedding() != null) {
+                embeddingRepository.save(toEmbedding(message));
+            }
+            sessionActivityRecorder.record(List.of(message));
+            eventPublisher.publishEvent(new ChatMessagesSavedEvent(List.of(message)));
+        }
+    }
+
+    // the writers must neither store a message whose request rolls back nor write it before the rehydrated
+    // session is committed; a full or stopped queue still fails the request, after the commit
+    private void enqueueAfterCommit(ChatMessage message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            messageIngestQueue.enqueue(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageIngestQueue.enqueue(message);
+            }
+        });
+    }
+
+    @Transactional
+    public BatchAddMessageResponse saveMessages(BatchAddMessageRequest request, Bucket rateLimitBucket) {
+        validateRateLimit(rateLimitBucket);
+
+        UUID userUUID = UUID.fromString(request.getUserId());
+        Set<UUID> sessionIds = request.getMessages().stream()
+                .map(item -> UUID.fromString(item.getSessionId()))
+                .collect(Collectors.toSet());
+
+        Map<UUID, ChatSession> sessions = sessionRepository.findAllById(sessionIds).stream()
+                .collect(Collectors.toMap(ChatSession::getId, Function.identity()));
+        for (UUID sessionId : sessionIds) {
+            ChatSession session = sessions.get(sessionId);
+            if (session == null) {
+                throw new NotFoundException(SESSION_NOT_FOUND_MSG);
+            }
+            if (!session.getUser().getId().equals(userUUID)) {
+                throw new IllegalArgumentException(UNAUTHORISED_SESSION_USER_MSG);
+            }
+        }
+        sessions.values().forEach(sessionArchiveService::rehydrateIfArchived);
+
+        Set<UUID> messageIds = new HashSet<>();
+        List<ChatMessage> messages = new ArrayList<>(request.getMessages().size());
+        for (BatchMessageItem item : request.getMessages()) {
+            validateEmbedding(item.getEmbedding());
+            chatMetrics.recordPayload(ChatMetrics.RELATIONAL, item.getContent(), item.getContext());
+            ChatMessage message = chatMessageMapper.toEntity(item, sessions.get(UUID.fromString(item.getSessionId())));
+            if (message.getId() == null) {
+                message.setId(UUID.randomUUID());
+            } else if (!messageIds.add(message.getId())) {
+                throw new IllegalArgumentException(DUPLICATE_MESSAGE_ID_MSG + message.getId());
+            }
+            messages.add(message);
+        }
+        // client ids replayed from an earlier batch are rejected as a whole, before anything is written
+        if (!messageIds.isEmpty()) {
+            List<UUID> existing = messageRepository.findExistingIds(messageIds);
+            if (!existing.isEmpty()) {
+                throw new ConflictException(MESSAGE_ID_EXISTS_MSG + existing);
+            }
+        }
+
+        contextChunkStore.storeAll(messages);
+        payloadCodec.compressAll(messages);
+        messageRepository.saveAll(messages);
+        embeddingRepository.saveAll(messages.stream()
+                .filter(message -> message.getEmbedding() != null)
+                .map(ChatService::toEmbedding)
+                .toList());
+        sessionActivityRecorder.record(messages);
+        eventPublisher.publishEvent(new ChatMessagesSavedEvent(messages));
+        return BatchAddMessageResponse.builder()
+                .messageIds(messages.stream().map(m -> m.getId().toString()).toList())
+                .build();
     }
 
     @Transactional(readOnly = true)
-    public Page<ChatSessionResponse> getFavoriteSessions(String userId, Pageable pageable, Bucket rateLimitBucket) {
+    public ConditionalResponse<Page<ChatSessionResponse>> getFavoriteSessions(String userId, Pageable pageable,
+                                                                              List<String> ifNoneMatch, Bucket rateLimitBucket) {
         validateRateLimit(rateLimitBucket);
-        return sessionRepository.findByUserIdAndFavoriteTrue(UUID.fromString(userId), pageable)
-                .map(chatSessionMapper::toChatSessionResponse);
+        UUID userUUID = UUID.fromString(userId);
+        String etag = sessionsEtag(userUUID);
+        if (ConditionalResponse.matches(etag, ifNoneMatch)) {
+            return ConditionalResponse.notModified(etag);
+        }
+        Page<ChatSession> sessions = sessionRepository.findByUserIdAndFavoriteTrue(userUUID, byActivity(pageable));
+        chatMetrics.recordPage("sessions", sessions.getNumberOfElements());
+        return new ConditionalResponse<>(etag, sessions.map(chatSessionMapper::toChatSessionResponse));
     }
 
     @Transactional(readOnly = true)
-    public Page<ChatSessionResponse> getAllSessions(String userId, Pageable pageable, Bucket rateLimitBucket) {
+    public ConditionalResponse<Page<ChatSessionResponse>> getAllSessions(String userId, Pageable pageable,
+                                                                         List<String> ifNoneMatch, Bucket rateLimitBucket) {
         validateRateLimit(rateLimitBucket);
-        return sessionRepository.findByUserId(UUID.fromString(userId), pageable)
-                .map(chatSessionMapper::toChatSessionResponse);
+        UUID userUUID = UUID.fromString(userId);
+        String etag = sessionsEtag(userUUID);
+        if (ConditionalResponse.matches(etag, ifNoneMatch)) {
+            return ConditionalResponse.notModified(etag);
+        }
+        Page<ChatSession> sessions = sessionRepository.findByUserId(userUUID, byActivity(pageable));
+        chatMetrics.recordPage("sessions", sessions.getNumberOfElements());
+        return new ConditionalResponse<>(etag, sessions.map(chatSessionMapper::toChatSessionResponse));
+    }
+
+    @Transactional(readOnly = true)
+    public ConditionalResponse<SliceResponse<ChatSessionResponse>> getSessionsSlice(String userId, boolean favoritesOnly,
+                                                                                    boolean includeCount, Pageable pageable,
+                                                                                    List<String> ifNoneMatch,
+                                                                                    Bucket rateLimitBucket) {
+        validateRateLimit(rateLimitBucket);
+        UUID userUUID = UUID.fromString(userId);
+        String etag = sessionsEtag(userUUID);
+        if (ConditionalResponse.matches(etag, ifNoneMatch)) {
+            return ConditionalResponse.notModified(etag);
+        }
+
+        Slice<ChatSession> sessions = favoritesOnly ?
+                sessionRepository.findSliceByUserIdAndFavoriteTrue(userUUID, byActivity(pageable)) :
+                sessionRepository.findSliceByUserId(userUUID, byActivity(pageable));
+        chatMetrics.recordPage("sessions", sessions.getNumberOfElements());
+
+        Long approximateTotal = null;
+        if (includeCount) {
+            approximateTotal = favoritesOnly ?
+                    userRepository.findFavoriteSessionCount(userUUID) :
+                    userRepository.findSessionCount(userUUID);
+        }
+
+        return new ConditionalResponse<>(etag, SliceResponse.<ChatSessionResponse>builder()
+                .data(chatSessionMapper.toChatSessionResponseList(sessions.getContent()))
+                .page(sessions.getNumber())
+                .size(sessions.getSize())
+                .hasNext(sessions.hasNext())
+                .approximateTotal(approximateTotal)
+                .build());
     }
 
     @Transactional(readOnly = true)
-    public PageableResponse getSessionMessages(String sessionId, Pageable pageable, Bucket bucket) {
+    public ConditionalResponse<PageableResponse> getSessionMessages(String sessionId, Pageable pageable,
+                                                                    List<String> ifNoneMatch, Bucket bucket) {
         validateRateLimit(bucket);
 
         UUID sessionUuid = UUID.fromString(sessionId);
+        String etag = sessionRepository.findVersionById(sessionUuid).map(ChatService::messagesEtag).orElse(null);
+        if (ConditionalResponse.matches(etag, ifNoneMatch)) {
+            return ConditionalResponse.notModified(etag);
+        }
         ChatSession chatSession = sessionRepository.findById(sessionUuid)
                 .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
 
-        Page<ChatMessage> sessionMessage = messageRepository.findBySessionIdOrderByCreatedAtDesc(sessionUuid, pageable);
+        Page<ChatMessage> sessionMessage = chatSession.getArchivedAt() != null ?
+                sessionArchiveService.findMessages(chatSession, pageable) :
+                messageRepository.findBySessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(
+                        sessionUuid, chatSession.getCreatedAt(), pageable);
         List<ChatMessage> messages = sessionMessage.getContent();
+        chatMetrics.recordPage("messages", messages.size());
 
         ChatMessageResponse chatMessageResponse;
         if (messages.isEmpty()) {
@@ -140,19 +344,148 @@ public class ChatService {
                 .messages(new ArrayList<>())
                 .build();
         } else {
+            contextChunkStore.prefetch(messages);
             chatMessageResponse = chatMessageMapper.toChatMessageResponse(
                 chatSession,
                 chatMessageMapper.toMessageResponseDtoList(messages)
             );
         }
 
-        return PageableResponse.builder()
+        return new ConditionalResponse<>(etag, PageableResponse.builder()
                 .data(chatMessageResponse)
                 .totalPages(sessionMessage.getTotalPages())
                 .totalElements(sessionMessage.getTotalElements())
+                .build());
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse getSessionMessagesByCursor(String sessionId, String cursor, int size, Bucket bucket) {
+        validateRateLimit(bucket);
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException(INVALID_PAGE_SIZE_MSG + MAX_CURSOR_PAGE_SIZE);
+        }
+
+        UUID sessionUuid = UUID.fromString(sessionId);
+        ChatSession chatSession = sessionRepository.findById(sessionUuid)
+                .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
+
+        // fetch one extra row to learn whether another page exists without counting
+        List<ChatMessage> messages;
+        if (chatSession.getArchivedAt() != null) {
+            MessageCursor position = cursor == null || cursor.isBlank() ? null : MessageCursor.decode(cursor);
+            messages = sessionArchiveService.findKeysetPage(chatSession, position, size + 1);
+        } else if (cursor == null || cursor.isBlank()) {
+            messages = messageRepository.findFirstKeysetPage(sessionUuid, chatSession.getCreatedAt(), size + 1);
+        } else {
+            MessageCursor position = MessageCursor.decode(cursor);
+            messages = messageRepository.findKeysetPageAfter(sessionUuid, chatSession.getCreatedAt(),
+                    position.createdAt(), position.id(), size + 1);
+        }
+
+        String nextCursor = null;
+        if (messages.size() > size) {
+            messages = messages.subList(0, size);
+            ChatMessage last = messages.get(size - 1);
+            nextCursor = new MessageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        chatMetrics.recordPage("messages", messages.size());
+        contextChunkStore.prefetch(messages);
+
+        return CursorPageResponse.builder()
+                .data(chatMessageMapper.toChatMessageResponse(chatSession, chatMessageMapper.toMessageResponseDtoList(messages)))
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
                 .build();
     }
 
+    /**
+     * Streams messages of the session as they are saved. With the id of the last event received, messages saved
+     * since are replayed first.
+     */
+    // not read-only: a lagging replica could miss messages the client has not seen yet
+    @Transactional
+    public SseEmitter streamMessages(String sessionId, String lastEventId, Bucket bucket) {
+        validateRateLimit(bucket);
+
+        UUID sessionUuid = UUID.fromString(sessionId);
+        ChatSession chatSession = sessionRepository.findById(sessionUuid)
+                .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
+        MessageCursor position = lastEventId == null || lastEventId.isBlank() ? null : MessageCursor.decode(lastEventId);
+
+        // subscribe before reading the backlog so that nothing committed in between is missed
+        LiveMessageBus.Subscription subscription = liveMessageBus.subscribe(LiveMessageBus.chatSessionTopic(sessionUuid));
+        try {
+            List<LiveMessageBus.LiveEvent> backlog = List.of();
+            if (position != null && chatSession.getArchivedAt() != null) {
+                backlog = List.of(LiveMessageBus.RESET);
+            } else if (position != null) {
+                List<ChatMessage> missed = messageRepository.findNewerThan(sessionUuid, position.createdAt(), position.id(),
+                        streamReplayLimit + 1);
+                backlog = missed.size() > streamReplayLimit ? List.of(LiveMessageBus.RESET) : liveMessageBus.toEvents(missed);
+            }
+            return subscription.start(backlog);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<MessageSearchResult> searchMessages(String userId, String query, int limit, Bucket bucket) {
+        validateRateLimit(bucket);
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException(INVALID_SEARCH_QUERY_MSG);
+        }
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException(INVALID_SEARCH_LIMIT_MSG + MAX_SEARCH_RESULTS);
+        }
+
+        return toSearchResults(messageSearchIndex.search(UUID.fromString(userId), query, limit));
+    }
+
+    @Transactional(readOnly = true)
+    public List<MessageSearchResult> searchSimilarMessages(SimilarMessagesRequest request, Bucket bucket) {
+        validateRateLimit(bucket);
+        if (request.getK() < 1 || request.getK() > MAX_SEARCH_RESULTS) {
+            throw new IllegalArgumentException(INVALID_SEARCH_LIMIT_MSG + MAX_SEARCH_RESULTS);
+        }
+        if (request.getEmbedding() == null) {
+            throw new IllegalArgumentException(INVALID_EMBEDDING_MSG + embeddingDimensions);
+        }
+        validateEmbedding(request.getEmbedding());
+
+        UUID userUUID = UUID.fromString(request.getUserId());
+        UUID sessionUUID = null;
+        if (request.getSessionId() != null && !request.getSessionId().isBlank()) {
+            sessionUUID = UUID.fromString(request.getSessionId());
+            sessionRepository.findById(sessionUUID)
+                    .filter(s -> s.getUser().getId().equals(userUUID))
+                    .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
+        }
+
+        return toSearchResults(messageSearchIndex.searchSimilar(userUUID, sessionUUID, request.getEmbedding(), request.getK()));
+    }
+
+    private List<MessageSearchResult> toSearchResults(List<MessageSearchIndex.Hit> hits) {
+        Map<UUID, ChatMessage> messages = messageRepository.findAllById(hits.stream().map(MessageSearchIndex.Hit::messageId).toList())
+                .stream()
+                .collect(Collectors.toMap(ChatMessage::getId, Function.identity()));
+        contextChunkStore.prefetch(messages.values());
+
+        // keep index ranking; hits whose row is already gone are dropped
+        return hits.stream()
+                .filter(hit -> messages.containsKey(hit.messageId()))
+                .map(hit -> {
+                    ChatMessage message = messages.get(hit.messageId());
+                    return MessageSearchResult.builder()
+                            .sessionId(message.getSession().getId().toString())
+                            .score(hit.score())
+                            .message(chatMessageMapper.toMessageResponseDto(message))
+                            .build();
+                })
+                .toList();
+    }
+
     @Transactional
     public void deleteSession(String sessionId, String userId, Bucket rateLimitBucket) {
         validateRateLimit(rateLimitBucket);
@@ -163,10 +496,65 @@ public class ChatService {
                 .filter(s -> s.getUser().getId().equals(userUUID))
                 .orElseThrow(() -> new NotFoundException(SESSION_NOT_FOUND_MSG));
         sessionRepository.delete(session);
+        userRepository.adjustSessionCounts(userUUID, -1, session.isFavorite() ? -1 : 0);
+        eventPublisher.publishEvent(new ChatSessionDeletedEvent(sessionUUID));
+    }
+
+    // read before the page, in the same transaction: a write committed in between leaves the tag behind the body,
+    // which costs one extra download but never a stale 304
+    private String sessionsEtag(UUID userId) {
+        Long version = userRepository.findSessionsVersion(userId);
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    // the session name is part of the page, and renames move updated_at
+    private static String messagesEtag(SessionVersion version) {
+        LocalDateTime updatedAt = version.getUpdatedAt();
+        long updatedMicros = updatedAt == null ? 0 :
+                updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + updatedAt.getNano() / 1_000;
+        return "\"" + version.getMessageVersion() + "-" + updatedMicros + "\"";
+    }
+
+    private void validateEmbedding(float[] embedding) {
+        if (embedding == null) {
+            return;
+        }
+        // cosine similarity is undefined for a zero vector
+        boolean nonZero = false;
+        for (float value : embedding) {
+            if (!Float.isFinite(value)) {
+                throw new IllegalArgumentException(INVALID_EMBEDDING_MSG + embeddingDimensions);
+            }
+            nonZero |= value != 0;
+        }
+        if (embedding.length != embeddingDimensions || !nonZero) {
+            throw new IllegalArgumentException(INVALID_EMBEDDING_MSG + embeddingDimensions);
+        }
+    }
+
+    // sort=lastMessageAt orders by lastActivityAt, so sessions without messages come last when sorting descending;
+    // the query derivation ignores Sort.NullHandling
+    private static Pageable byActivity(Pageable pageable) {
+        Sort sort = pageable.getSort();
+        if (sort.getOrderFor("lastMessageAt") == null) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(sort.stream()
+                .map(order -> order.getProperty().equals("lastMessageAt") ? order.withProperty("lastActivityAt") : order)
+                .toList()));
+    }
+
+    private static MessageEmbedding toEmbedding(ChatMessage message) {
+        return MessageEmbedding.builder()
+                .messageId(message.getId())
+                .sessionId(message.getSession().getId())
+                .embedding(message.getEmbedding())
+                .build();
     }
 
-    private static void validateRateLimit(Bucket rateLimitBucket) {
+    private void validateRateLimit(Bucket rateLimitBucket) {
         if (!rateLimitBucket.tryConsume(1)) {
+            chatMetrics.rateLimited(ChatMetrics.SHARED_LIMIT);
             throw new RateLimitException(RATE_LIMIT_EXCEED_MSG);
         }
     }
@@ -0,0 +1,225 @@
+package com.rag.service.service;
+
+import com.rag.service.entity.ChatMessage;
+import org.mapstruct.Named;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Content-addressed storage for retrieved context. A context is split after every blank line, each chunk is
+ * stored once in context_chunks under its SHA-256, and the message keeps the ordered hashes. Chunks keep
+ * their delimiter, so concatenating them gives back the original text exactly.
+ */
+@Component
+public class ContextChunkStore {
+    private static final int HASH_LENGTH = 32;
+    private static final String DELIMITER = "\n\n";
+    private static final String INSERT_SQL = "INSERT INTO context_chunks (hash, content, content_zstd) VALUES (?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    private static final String SELECT_SQL = "SELECT hash, content, content_zstd FROM context_chunks WHERE hash = ANY(?)";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PayloadCodec payloadCodec;
+    private final Map<String, String> cache;
+
+    public ContextChunkStore(JdbcTemplate jdbcTemplate,
+                             PayloadCodec payloadCodec,
+                             @Value("${chat.context.cache-max-entries:10000}") int cacheMaxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.payloadCodec = payloadCodec;
+        // a hash always maps to the same text, so entries never go stale
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * Writes the chunks of every message's context and sets its chunk hashes. Must run in the
+     * transaction that inserts the messages.
+     */
+    public void storeAll(Collection<ChatMessage> messages) {
+        // sorted so concurrent writers take the unique index locks in the same order
+        Map<String, byte[]> hashes = new TreeMap<>();
+        Map<String, String> chunks = new TreeMap<>();
+        for (ChatMessage message : messages) {
+            if (message.getRetrievedContext() == null) {
+                continue;
+            }
+            List<String> parts = split(message.getRetrievedContext());
+            byte[] messageHashes = new byte[parts.size() * HASH_LENGTH];
+            for (int i = 0; i < parts.size(); i++) {
+                byte[] hash = sha256(parts.get(i));
+                System.arraycopy(hash, 0, messageHashes, i * HASH_LENGTH, HASH_LENGTH);
+                String key = HEX.formatHex(hash);
+                hashes.putIfAbsent(key, hash);
+                chunks.putIfAbsent(key, parts.get(i));
+            }
+            message.setContextChunkHashes(messageHashes);
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(chunks.keySet());
+        jdbcTemplate.batchUpdate(INSERT_SQL, keys, keys.size(), (ps, key) -> {
+            byte[] compressed = payloadCodec.compress(chunks.get(key));
+            ps.setBytes(1, hashes.get(key));
+            ps.setString(2, compressed != null ? "" : chunks.get(key));
+            ps.setBytes(3, compressed);
+        });
+        synchronized (cache) {
+            cache.putAll(chunks);
+        }
+    }
+
+    /**
+     * Loads the chunks of a page of messages in one query so that mapping them does not query per message.
+     */
+    public void prefetch(Collection<ChatMessage> messages) {
+        load(findUncached(messages));
+    }
+
+    /**
+     * Hashes of the chunks of these messages that are not cached, for callers that load them on their own,
+     * e.g. without blocking, and hand the rows to {@link #cacheChunk}.
+     */
+    public List<byte[]> findUncached(Collection<ChatMessage> messages) {
+        Map<String, byte[]> missing = new LinkedHashMap<>();
+        synchronized (cache) {
+            for (ChatMessage message : messages) {
+                if (message.getContextChunkHashes() != null) {
+                    collectMissing(message.getContextChunkHashes(), missing);
+                }
+            }
+        }
+        return new ArrayList<>(missing.values());
+    }
+
+    public void cacheChunk(byte[] hash, String content, byte[] contentZstd) {
+        String chunk = contentZstd != null ? payloadCodec.decompress(contentZstd) : content;
+        synchronized (cache) {
+            cache.put(HEX.formatHex(hash), chunk);
+        }
+    }
+
+    @Named("resolveContext")
+    public String resolveContext(ChatMessage message) {
+        byte[] hashes = message.getContextChunkHashes();
+        if (hashes == null) {
+            return message.getRetrievedContext();
+        }
+
+        // resolve against a local copy so concurrent evictions cannot drop a chunk mid-way
+        Map<String, String> chunks = new LinkedHashMap<>();
+        List<byte[]> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (int offset = 0; offset < hashes.length; offset += HASH_LENGTH) {
+                String key = HEX.formatHex(hashes, offset, offset + HASH_LENGTH);
+                String chunk = cache.get(key);
+                if (chunk != null) {
+                    chunks.put(key, chunk);
+                } else {
+                    missing.add(Arrays.copyOfRange(hashes, offset, offset + HASH_LENGTH));
+                }
+            }
+        }
+        chunks.putAll(load(missing));
+
+        StringBuilder context = new StringBuilder();
+        for (int offset = 0; offset < hashes.length; offset += HASH_LENGTH) {
+            String key = HEX.formatHex(hashes, offset, offset + HASH_LENGTH);
+            String chunk = chunks.get(key);
+            if (chunk == null) {
+                throw new IllegalStateException("Missing context chunk " + key + " for message " + message.getId());
+            }
+            context.append(chunk);
+        }
+        return context.toString();
+    }
+
+    /**
+     * The distinct chunk hashes of the messages, back to back like a message's own; empty if there are none.
+     */
+    static byte[] distinctHashes(Collection<ChatMessage> messages) {
+        Map<String, byte[]> distinct = new TreeMap<>();
+        for (ChatMessage message : messages) {
+            byte[] hashes = message.getContextChunkHashes();
+            for (int offset = 0; hashes != null && offset + HASH_LENGTH <= hashes.length; offset += HASH_LENGTH) {
+                distinct.putIfAbsent(HEX.formatHex(hashes, offset, offset + HASH_LENGTH),
+                        Arrays.copyOfRange(hashes, offset, offset + HASH_LENGTH));
+            }
+        }
+        byte[] joined = new byte[distinct.size() * HASH_LENGTH];
+        int offset = 0;
+        for (byte[] hash : distinct.values()) {
+            System.arraycopy(hash, 0, joined, offset, HASH_LENGTH);
+            offset += HASH_LENGTH;
+        }
+        return joined;
+    }
+
+    private void collectMissing(byte[] hashes, Map<String, byte[]> missing) {
+        for (int offset = 0; offset < hashes.length; offset += HASH_LENGTH) {
+            String key = HEX.formatHex(hashes, offset, offset + HASH_LENGTH);
+            if (!cache.containsKey(key)) {
+                missing.putIfAbsent(key, Arrays.copyOfRange(hashes, offset, offset + HASH_LENGTH));
+            }
+        }
+    }
+
+    private Map<String, String> load(List<byte[]> hashes) {
+        Map<String, String> loaded = new LinkedHashMap<>();
+        if (hashes.isEmpty()) {
+            return loaded;
+        }
+        jdbcTemplate.query(SELECT_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bytea", hashes.toArray(new byte[0][]))),
+                (RowCallbackHandler) rs -> {
+                    byte[] compressed = rs.getBytes(3);
+                    loaded.put(HEX.formatHex(rs.getBytes(1)), compressed != null ? payloadCodec.decompress(compressed) : rs.getString(2));
+                });
+        synchronized (cache) {
+            cache.putAll(loaded);
+        }
+        return loaded;
+    }
+
+    private static List<String> split(String context) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int next;
+        while ((next = context.indexOf(DELIMITER, start)) >= 0) {
+            parts.add(context.substring(start, next + DELIMITER.length()));
+            start = next + DELIMITER.length();
+        }
+        if (start < context.length() || parts.isEmpty()) {
+            parts.add(context.substring(start));
+        }
+        return parts;
+    }
+
+    private static byte[] sha256(String chunk) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(chunk.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
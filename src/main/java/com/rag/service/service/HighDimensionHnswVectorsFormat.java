@@ -0,0 +1,40 @@
+package com.rag.service.service;
+
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.KnnVectorsReader;
+import org.apache.lucene.codecs.KnnVectorsWriter;
+import org.apache.lucene.codecs.lucene99.Lucene99HnswVectorsFormat;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+import java.io.IOException;
+
+/**
+ * Lucene's HNSW format with the dimension cap raised from 1024, so common 1536 and 3072 wide
+ * embeddings can be indexed. Registered through META-INF/services so segments written with it can be read back.
+ */
+public class HighDimensionHnswVectorsFormat extends KnnVectorsFormat {
+    public static final String NAME = "HighDimensionHnsw";
+    private static final int MAX_DIMENSIONS = 4096;
+
+    private final KnnVectorsFormat delegate = new Lucene99HnswVectorsFormat();
+
+    public HighDimensionHnswVectorsFormat() {
+        super(NAME);
+    }
+
+    @Override
+    public KnnVectorsWriter fieldsWriter(SegmentWriteState state) throws IOException {
+        return delegate.fieldsWriter(state);
+    }
+
+    @Override
+    public KnnVectorsReader fieldsReader(SegmentReadState state) throws IOException {
+        return delegate.fieldsReader(state);
+    }
+
+    @Override
+    public int getMaxDimensions(String fieldName) {
+        return MAX_DIMENSIONS;
+    }
+}
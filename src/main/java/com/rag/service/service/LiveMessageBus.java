@@ -0,0 +1,293 @@
+package com.rag.service.service;
+
+import com.rag.service.dto.Message;
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.SessionChatMessageAddedEvent;
+import com.rag.service.mapper.ChatMessageMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * In-process fan-out of newly saved messages to Server-Sent Events subscribers, keyed by topic (a chat session or a
+ * session-chat document). Each subscriber has a bounded queue drained by a small dispatcher pool, so writers never
+ * wait on a client. A subscriber whose queue overflows is disconnected; it can reconnect with Last-Event-ID.
+ */
+@Slf4j
+@Component
+public class LiveMessageBus {
+    public static final String MESSAGE_EVENT = "message";
+    // the client may have missed messages and should reload the latest page
+    public static final LiveEvent RESET = new LiveEvent(null, "reset", Map.of());
+    private static final LiveEvent HEARTBEAT = new LiveEvent(null, null, null);
+    private static final String SESSION_CHAT_TOPIC_PREFIX = "session-chat:";
+
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ChatMessageMapper chatMessageMapper;
+    private final ContextChunkStore contextChunkStore;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final ExecutorService dispatcher;
+    private final Counter dropped;
+
+    public LiveMessageBus(@Value("${chat.stream.buffer-size:256}") int bufferSize,
+                          @Value("${chat.stream.dispatch-threads:4}") int dispatchThreads,
+                          @Value("${chat.stream.timeout-ms:600000}") long timeoutMillis,
+                          ChatMessageMapper chatMessageMapper,
+                          ContextChunkStore contextChunkStore,
+                          MeterRegistry meterRegistry) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.chatMessageMapper = chatMessageMapper;
+        this.contextChunkStore = contextChunkStore;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, task -> {
+            Thread thread = new Thread(task, "live-stream-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("chat.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open live message streams")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("chat.stream.dropped")
+                .description("Live message streams closed because the client fell too far behind")
+                .register(meterRegistry);
+    }
+
+    public static String chatSessionTopic(UUID sessionId) {
+        return sessionId.toString();
+    }
+
+    public static String sessionChatTopic(String sessionId) {
+        return SESSION_CHAT_TOPIC_PREFIX + sessionId;
+    }
+
+    /**
+     * Registers a subscriber that buffers events from now on; nothing is sent until it is started.
+     */
+    public Subscription subscribe(String topic) {
+        Subscription subscription = new Subscription(topic);
+        subscriptions.compute(topic, (key, set) -> {
+            Set<Subscription> subscribers = set != null ? set : ConcurrentHashMap.newKeySet();
+            subscribers.add(subscription);
+            return subscribers;
+        });
+        subscriberCount.incrementAndGet();
+        return subscription;
+    }
+
+    public boolean hasSubscribers(String topic) {
+        return subscriptions.containsKey(topic);
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public void publish(String topic, LiveEvent event) {
+        Set<Subscription> subscribers = subscriptions.get(topic);
+        if (subscribers != null) {
+            subscribers.forEach(subscription -> subscription.offer(event));
+        }
+    }
+
+    /**
+     * Publishes saved chat messages, oldest first, to the subscribers of their sessions.
+     */
+    public void publishMessages(Collection<ChatMessage> messages) {
+        Map<UUID, List<ChatMessage>> bySession = messages.stream()
+                .filter(message -> hasSubscribers(chatSessionTopic(message.getSession().getId())))
+                .sorted(Comparator.comparing(ChatMessage::getCreatedAt))
+                .collect(Collectors.groupingBy(message -> message.getSession().getId()));
+        bySession.forEach((sessionId, sessionMessages) ->
+                toEvents(sessionMessages).forEach(event -> publish(chatSessionTopic(sessionId), event)));
+    }
+
+    public void resetAll() {
+        subscriptions.keySet().forEach(topic -> publish(topic, RESET));
+    }
+
+    /**
+     * Message events with the message cursor as event id, so a reconnecting client can resume after it.
+     */
+    public List<LiveEvent> toEvents(List<ChatMessage> messages) {
+        contextChunkStore.prefetch(messages);
+        List<LiveEvent> events = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            events.add(new LiveEvent(new MessageCursor(message.getCreatedAt(), message.getId()).encode(), MESSAGE_EVENT,
+                    chatMessageMapper.toMessageResponseDto(message)));
+        }
+        return events;
+    }
+
+    public static LiveEvent sessionChatEvent(Message message) {
+        return new LiveEvent(null, MESSAGE_EVENT, message);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessagesSaved(ChatMessagesSavedEvent event) {
+        if (!event.restored()) {
+            publishMessages(event.messages());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionChatMessageAdded(SessionChatMessageAddedEvent event) {
+        publish(sessionChatTopic(event.sessionId()), sessionChatEvent(event.message()));
+    }
+
+    // keeps idle connections open through proxies and finds clients that stopped reading
+    @Scheduled(fixedDelayString = "${chat.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscriptions.values().forEach(subscribers -> subscribers.forEach(subscription -> subscription.offer(HEARTBEAT)));
+    }
+
+    @PreDestroy
+    public void close() {
+        subscriptions.values().forEach(subscribers -> subscribers.forEach(subscription -> {
+            subscription.cancel();
+            subscription.emitter.complete();
+        }));
+        dispatcher.shutdown();
+    }
+
+    public record LiveEvent(String id, String name, Object data) {
+    }
+
+    public final class Subscription {
+        private final String topic;
+        private final SseEmitter emitter;
+        private final BlockingQueue<LiveEvent> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean started;
+        private volatile List<LiveEvent> backlog = List.of();
+        private volatile Set<String> replayed = Set.of();
+
+        private Subscription(String topic) {
+            this.topic = topic;
+            this.emitter = new SseEmitter(timeoutMillis);
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            emitter.onCompletion(this::cancel);
+            emitter.onTimeout(this::cancel);
+            emitter.onError(error -> cancel());
+        }
+
+        /**
+         * Sends the backlog, then everything published since subscribing that is not part of it.
+         */
+        public SseEmitter start(List<LiveEvent> backlog) {
+            this.replayed = backlog.stream().map(LiveEvent::id).filter(id -> id != null).collect(Collectors.toSet());
+            this.backlog = backlog;
+            started = true;
+            schedule();
+            return emitter;
+        }
+
+        public void cancel() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.computeIfPresent(topic, (key, subscribers) -> {
+                    subscribers.remove(this);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+                subscriberCount.decrementAndGet();
+            }
+        }
+
+        private void offer(LiveEvent event) {
+            if (closed.get()) {
+                return;
+            }
+            if (queue.offer(event)) {
+                schedule();
+            } else {
+                // the emitter is completed by the dispatcher, never by the publishing thread
+                cancel();
+                dropped.increment();
+                log.debug("Dropped live stream subscriber of {} after {} unsent events", topic, bufferSize);
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            if (started && scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    List<LiveEvent> pending = backlog;
+                    backlog = List.of();
+                    for (int i = 0; i < pending.size() && !closed.get(); i++) {
+                        send(pending.get(i));
+                    }
+                    LiveEvent event;
+                    while (!closed.get() && (event = queue.poll()) != null) {
+                        if (event.id() == null || !replayed.contains(event.id())) {
+                            send(event);
+                        }
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away or the emitter has already completed
+                    cancel();
+                }
+                if (closed.get()) {
+                    queue.clear();
+                    emitter.complete();
+                    return;
+                }
+                scheduled.set(false);
+            } while ((closed.get() || !queue.isEmpty()) && scheduled.compareAndSet(false, true));
+        }
+
+        private void send(LiveEvent event) throws IOException {
+            if (event == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+                return;
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON);
+            if (event.id() != null) {
+                builder.id(event.id());
+            }
+            emitter.send(builder);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.rag.service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.dto.Message;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.SessionChatMessageAddedEvent;
+import com.rag.service.repository.ChatMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Carries live messages between instances over PostgreSQL LISTEN/NOTIFY. Writers notify inside their transaction,
+ * so a notification is delivered exactly when the write commits. Chat messages travel as ids and are loaded only by
+ * instances with subscribers for the session; each instance skips its own notifications, which the
+ * {@link LiveMessageBus} has already delivered locally.
+ */
+@Slf4j
+@Component
+public class LiveMessageRelay implements SmartLifecycle {
+    private static final String CHANNEL = "chat_live_messages";
+    private static final String NOTIFY_SQL = "SELECT pg_notify('" + CHANNEL + "', ?)";
+    // NOTIFY payloads are limited to 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int IDS_PER_NOTIFICATION = 100;
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final boolean enabled;
+    private final DataSourceProperties dataSourceProperties;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final LiveMessageBus liveMessageBus;
+    private final ChatMessageRepository messageRepository;
+    private volatile boolean running;
+    private Thread listener;
+
+    public LiveMessageRelay(@Value("${chat.stream.notify.enabled:true}") boolean enabled,
+                            DataSourceProperties dataSourceProperties,
+                            JdbcTemplate jdbcTemplate,
+                            ObjectMapper objectMapper,
+                            LiveMessageBus liveMessageBus,
+                            ChatMessageRepository messageRepository) {
+        this.enabled = enabled;
+        this.dataSourceProperties = dataSourceProperties;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.liveMessageBus = liveMessageBus;
+        this.messageRepository = messageRepository;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onMessagesSaved(ChatMessagesSavedEvent event) {
+        if (!enabled || event.restored()) {
+            return;
+        }
+        Map<UUID, List<UUID>> idsBySession = event.messages().stream()
+                .collect(Collectors.groupingBy(message -> message.getSession().getId(),
+                        Collectors.mapping(ChatMessage::getId, Collectors.toList())));
+        idsBySession.forEach((sessionId, ids) -> {
+            for (int from = 0; from < ids.size(); from += IDS_PER_NOTIFICATION) {
+                List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + IDS_PER_NOTIFICATION));
+                notify(new Notification(instanceId, LiveMessageBus.chatSessionTopic(sessionId), chunk, null));
+            }
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onSessionChatMessageAdded(SessionChatMessageAddedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        String topic = LiveMessageBus.sessionChatTopic(event.sessionId());
+        Notification notification = new Notification(instanceId, topic, null, event.message());
+        if (toJson(notification).getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            // too large to carry: remote subscribers are told to reload instead
+            notification = new Notification(instanceId, topic, null, null);
+        }
+        notify(notification);
+    }
+
+    private void notify(Notification notification) {
+        jdbcTemplate.queryForList(NOTIFY_SQL, toJson(notification));
+    }
+
+    public void handle(String payload) {
+        Notification notification;
+        try {
+            notification = objectMapper.readValue(payload, Notification.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed live message notification", e);
+            return;
+        }
+        if (instanceId.equals(notification.origin()) || !liveMessageBus.hasSubscribers(notification.topic())) {
+            return;
+        }
+        if (notification.ids() != null) {
+            // outside a read-only transaction, so read from the primary the message was just committed to
+            liveMessageBus.publishMessages(messageRepository.findAllById(notification.ids()));
+        } else if (notification.message() != null) {
+            liveMessageBus.publish(notification.topic(), LiveMessageBus.sessionChatEvent(notification.message()));
+        } else {
+            liveMessageBus.publish(notification.topic(), LiveMessageBus.RESET);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listenLoop, "live-message-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            try {
+                listener.join(POLL_TIMEOUT_MS * 4);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            listener = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // a dedicated connection outside the pool, since it is held for the lifetime of the instance
+    private void listenLoop() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnecting) {
+                    // notifications sent while disconnected are lost
+                    liveMessageBus.resetAll();
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handleQuietly(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                log.warn("Live message listener lost its connection, reconnecting in {} ms", RECONNECT_DELAY_MS, e);
+                reconnecting = true;
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleQuietly(String payload) {
+        try {
+            handle(payload);
+        } catch (RuntimeException e) {
+            log.error("Failed to relay live message notification", e);
+        }
+    }
+
+    private String toJson(Notification notification) {
+        try {
+            return objectMapper.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record Notification(String origin, String topic, List<UUID> ids, Message message) {
+    }
+}
@@ -0,0 +1,271 @@
+package com.rag.service.service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.exception.IngestQueueFullException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.rag.service.util.Constant.INGEST_QUEUE_FULL_MSG;
+import static com.rag.service.util.Constant.INGEST_QUEUE_STOPPED_MSG;
+
+/**
+ * Optional write-behind path for chat messages. Messages are acknowledged once queued and a small
+ * pool of writer threads group-commits them as batched inserts, bounded by batch size and linger time.
+ * The queue stops after the web server's graceful shutdown, so requests still in flight can enqueue, and rejects
+ * messages once stopping.
+ */
+@Slf4j
+@Component
+public class MessageIngestQueue implements SmartLifecycle {
+    private static final String INSERT_SQL = "INSERT INTO chat_messages (id, session_id, content, content_zstd, sender, context_chunk_hashes, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_EMBEDDING_SQL = "INSERT INTO message_embeddings (message_id, session_id, embedding) VALUES (?, ?, ?)";
+
+    private final boolean enabled;
+    private final int writerThreads;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final boolean blockWhenFull;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    private final BlockingQueue<ChatMessage> queue;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ContextChunkStore contextChunkStore;
+    private final PayloadCodec payloadCodec;
+    private final SessionActivityRecorder sessionActivityRecorder;
+    private final Timer commitTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+    private final Counter failed;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    public MessageIngestQueue(@Value("${chat.ingest.async.enabled:false}") boolean enabled,
+                              @Value("${chat.ingest.async.queue-capacity:10000}") int queueCapacity,
+                              @Value("${chat.ingest.async.writer-threads:2}") int writerThreads,
+                              @Value("${chat.ingest.async.max-batch-size:500}") int maxBatchSize,
+                              @Value("${chat.ingest.async.max-linger-ms:20}") long maxLingerMillis,
+                              @Value("${chat.ingest.async.block-when-full:false}") boolean blockWhenFull,
+                              @Value("${chat.ingest.async.offer-timeout-ms:100}") long offerTimeoutMillis,
+                              @Value("${chat.ingest.async.shutdown-timeout-ms:30000}") long shutdownTimeoutMillis,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              ApplicationEventPublisher eventPublisher,
+                              ContextChunkStore contextChunkStore,
+                              PayloadCodec payloadCodec,
+                              SessionActivityRecorder sessionActivityRecorder,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.writerThreads = writerThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.blockWhenFull = blockWhenFull;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.contextChunkStore = contextChunkStore;
+        this.payloadCodec = payloadCodec;
+        this.sessionActivityRecorder = sessionActivityRecorder;
+
+        Gauge.builder("chat.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Messages waiting for the write-behind writers")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("chat.ingest.commit.latency")
+                .description("Time to commit one write-behind batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chat.ingest.batch.size")
+                .description("Messages per write-behind batch")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chat.ingest.rejected")
+                .description("Messages rejected because the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("chat.ingest.failed")
+                .description("Messages that could not be written")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(ChatMessage message) {
+        if (!running) {
+            throw new IngestQueueFullException(INGEST_QUEUE_STOPPED_MSG);
+        }
+        if (message.getId() == null) {
+            message.setId(UUID.randomUUID());
+        }
+        message.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+
+        boolean accepted;
+        try {
+            accepted = blockWhenFull ?
+                    queue.offer(message, offerTimeoutMillis, TimeUnit.MILLISECONDS) :
+                    queue.offer(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (!accepted) {
+            rejected.increment();
+            throw new IngestQueueFullException(INGEST_QUEUE_FULL_MSG);
+        }
+        // writers exit once stopped and empty; a message they may have missed is taken back
+        if (!running && queue.remove(message)) {
+            throw new IngestQueueFullException(INGEST_QUEUE_STOPPED_MSG);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::drainLoop, "message-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Thread writer : writers) {
+            try {
+                writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+        if (!queue.isEmpty()) {
+            log.warn("Write-behind queue stopped with {} unwritten messages", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1;
+    }
+
+    private void drainLoop() {
+        List<ChatMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    ChatMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<ChatMessage> batch) {
+        try {
+            commitTimer.record(() -> transactionTemplate.executeWithoutResult(status -> insert(batch)));
+            batchSizes.record(batch.size());
+            eventPublisher.publishEvent(new ChatMessagesSavedEvent(List.copyOf(batch)));
+        } catch (RuntimeException e) {
+            log.error("Write-behind batch of {} messages failed, retrying individually", batch.size(), e);
+            for (ChatMessage message : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(message)));
+                    eventPublisher.publishEvent(new ChatMessagesSavedEvent(List.of(message)));
+                } catch (RuntimeException single) {
+                    failed.increment();
+                    log.error("Dropping message {} for session {}", message.getId(), message.getSession().getId(), single);
+                }
+            }
+        }
+    }
+
+    private void insert(List<ChatMessage> batch) {
+        contextChunkStore.storeAll(batch);
+        payloadCodec.compressAll(batch);
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, message) -> {
+            ps.setObject(1, message.getId());
+            ps.setObject(2, message.getSession().getId());
+            ps.setString(3, message.getContent());
+            ps.setBytes(4, message.getContentZstd());
+            ps.setString(5, message.getSender());
+            ps.setBytes(6, message.getContextChunkHashes());
+            ps.setTimestamp(7, Timestamp.valueOf(message.getCreatedAt()));
+        });
+
+        List<ChatMessage> withEmbedding = batch.stream().filter(message -> message.getEmbedding() != null).toList();
+        if (!withEmbedding.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_EMBEDDING_SQL, withEmbedding, withEmbedding.size(), (ps, message) -> {
+                float[] embedding = message.getEmbedding();
+                Float[] values = new Float[embedding.length];
+                for (int i = 0; i < embedding.length; i++) {
+                    values[i] = embedding[i];
+                }
+                ps.setObject(1, message.getId());
+                ps.setObject(2, message.getSession().getId());
+                ps.setArray(3, ps.getConnection().createArrayOf("float4", values));
+            });
+        }
+
+        sessionActivityRecorder.record(batch);
+    }
+}
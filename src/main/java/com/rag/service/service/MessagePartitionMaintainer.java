@@ -0,0 +1,74 @@
+package com.rag.service.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps monthly chat_messages partitions prepared ahead of time, at startup and then daily, so new rows
+ * never pile up in the default partition. Rows that did land there are moved once their month exists.
+ * Partitions without their part of idx_messages_context_chunks, which the migration only creates on the parent,
+ * get it built concurrently and attached.
+ */
+@Slf4j
+@Component
+public class MessagePartitionMaintainer {
+    private static final String ENSURE_PARTITIONS_SQL = "SELECT ensure_chat_message_partitions(LOCALTIMESTAMP::timestamp, ?)";
+    static final String CHUNK_INDEX = "idx_messages_context_chunks";
+    private static final String UNINDEXED_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'chat_messages'::regclass " +
+            "AND to_regclass('" + CHUNK_INDEX + "') IS NOT NULL AND NOT EXISTS (SELECT 1 FROM pg_inherits x " +
+            "JOIN pg_index ix ON ix.indexrelid = x.inhrelid WHERE x.inhparent = '" + CHUNK_INDEX + "'::regclass " +
+            "AND ix.indrelid = c.oid) ORDER BY c.relname";
+    // left behind by a concurrent build that failed
+    private static final String INVALID_INDEX_SQL = "SELECT count(*) FROM pg_index WHERE indexrelid = to_regclass(?) AND NOT indisvalid";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+
+    public MessagePartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                      @Value("${chat.partitions.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${chat.partitions.cron:0 0 3 * * *}")
+    public void ensurePartitions() {
+        try {
+            Integer created = jdbcTemplate.queryForObject(ENSURE_PARTITIONS_SQL, Integer.class, monthsAhead);
+            if (created != null && created > 0) {
+                log.info("Created {} chat_messages partitions", created);
+            }
+        } catch (DataAccessException e) {
+            // not fatal: rows outside the prepared months go to the default partition until the next run
+            log.error("Failed to create chat_messages partitions", e);
+        }
+        try {
+            ensureChunkIndexes();
+        } catch (DataAccessException e) {
+            // the orphaned chunk sweep waits until every partition is indexed
+            log.error("Failed to index context chunk references of chat_messages partitions", e);
+        }
+    }
+
+    // CONCURRENTLY cannot run in a transaction, so each statement runs on its own
+    private void ensureChunkIndexes() {
+        for (String partition : jdbcTemplate.queryForList(UNINDEXED_PARTITIONS_SQL, String.class)) {
+            String index = partition + "_context_chunks_idx";
+            Long invalid = jdbcTemplate.queryForObject(INVALID_INDEX_SQL, Long.class, index);
+            if (invalid != null && invalid > 0) {
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+            }
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + partition +
+                    " USING gin (context_chunk_hash_array(context_chunk_hashes)) WHERE context_chunk_hashes IS NOT NULL");
+            jdbcTemplate.execute("ALTER INDEX " + CHUNK_INDEX + " ATTACH PARTITION " + index);
+            log.info("Indexed context chunk references of partition {}", partition);
+        }
+    }
+}
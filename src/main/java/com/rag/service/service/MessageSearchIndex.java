@@ -0,0 +1,465 @@
+package com.rag.service.service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.event.ChatMessagesDeletedEvent;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.ChatSessionDeletedEvent;
+import com.rag.service.exception.SearchUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.KnnVectorsFormat;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.VectorSimilarityFunction;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.rag.service.util.Constant.SEARCH_UNAVAILABLE_MSG;
+
+/**
+ * In-process Lucene index over message content, retrieved context and, when supplied, message embeddings
+ * (as an HNSW graph for nearest-neighbour queries). It is kept current from the message write and
+ * message/session delete events and committed to disk periodically. Messages written by other instances raise no
+ * event here, so chat_messages is also re-read periodically from the watermark of the last complete catch-up; on
+ * startup that watermark is the last committed one, or none, and the index is rebuilt. A failed catch-up is retried
+ * with backoff and reported under {@code searchIndex} in /actuator/health.
+ */
+@Slf4j
+@Component
+public class MessageSearchIndex implements SmartLifecycle {
+    private static final String ID = "id";
+    private static final String SESSION_ID = "sessionId";
+    private static final String USER_ID = "userId";
+    private static final String CONTENT = "content";
+    private static final String CONTEXT = "context";
+    private static final String EMBEDDING = "embedding";
+    private static final String WATERMARK = "watermark";
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(CONTENT, 1.0f, CONTEXT, 0.5f);
+    private static final LocalDateTime FULL_REBUILD = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // write-behind messages get created_at when queued, and other instances commit theirs concurrently, so rows can
+    // land behind a watermark that was already reached
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofMinutes(5);
+    private static final long CATCH_UP_FIRST_RETRY_MILLIS = 1000;
+    // idx_messages_created limits the periodic re-reads to the rows created since the watermark
+    private static final String CATCH_UP_SQL = "SELECT m.id, m.session_id, s.user_id, m.content, m.content_zstd, " +
+            "m.retrieved_context, m.context_chunk_hashes, m.created_at, e.embedding " +
+            "FROM chat_messages m JOIN chat_sessions s ON s.id = m.session_id " +
+            "LEFT JOIN message_embeddings e ON e.message_id = m.id WHERE m.created_at > ?";
+
+    private final boolean enabled;
+    private final Path indexDir;
+    private final long commitIntervalMillis;
+    private final long catchUpIntervalMillis;
+    private final int fetchSize;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PayloadCodec payloadCodec;
+    private final ContextChunkStore contextChunkStore;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    // every row created up to the watermark, less the overlap, has been indexed
+    private final AtomicReference<LocalDateTime> watermark = new AtomicReference<>();
+
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ScheduledExecutorService committer;
+    private ScheduledExecutorService catchUpScheduler;
+    private volatile LocalDateTime lastCatchUpAt;
+    private volatile int catchUpFailures;
+    private volatile String catchUpError;
+    private volatile boolean running;
+
+    public MessageSearchIndex(@Value("${chat.search.enabled:true}") boolean enabled,
+                              @Value("${chat.search.index-dir:data/search-index}") String indexDir,
+                              @Value("${chat.search.commit-interval-ms:5000}") long commitIntervalMillis,
+                              @Value("${chat.search.rebuild-fetch-size:1000}") int fetchSize,
+                              @Value("${chat.search.catch-up-interval-ms:60000}") long catchUpIntervalMillis,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              PayloadCodec payloadCodec,
+                              ContextChunkStore contextChunkStore) {
+        this.enabled = enabled;
+        this.indexDir = Path.of(indexDir);
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.fetchSize = fetchSize;
+        this.catchUpIntervalMillis = catchUpIntervalMillis;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.payloadCodec = payloadCodec;
+        this.contextChunkStore = contextChunkStore;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Catch-up progress for the health endpoint: whether the index has caught up with chat_messages since startup,
+     * up to which creation time, and the consecutive failures of the catch-up being retried.
+     */
+    public Map<String, Object> catchUpState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        if (!running) {
+            state.put("state", enabled ? "stopped" : "disabled");
+            return state;
+        }
+        state.put("state", catchUpFailures > 0 ? "retrying" : lastCatchUpAt == null ? "catching up" : "current");
+        state.put("watermark", watermark.get());
+        state.put("lastCatchUpAt", lastCatchUpAt);
+        if (catchUpFailures > 0) {
+            state.put("failures", catchUpFailures);
+            state.put("error", catchUpError);
+        }
+        return state;
+    }
+
+    public List<Hit> search(UUID userId, String queryText, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(USER_ID, userId.toString())), BooleanClause.Occur.FILTER)
+                .add(parser.parse(queryText), BooleanClause.Occur.MUST)
+                .build();
+        return topHits(query, limit);
+    }
+
+    /**
+     * Approximate k nearest messages by cosine similarity, restricted to the session when one is given.
+     */
+    public List<Hit> searchSimilar(UUID userId, UUID sessionId, float[] embedding, int k) {
+        Query filter = sessionId != null ?
+                new TermQuery(new Term(SESSION_ID, sessionId.toString())) :
+                new TermQuery(new Term(USER_ID, userId.toString()));
+        return topHits(new KnnFloatVectorQuery(EMBEDDING, embedding, k, filter), k);
+    }
+
+    private List<Hit> topHits(Query query, int limit) {
+        if (!running) {
+            throw new SearchUnavailableException(SEARCH_UNAVAILABLE_MSG);
+        }
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query, limit);
+                StoredFields storedFields = searcher.storedFields();
+                List<Hit> hits = new ArrayList<>(top.scoreDocs.length);
+                for (ScoreDoc scoreDoc : top.scoreDocs) {
+                    String id = storedFields.document(scoreDoc.doc, Set.of(ID)).get(ID);
+                    hits.add(new Hit(UUID.fromString(id), scoreDoc.score));
+                }
+                return hits;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessagesSaved(ChatMessagesSavedEvent event) {
+        if (!running) {
+            return;
+        }
+        try {
+            for (ChatMessage message : event.messages()) {
+                index(message.getId(), message.getSession().getId(), message.getSession().getUser().getId(),
+                        payloadCodec.resolveContent(message), message.getRetrievedContext(), message.getEmbedding());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to index {} saved messages", event.messages().size(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionDeleted(ChatSessionDeletedEvent event) {
+        if (!running) {
+            return;
+        }
+        try {
+            writer.deleteDocuments(new Term(SESSION_ID, event.sessionId().toString()));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to remove session {} from the search index", event.sessionId(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessagesDeleted(ChatMessagesDeletedEvent event) {
+        if (!running) {
+            return;
+        }
+        try {
+            writer.deleteDocuments(event.messageIds().stream().map(id -> new Term(ID, id.toString())).toArray(Term[]::new));
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to remove {} deleted messages from the search index", event.messageIds().size(), e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        LocalDateTime since;
+        try {
+            KnnVectorsFormat vectorsFormat = new HighDimensionHnswVectorsFormat();
+            IndexWriterConfig config = new IndexWriterConfig(analyzer).setCodec(new Lucene99Codec() {
+                @Override
+                public KnnVectorsFormat getKnnVectorsFormatForField(String field) {
+                    return vectorsFormat;
+                }
+            });
+            writer = new IndexWriter(FSDirectory.open(indexDir), config);
+            searcherManager = new SearcherManager(writer, null);
+            since = committedWatermark();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open search index at " + indexDir, e);
+        }
+        watermark.set(since);
+        lastCatchUpAt = null;
+        catchUpFailures = 0;
+        catchUpError = null;
+        running = true;
+
+        committer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "search-index-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(this::commit, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+
+        catchUpScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "search-index-catch-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        catchUpScheduler.execute(this::catchUp);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        catchUpScheduler.shutdownNow();
+        committer.shutdown();
+        commit();
+        try {
+            searcherManager.close();
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Failed to close search index", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // stop after the write-behind queue so its final batches still reach the index
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    private LocalDateTime committedWatermark() {
+        Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (WATERMARK.equals(entry.getKey())) {
+                    return LocalDateTime.parse(entry.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    // reschedules itself: after the interval once it completes, and with doubling delays up to the interval while it fails
+    private void catchUp() {
+        if (!running) {
+            return;
+        }
+        LocalDateTime since = watermark.get();
+        LocalDateTime from = since == null ? FULL_REBUILD : since.minus(CATCH_UP_OVERLAP);
+        AtomicLong indexed = new AtomicLong();
+        AtomicReference<LocalDateTime> latest = new AtomicReference<>(since);
+        long delayMillis = catchUpIntervalMillis;
+        try {
+            scan(from, indexed, latest);
+            // rows are read in no particular order, so the watermark only moves once all of them are indexed
+            watermark.set(latest.get());
+            lastCatchUpAt = LocalDateTime.now();
+            catchUpFailures = 0;
+            catchUpError = null;
+            if (since == null) {
+                log.info("Search index rebuilt with {} messages", indexed.get());
+            } else {
+                log.debug("Search index caught up with {} messages created after {}", indexed.get(), from);
+            }
+        } catch (RuntimeException e) {
+            if (!running) {
+                return;
+            }
+            int failures = ++catchUpFailures;
+            catchUpError = e.getMessage();
+            delayMillis = Math.min(CATCH_UP_FIRST_RETRY_MILLIS << Math.min(failures - 1, 20), catchUpIntervalMillis);
+            log.error("Search index catch-up from {} failed after {} messages, retrying in {} ms",
+                    from, indexed.get(), delayMillis, e);
+        }
+        try {
+            catchUpScheduler.schedule(this::catchUp, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopping
+        }
+    }
+
+    private void scan(LocalDateTime from, AtomicLong indexed, AtomicReference<LocalDateTime> latest) {
+        List<CatchUpRow> pending = new ArrayList<>(fetchSize);
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query(connection -> {
+                // a positive fetch size inside a transaction makes the driver stream rows through a cursor
+                PreparedStatement statement = connection.prepareStatement(CATCH_UP_SQL);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, Timestamp.valueOf(from));
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                ChatMessage message = ChatMessage.builder()
+                        .id(rs.getObject(1, UUID.class))
+                        .content(rs.getString(4))
+                        .contentZstd(rs.getBytes(5))
+                        .retrievedContext(rs.getString(6))
+                        .contextChunkHashes(rs.getBytes(7))
+                        .createdAt(rs.getTimestamp(8).toLocalDateTime())
+                        .embedding(toFloats(rs.getArray(9)))
+                        .build();
+                pending.add(new CatchUpRow(message, rs.getObject(2, UUID.class), rs.getObject(3, UUID.class)));
+                latest.accumulateAndGet(message.getCreatedAt(), MessageSearchIndex::later);
+                if (pending.size() >= fetchSize) {
+                    indexed.addAndGet(indexAll(pending));
+                }
+            });
+            indexed.addAndGet(indexAll(pending));
+        });
+    }
+
+    private static LocalDateTime later(LocalDateTime current, LocalDateTime next) {
+        return current == null || next.isAfter(current) ? next : current;
+    }
+
+    // contexts are reassembled from their chunks one fetch-sized page at a time
+    private int indexAll(List<CatchUpRow> rows) {
+        contextChunkStore.prefetch(rows.stream().map(CatchUpRow::message).toList());
+        try {
+            for (CatchUpRow row : rows) {
+                ChatMessage message = row.message();
+                index(message.getId(), row.sessionId(), row.userId(), payloadCodec.resolveContent(message),
+                        contextChunkStore.resolveContext(message), message.getEmbedding());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int count = rows.size();
+        rows.clear();
+        return count;
+    }
+
+    private void index(UUID id, UUID sessionId, UUID userId, String content, String context, float[] embedding)
+            throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, id.toString(), Field.Store.YES));
+        document.add(new StringField(SESSION_ID, sessionId.toString(), Field.Store.NO));
+        document.add(new StringField(USER_ID, userId.toString(), Field.Store.NO));
+        document.add(new TextField(CONTENT, content != null ? content : "", Field.Store.NO));
+        if (context != null) {
+            document.add(new TextField(CONTEXT, context, Field.Store.NO));
+        }
+        if (embedding != null) {
+            document.add(new KnnFloatVectorField(EMBEDDING, embedding, VectorSimilarityFunction.COSINE));
+        }
+        writer.updateDocument(new Term(ID, id.toString()), document);
+    }
+
+    private static float[] toFloats(Array array) throws SQLException {
+        if (array == null) {
+            return null;
+        }
+        Float[] values = (Float[]) array.getArray();
+        float[] embedding = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            embedding[i] = values[i];
+        }
+        return embedding;
+    }
+
+    private void commit() {
+        try {
+            if (!writer.hasUncommittedChanges()) {
+                return;
+            }
+            LocalDateTime committed = watermark.get();
+            if (committed != null) {
+                writer.setLiveCommitData(Map.of(WATERMARK, committed.toString()).entrySet());
+            }
+            writer.commit();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to commit search index", e);
+        }
+    }
+
+    public record Hit(UUID messageId, float score) {
+    }
+
+    private record CatchUpRow(ChatMessage message, UUID sessionId, UUID userId) {
+    }
+}
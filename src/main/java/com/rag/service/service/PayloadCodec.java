@@ -0,0 +1,160 @@
+package com.rag.service.service;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdInputStream;
+import com.rag.service.entity.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.mapstruct.Named;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Zstandard compression for large text payloads. Values of at least {@code min-bytes} UTF-8 bytes are
+ * compressed, optionally with a dictionary trained on our own messages; every dictionary found in the
+ * dictionary directory stays available for reading, so the active one can be replaced at any time.
+ */
+@Slf4j
+@Component
+public class PayloadCodec {
+    public static final String DICTIONARY_SUFFIX = ".zdict";
+    // ZSTD_CONTENTSIZE_UNKNOWN: the frame was written by a streaming compressor without a declared size
+    static final long CONTENT_SIZE_UNKNOWN = -1;
+
+    private final boolean enabled;
+    private final int minBytes;
+    private final int level;
+    private final ZstdDictCompress activeDictionary;
+    private final Map<Long, ZstdDictDecompress> dictionaries = new HashMap<>();
+
+    public PayloadCodec(@Value("${chat.compression.enabled:true}") boolean enabled,
+                        @Value("${chat.compression.min-bytes:1024}") int minBytes,
+                        @Value("${chat.compression.level:3}") int level,
+                        @Value("${chat.compression.dictionary-dir:}") String dictionaryDir,
+                        @Value("${chat.compression.active-dictionary:}") String activeDictionary) {
+        this.enabled = enabled;
+        this.minBytes = minBytes;
+        this.level = level;
+
+        ZstdDictCompress active = null;
+        if (!dictionaryDir.isBlank() && Files.isDirectory(Path.of(dictionaryDir))) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(dictionaryDir), "*" + DICTIONARY_SUFFIX)) {
+                for (Path file : files) {
+                    byte[] dictionary = Files.readAllBytes(file);
+                    dictionaries.put(Zstd.getDictIdFromDict(dictionary), new ZstdDictDecompress(dictionary));
+                    if (file.getFileName().toString().equals(activeDictionary)) {
+                        active = new ZstdDictCompress(dictionary, level);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read compression dictionaries from " + dictionaryDir, e);
+            }
+            log.info("Loaded {} compression dictionaries, active: {}", dictionaries.size(), active != null ? activeDictionary : "none");
+        }
+        this.activeDictionary = active;
+    }
+
+    /**
+     * Returns the compressed value, or null when it is below the threshold and should be stored as plain text.
+     */
+    public byte[] compress(String value) {
+        if (!enabled || value == null) {
+            return null;
+        }
+        byte[] plain = value.getBytes(StandardCharsets.UTF_8);
+        if (plain.length < minBytes) {
+            return null;
+        }
+        byte[] compressed = activeDictionary != null ? Zstd.compress(plain, activeDictionary) : Zstd.compress(plain, level);
+        return compressed.length < plain.length ? compressed : null;
+    }
+
+    public String decompress(byte[] compressed) {
+        long dictionaryId = Zstd.getDictIdFromFrame(compressed);
+        ZstdDictDecompress dictionary = null;
+        if (dictionaryId != 0) {
+            dictionary = dictionaries.get(dictionaryId);
+            if (dictionary == null) {
+                throw new IllegalStateException("Compression dictionary " + dictionaryId + " is not loaded");
+            }
+        }
+        long size = contentSize(Zstd.getFrameContentSize(compressed));
+        byte[] plain;
+        if (size == CONTENT_SIZE_UNKNOWN) {
+            plain = decompressStream(new ByteArrayInputStream(compressed), dictionary);
+        } else if (dictionary == null) {
+            plain = Zstd.decompress(compressed, (int) size);
+        } else {
+            plain = Zstd.decompress(compressed, dictionary, (int) size);
+        }
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks the result of Zstd.getFrameContentSize: the size, or CONTENT_SIZE_UNKNOWN for a frame that does not
+     * declare it; anything else is not a frame that fits in an array.
+     */
+    static long contentSize(long frameContentSize) {
+        if (frameContentSize == CONTENT_SIZE_UNKNOWN) {
+            return frameContentSize;
+        }
+        if (frameContentSize < 0) {
+            throw new IllegalStateException("Invalid zstd frame header");
+        }
+        if (frameContentSize > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("zstd frame of " + frameContentSize + " bytes is too large to decompress");
+        }
+        return frameContentSize;
+    }
+
+    static byte[] decompressStream(InputStream frame, ZstdDictDecompress dictionary) {
+        try (ZstdInputStream in = new ZstdInputStream(frame)) {
+            if (dictionary != null) {
+                in.setDict(dictionary);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decompress zstd frame", e);
+        }
+    }
+
+    /**
+     * Moves large message content into content_zstd, leaving the content column empty. Call right before insert.
+     */
+    public void compressAll(Collection<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            byte[] compressed = compress(message.getContent());
+            if (compressed != null) {
+                message.setContentZstd(compressed);
+                message.setContent("");
+            }
+        }
+    }
+
+    @Named("resolveContent")
+    public String resolveContent(ChatMessage message) {
+        return message.getContentZstd() != null ? decompress(message.getContentZstd()) : message.getContent();
+    }
+
+    public static byte[] trainDictionary(List<byte[]> samples, int dictionarySize) {
+        int totalSize = samples.stream().mapToInt(sample -> sample.length).sum();
+        ZstdDictTrainer trainer = new ZstdDictTrainer(totalSize, dictionarySize);
+        samples.forEach(trainer::addSample);
+        return trainer.trainSamples();
+    }
+}
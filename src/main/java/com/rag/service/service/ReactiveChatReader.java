@@ -0,0 +1,197 @@
+package com.rag.service.service;
+
+import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.mapper.ChatMessageMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Non-blocking reads of sessions and messages over R2DBC. Results are streamed in keyset pages fetched on
+ * demand, so a slow client holds neither a thread nor a connection while it consumes a page, and at most one
+ * page per stream is buffered. Uses its own small pool, by default against spring.datasource.url.
+ */
+@Service
+@ConditionalOnProperty(name = "chat.reactive.enabled", havingValue = "true")
+public class ReactiveChatReader {
+    private static final String MESSAGE_COLUMNS =
+            "SELECT id, content, content_zstd, sender, retrieved_context, context_chunk_hashes, created_at FROM chat_messages ";
+    private static final String SESSION_SQL = "SELECT id, name, created_at, archived_at FROM chat_sessions WHERE id = $1";
+    private static final String FIRST_MESSAGES_SQL = MESSAGE_COLUMNS +
+            "WHERE session_id = $1 AND created_at >= $2 ORDER BY created_at DESC, id LIMIT $3";
+    private static final String NEXT_MESSAGES_SQL = MESSAGE_COLUMNS +
+            "WHERE session_id = $1 AND created_at >= $2 AND created_at <= $3 " +
+            "AND (created_at < $3 OR (created_at = $3 AND id > $4)) ORDER BY created_at DESC, id LIMIT $5";
+    private static final String SESSION_COLUMNS = "SELECT id, name, favorite, created_at, updated_at FROM chat_sessions ";
+    private static final String FIRST_SESSIONS_SQL = SESSION_COLUMNS +
+            "WHERE user_id = $1 ORDER BY created_at DESC, id LIMIT $2";
+    private static final String NEXT_SESSIONS_SQL = SESSION_COLUMNS +
+            "WHERE user_id = $1 AND (created_at < $2 OR (created_at = $2 AND id > $3)) ORDER BY created_at DESC, id LIMIT $4";
+    private static final String CHUNKS_SQL = "SELECT hash, content, content_zstd FROM context_chunks WHERE hash IN (%s)";
+
+    private final ChatMessageMapper chatMessageMapper;
+    private final ContextChunkStore contextChunkStore;
+    private final SessionArchiveService sessionArchiveService;
+    private final int pageSize;
+    private final ConnectionPool connectionPool;
+    private final DatabaseClient databaseClient;
+
+    public ReactiveChatReader(ChatMessageMapper chatMessageMapper,
+                              ContextChunkStore contextChunkStore,
+                              SessionArchiveService sessionArchiveService,
+                              DataSourceProperties dataSourceProperties,
+                              @Value("${chat.reactive.url:}") String url,
+                              @Value("${chat.reactive.max-connections:10}") int maxConnections,
+                              @Value("${chat.reactive.page-size:200}") int pageSize) {
+        this.chatMessageMapper = chatMessageMapper;
+        this.contextChunkStore = contextChunkStore;
+        this.sessionArchiveService = sessionArchiveService;
+        this.pageSize = pageSize;
+
+        String r2dbcUrl = url.isBlank() ? dataSourceProperties.determineUrl().replaceFirst("^jdbc:", "r2dbc:") : url;
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(r2dbcUrl).mutate()
+                .option(ConnectionFactoryOptions.USER, dataSourceProperties.determineUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, dataSourceProperties.determinePassword())
+                .build();
+        // kept out of the context: a ConnectionFactory bean would switch off the JDBC DataSource auto-configuration
+        this.connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("reactive-read")
+                .initialSize(0)
+                .maxSize(maxConnections)
+                .maxIdleTime(Duration.ofMinutes(5))
+                .build());
+        this.databaseClient = DatabaseClient.create(connectionPool);
+    }
+
+    public Mono<ChatSession> findSession(UUID sessionId) {
+        return databaseClient.sql(SESSION_SQL)
+                .bind(0, sessionId)
+                .map(row -> ChatSession.builder()
+                        .id(row.get("id", UUID.class))
+                        .name(row.get("name", String.class))
+                        .createdAt(row.get("created_at", LocalDateTime.class))
+                        .archivedAt(row.get("archived_at", LocalDateTime.class))
+                        .build())
+                .one();
+    }
+
+    /**
+     * Messages of the session newest first, starting after the given cursor (null for the latest).
+     */
+    public Flux<MessageResponseDto> streamMessages(ChatSession session, MessageCursor after) {
+        Flux<List<ChatMessage>> pages = session.getArchivedAt() != null ?
+                archivedPages(session, after) :
+                keysetPages(after, cursor -> messagePage(session, cursor),
+                        last -> new MessageCursor(last.getCreatedAt(), last.getId()));
+        return pages.concatMap(this::withContextChunks, 1)
+                .concatMapIterable(page -> page.stream().map(chatMessageMapper::toMessageResponseDto).toList(), 1);
+    }
+
+    public Flux<ChatSessionResponse> streamSessions(UUID userId) {
+        return keysetPages(null, cursor -> sessionPage(userId, cursor),
+                last -> new MessageCursor(last.getCreatedAt(), last.getId()))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    // the next page is only queried once the previous one has been requested downstream
+    private <T> Flux<List<T>> keysetPages(MessageCursor start, Function<MessageCursor, Mono<List<T>>> loader,
+                                         Function<T, MessageCursor> cursorOf) {
+        return loader.apply(start).expand(page -> page.size() < pageSize ? Mono.empty() :
+                loader.apply(cursorOf.apply(page.get(page.size() - 1))));
+    }
+
+    private Mono<List<ChatMessage>> messagePage(ChatSession session, MessageCursor after) {
+        DatabaseClient.GenericExecuteSpec spec = after == null ?
+                databaseClient.sql(FIRST_MESSAGES_SQL)
+                        .bind(0, session.getId()).bind(1, session.getCreatedAt()).bind(2, pageSize) :
+                databaseClient.sql(NEXT_MESSAGES_SQL)
+                        .bind(0, session.getId()).bind(1, session.getCreatedAt())
+                        .bind(2, after.createdAt()).bind(3, after.id()).bind(4, pageSize);
+        return spec.map(ReactiveChatReader::toMessage).all().collectList();
+    }
+
+    private Mono<List<ChatSessionResponse>> sessionPage(UUID userId, MessageCursor after) {
+        DatabaseClient.GenericExecuteSpec spec = after == null ?
+                databaseClient.sql(FIRST_SESSIONS_SQL).bind(0, userId).bind(1, pageSize) :
+                databaseClient.sql(NEXT_SESSIONS_SQL).bind(0, userId)
+                        .bind(1, after.createdAt()).bind(2, after.id()).bind(3, pageSize);
+        return spec.map(row -> ChatSessionResponse.builder()
+                        .id(row.get("id", UUID.class))
+                        .name(row.get("name", String.class))
+                        .favorite(Boolean.TRUE.equals(row.get("favorite", Boolean.class)))
+                        .createdAt(row.get("created_at", LocalDateTime.class))
+                        .updatedAt(row.get("updated_at", LocalDateTime.class))
+                        .userId(userId)
+                        .build())
+                .all()
+                .collectList();
+    }
+
+    // the archive service blocks (decoding, JPA), so its pages are read off the event loop
+    private Flux<List<ChatMessage>> archivedPages(ChatSession session, MessageCursor after) {
+        return keysetPages(after, cursor -> Mono.fromCallable(() -> sessionArchiveService.findKeysetPage(session, cursor, pageSize))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                last -> new MessageCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    private Mono<List<ChatMessage>> withContextChunks(List<ChatMessage> page) {
+        List<byte[]> missing = contextChunkStore.findUncached(page);
+        if (missing.isEmpty()) {
+            return Mono.just(page);
+        }
+        String placeholders = IntStream.rangeClosed(1, missing.size()).mapToObj(i -> "$" + i)
+                .collect(Collectors.joining(", "));
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(String.format(CHUNKS_SQL, placeholders));
+        for (int i = 0; i < missing.size(); i++) {
+            spec = spec.bind(i, missing.get(i));
+        }
+        return spec.map(row -> {
+                    contextChunkStore.cacheChunk(row.get("hash", byte[].class), row.get("content", String.class),
+                            row.get("content_zstd", byte[].class));
+                    return true;
+                })
+                .all()
+                .then(Mono.just(page));
+    }
+
+    private static ChatMessage toMessage(Readable row) {
+        return ChatMessage.builder()
+                .id(row.get("id", UUID.class))
+                .content(row.get("content", String.class))
+                .contentZstd(row.get("content_zstd", byte[].class))
+                .sender(row.get("sender", String.class))
+                .retrievedContext(row.get("retrieved_context", String.class))
+                .contextChunkHashes(row.get("context_chunk_hashes", byte[].class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .newMessage(false)
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionPool.dispose();
+    }
+}
@@ -0,0 +1,353 @@
+package com.rag.service.service;
+
+import com.rag.service.dto.RetentionStatus;
+import com.rag.service.event.ChatMessagesDeletedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Enforces the retention policy: chat messages and session chats older than the configured number of days are
+ * removed in the background. Months that are entirely expired are dropped as whole chat_messages partitions;
+ * everything else is deleted oldest first in small keyset batches, each in its own short transaction, with a
+ * pause in between so the sweep never holds locks for long or floods the WAL. Messages of archived sessions are
+ * expired from their archive entries, a batch of sessions at a time. Context chunks that neither a message nor an
+ * archive entry references any more, left behind by expired and deleted messages alike, are removed last. Progress
+ * is kept for the retention actuator endpoint.
+ */
+@Slf4j
+@Component
+public class RetentionSweeper {
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("chat_messages_(\\d{6})");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String LIST_PARTITIONS_SQL = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'chat_messages'::regclass ORDER BY c.relname";
+    // embeddings have no foreign key to the partitioned table, so they are removed alongside the messages; dropping
+    // the partition does not fire the triggers that release message ids, so its ids are released here as well
+    private static final String PURGE_PARTITION_SQL = "WITH batch AS (SELECT id FROM %s WHERE id > ? " +
+            "ORDER BY id LIMIT ?), purged AS (DELETE FROM message_embeddings e USING batch WHERE e.message_id = batch.id), " +
+            "released AS (DELETE FROM message_ids m USING batch WHERE m.id = batch.id) " +
+            "SELECT id FROM batch";
+    // takes a "counted" CTE of deleted messages per session, counting only those from the session's creation on;
+    // sessions and then users are locked in key order, as SessionActivityRecorder does
+    private static final String UNCOUNT_SQL = "versioned AS (UPDATE chat_sessions s SET message_version = s.message_version + 1, " +
+            "message_count = GREATEST(s.message_count - c.total, 0), " +
+            "last_message_at = CASE WHEN s.message_count > c.total THEN s.last_message_at END, " +
+            "last_message_preview = CASE WHEN s.message_count > c.total THEN s.last_message_preview END " +
+            "FROM counted c WHERE s.id = c.id RETURNING s.user_id), " +
+            "touched AS (UPDATE users u SET sessions_version = u.sessions_version + 1 FROM (SELECT id FROM users " +
+            "WHERE id IN (SELECT user_id FROM versioned) ORDER BY id FOR NO KEY UPDATE) v WHERE u.id = v.id) ";
+    private static final String UNCOUNT_PARTITION_SQL = "WITH counted AS (SELECT l.id, " +
+            "count(*) FILTER (WHERE p.created_at >= l.created_at) AS total FROM (SELECT id, created_at FROM chat_sessions " +
+            "WHERE id IN (SELECT session_id FROM %1$s) ORDER BY id FOR NO KEY UPDATE) l " +
+            "JOIN %1$s p ON p.session_id = l.id GROUP BY l.id), " + UNCOUNT_SQL +
+            "SELECT count(*) FROM versioned";
+    private static final String DELETE_MESSAGES_SQL = "WITH batch AS (SELECT id, created_at FROM chat_messages " +
+            "WHERE created_at < ? AND (created_at, id) > (?, ?) ORDER BY created_at, id LIMIT ? FOR UPDATE SKIP LOCKED), " +
+            "deleted AS (DELETE FROM chat_messages m USING batch WHERE m.id = batch.id AND m.created_at = batch.created_at " +
+            "RETURNING m.id, m.created_at, m.session_id), " +
+            "purged AS (DELETE FROM message_embeddings e USING deleted WHERE e.message_id = deleted.id), " +
+            "counted AS (SELECT l.id, count(*) FILTER (WHERE d.created_at >= l.created_at) AS total FROM (SELECT id, created_at " +
+            "FROM chat_sessions WHERE id IN (SELECT session_id FROM deleted) ORDER BY id FOR NO KEY UPDATE) l " +
+            "JOIN deleted d ON d.session_id = l.id GROUP BY l.id), " +
+            UNCOUNT_SQL +
+            "SELECT id, created_at FROM deleted ORDER BY created_at, id";
+    private static final String DELETE_SESSION_CHATS_SQL = "WITH batch AS (SELECT id, updated_at FROM session_chat " +
+            "WHERE updated_at < ? AND (updated_at, id) > (?, ?) ORDER BY updated_at, id LIMIT ? FOR UPDATE SKIP LOCKED), " +
+            "deleted AS (DELETE FROM session_chat s USING batch WHERE s.id = batch.id RETURNING s.id, s.updated_at) " +
+            "SELECT id, updated_at FROM deleted ORDER BY updated_at, id";
+    private static final String CHUNK_INDEX_VALID_SQL = "SELECT indisvalid FROM pg_index " +
+            "WHERE indexrelid = to_regclass('idx_messages_context_chunks')";
+    // both lookups use the GIN indexes on the hash arrays; returns every hash of the batch and whether it went
+    private static final String DELETE_CHUNKS_SQL = "WITH batch AS (SELECT hash FROM context_chunks WHERE hash > ? " +
+            "ORDER BY hash LIMIT ?), deleted AS (DELETE FROM context_chunks c USING batch b WHERE c.hash = b.hash " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE context_chunk_hash_array(m.context_chunk_hashes) @> ARRAY[c.hash] " +
+            "AND m.context_chunk_hashes IS NOT NULL) " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_sessions s WHERE context_chunk_hash_array(s.archived_chunk_hashes) @> ARRAY[c.hash] " +
+            "AND s.archived_at IS NOT NULL) RETURNING c.hash) " +
+            "SELECT b.hash, d.hash IS NOT NULL FROM batch b LEFT JOIN deleted d ON d.hash = b.hash ORDER BY b.hash";
+    // keyset start below any stored timestamp
+    private static final Timestamp KEYSET_START = Timestamp.valueOf("1900-01-01 00:00:00");
+
+    private final boolean enabled;
+    private final int messageRetentionDays;
+    private final int sessionChatRetentionDays;
+    private final int batchSize;
+    private final long batchPauseMillis;
+    private final long lockTimeoutMillis;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SessionArchiveService sessionArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter messagesDeleted;
+    private final Counter sessionChatsDeleted;
+    private final Counter partitionsDropped;
+    private final Counter chunksDeleted;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile RetentionStatus status;
+
+    public RetentionSweeper(@Value("${chat.retention.enabled:false}") boolean enabled,
+                            @Value("${chat.retention.messages-days:0}") int messageRetentionDays,
+                            @Value("${chat.retention.session-chat-days:0}") int sessionChatRetentionDays,
+                            @Value("${chat.retention.batch-size:1000}") int batchSize,
+                            @Value("${chat.retention.batch-pause-ms:100}") long batchPauseMillis,
+                            @Value("${chat.retention.lock-timeout-ms:5000}") long lockTimeoutMillis,
+                            JdbcTemplate jdbcTemplate,
+                            SessionArchiveService sessionArchiveService,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.messageRetentionDays = messageRetentionDays;
+        this.sessionChatRetentionDays = sessionChatRetentionDays;
+        this.batchSize = batchSize;
+        this.batchPauseMillis = batchPauseMillis;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionArchiveService = sessionArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.status = RetentionStatus.builder().enabled(enabled).phase("idle").build();
+
+        this.messagesDeleted = Counter.builder("chat.retention.deleted").tag("table", "chat_messages")
+                .description("Rows removed by the retention sweeper").register(meterRegistry);
+        this.sessionChatsDeleted = Counter.builder("chat.retention.deleted").tag("table", "session_chat")
+                .description("Rows removed by the retention sweeper").register(meterRegistry);
+        this.chunksDeleted = Counter.builder("chat.retention.deleted").tag("table", "context_chunks")
+                .description("Rows removed by the retention sweeper").register(meterRegistry);
+        this.partitionsDropped = Counter.builder("chat.retention.partitions.dropped")
+                .description("Expired chat_messages partitions dropped").register(meterRegistry);
+        Gauge.builder("chat.retention.rows.per.second", this, sweeper -> sweeper.status.getRowsPerSecond())
+                .description("Deletion rate of the current or last retention sweep").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${chat.retention.interval-ms:3600000}",
+            initialDelayString = "${chat.retention.initial-delay-ms:60000}")
+    public void scheduledSweep() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * Runs one sweep unless one is already in progress; returns false in that case.
+     */
+    public boolean sweep() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        status = RetentionStatus.builder().enabled(enabled).running(true).phase("starting").startedAt(now).build();
+        try {
+            if (messageRetentionDays > 0) {
+                LocalDateTime cutoff = now.minusDays(messageRetentionDays);
+                dropExpiredPartitions(cutoff);
+                deleteExpiredMessages(cutoff);
+                expireArchivedMessages(cutoff);
+            }
+            if (sessionChatRetentionDays > 0) {
+                deleteExpiredSessionChats(now.minusDays(sessionChatRetentionDays));
+            }
+            deleteOrphanedChunks();
+            update(status.toBuilder().phase("idle"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            update(status.toBuilder().phase("interrupted"));
+        } catch (DataAccessException e) {
+            // the next sweep continues where this one stopped, everything deleted so far is committed
+            log.error("Retention sweep failed in phase {}", status.getPhase(), e);
+            update(status.toBuilder().phase("failed").error(e.getMessage()));
+        } finally {
+            update(status.toBuilder().running(false).finishedAt(LocalDateTime.now()));
+            running.set(false);
+        }
+        log.info("Retention sweep finished: {} messages, {} session chats, {} context chunks, {} partitions dropped",
+                status.getMessagesDeleted(), status.getSessionChatsDeleted(), status.getChunksDeleted(),
+                status.getPartitionsDropped());
+        return true;
+    }
+
+    public RetentionStatus getStatus() {
+        return status;
+    }
+
+    private void dropExpiredPartitions(LocalDateTime cutoff) throws InterruptedException {
+        update(status.toBuilder().phase("dropping expired partitions"));
+        for (String partition : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class)) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()
+                    || YearMonth.parse(matcher.group(1), PARTITION_MONTH).plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                continue;
+            }
+            long rows = 0;
+            UUID last = new UUID(0, 0);
+            List<UUID> ids;
+            do {
+                pause(rows);
+                ids = jdbcTemplate.queryForList(String.format(PURGE_PARTITION_SQL, partition), UUID.class, last, batchSize);
+                if (!ids.isEmpty()) {
+                    last = ids.get(ids.size() - 1);
+                    rows += ids.size();
+                    eventPublisher.publishEvent(new ChatMessagesDeletedEvent(ids));
+                }
+            } while (ids.size() == batchSize);
+
+            transactionTemplate.executeWithoutResult(tx -> {
+                // give up instead of queueing every chat_messages query behind the detach
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMillis);
+                jdbcTemplate.queryForObject(String.format(UNCOUNT_PARTITION_SQL, partition), Long.class);
+                jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            });
+            messagesDeleted.increment(rows);
+            partitionsDropped.increment();
+            update(status.toBuilder().messagesDeleted(status.getMessagesDeleted() + rows)
+                    .partitionsDropped(status.getPartitionsDropped() + 1));
+            log.info("Dropped expired partition {} with {} messages", partition, rows);
+        }
+    }
+
+    private void deleteExpiredMessages(LocalDateTime cutoff) throws InterruptedException {
+        update(status.toBuilder().phase("deleting expired messages"));
+        Timestamp lastCreatedAt = KEYSET_START;
+        UUID lastId = new UUID(0, 0);
+        int deleted;
+        do {
+            pause(status.getMessagesDeleted());
+            List<UUID> ids = new ArrayList<>();
+            List<Timestamp> createdAts = new ArrayList<>();
+            jdbcTemplate.query(DELETE_MESSAGES_SQL, rs -> {
+                ids.add(rs.getObject(1, UUID.class));
+                createdAts.add(rs.getTimestamp(2));
+            }, Timestamp.valueOf(cutoff), lastCreatedAt, lastId, batchSize);
+            deleted = ids.size();
+            if (deleted > 0) {
+                lastCreatedAt = createdAts.get(deleted - 1);
+                lastId = ids.get(deleted - 1);
+                messagesDeleted.increment(deleted);
+                update(status.toBuilder().messagesDeleted(status.getMessagesDeleted() + deleted));
+                eventPublisher.publishEvent(new ChatMessagesDeletedEvent(ids));
+            }
+        } while (deleted == batchSize);
+    }
+
+    private void expireArchivedMessages(LocalDateTime cutoff) throws InterruptedException {
+        update(status.toBuilder().phase("expiring archived messages"));
+        UUID last = new UUID(0, 0);
+        long expired = 0;
+        List<UUID> sessionIds;
+        do {
+            pause(expired);
+            sessionIds = sessionArchiveService.findSessionsWithExpiredMessages(cutoff, last, batchSize);
+            for (UUID sessionId : sessionIds) {
+                int count = sessionArchiveService.expireMessages(sessionId, cutoff);
+                expired += count;
+                messagesDeleted.increment(count);
+                update(status.toBuilder().messagesDeleted(status.getMessagesDeleted() + count));
+                last = sessionId;
+            }
+        } while (sessionIds.size() == batchSize);
+    }
+
+    private void deleteExpiredSessionChats(LocalDateTime cutoff) throws InterruptedException {
+        update(status.toBuilder().phase("deleting expired session chats"));
+        Timestamp lastUpdatedAt = KEYSET_START;
+        long lastId = 0;
+        int deleted;
+        do {
+            pause(status.getSessionChatsDeleted());
+            List<Long> ids = new ArrayList<>();
+            List<Timestamp> updatedAts = new ArrayList<>();
+            jdbcTemplate.query(DELETE_SESSION_CHATS_SQL, rs -> {
+                ids.add(rs.getLong(1));
+                updatedAts.add(rs.getTimestamp(2));
+            }, Timestamp.valueOf(cutoff), lastUpdatedAt, lastId, batchSize);
+            deleted = ids.size();
+            if (deleted > 0) {
+                lastUpdatedAt = updatedAts.get(deleted - 1);
+                lastId = ids.get(deleted - 1);
+                sessionChatsDeleted.increment(deleted);
+                update(status.toBuilder().sessionChatsDeleted(status.getSessionChatsDeleted() + deleted));
+            }
+        } while (deleted == batchSize);
+    }
+
+    private void deleteOrphanedChunks() throws InterruptedException {
+        update(status.toBuilder().phase("deleting orphaned context chunks"));
+        // without an index on every partition each batch would scan all messages; MessagePartitionMaintainer builds them
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(CHUNK_INDEX_VALID_SQL, Boolean.class))) {
+            log.info("Skipping orphaned context chunks until idx_messages_context_chunks covers every partition");
+            return;
+        }
+        int unregistered = sessionArchiveService.registerArchivedChunks();
+        if (unregistered > 0) {
+            log.warn("Skipping orphaned context chunks: {} archived sessions have no readable archive entry", unregistered);
+            return;
+        }
+        byte[] last = new byte[0];
+        long scanned = 0;
+        int batch;
+        do {
+            pause(scanned);
+            List<byte[]> hashes = new ArrayList<>();
+            long[] deleted = new long[1];
+            byte[] after = last;
+            transactionTemplate.executeWithoutResult(tx -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMillis);
+                // waits for in-flight writers, which insert their chunks in the transaction that inserts the
+                // referencing messages, and keeps new references from appearing until the batch commits
+                jdbcTemplate.execute("LOCK TABLE context_chunks IN SHARE ROW EXCLUSIVE MODE");
+                jdbcTemplate.query(DELETE_CHUNKS_SQL, rs -> {
+                    hashes.add(rs.getBytes(1));
+                    if (rs.getBoolean(2)) {
+                        deleted[0]++;
+                    }
+                }, after, batchSize);
+            });
+            batch = hashes.size();
+            if (batch > 0) {
+                last = hashes.get(batch - 1);
+                scanned += batch;
+                chunksDeleted.increment(deleted[0]);
+                update(status.toBuilder().chunksDeleted(status.getChunksDeleted() + deleted[0]));
+            }
+        } while (batch == batchSize);
+    }
+
+    // throttles every batch after the first one
+    private void pause(long deletedSoFar) throws InterruptedException {
+        if (deletedSoFar > 0 && batchPauseMillis > 0) {
+            Thread.sleep(batchPauseMillis);
+        }
+    }
+
+    private void update(RetentionStatus.RetentionStatusBuilder builder) {
+        RetentionStatus next = builder.build();
+        long deleted = next.getMessagesDeleted() + next.getSessionChatsDeleted() + next.getChunksDeleted();
+        Duration elapsed = Duration.between(next.getStartedAt(), LocalDateTime.now());
+        next.setRowsPerSecond(elapsed.toMillis() > 0 ? deleted * 1000.0 / elapsed.toMillis() : 0);
+        status = next;
+    }
+}
@@ -0,0 +1,134 @@
+package com.rag.service.service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.exception.ArchiveUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Completes the session activity columns where the migration that added them could not: sessions whose messages
+ * were archived at the time, and previews of compressed messages. Runs once per start on a background thread;
+ * sessions that are already complete are skipped.
+ */
+@Slf4j
+@Component
+public class SessionActivityBackfill {
+    private static final int BATCH_SIZE = 500;
+    private static final String ARCHIVED_SQL = "SELECT id FROM chat_sessions WHERE archived_at IS NOT NULL " +
+            "AND last_message_at IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String LOCK_ARCHIVED_SQL = "SELECT user_id FROM chat_sessions WHERE id = ? " +
+            "AND archived_at IS NOT NULL AND last_message_at IS NULL FOR UPDATE";
+    private static final String MISSING_PREVIEW_SQL = "SELECT id, last_message_at FROM chat_sessions WHERE archived_at IS NULL " +
+            "AND last_message_at IS NOT NULL AND last_message_preview IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String LAST_MESSAGE_SQL = "SELECT content, content_zstd FROM chat_messages " +
+            "WHERE session_id = ? AND created_at = ? ORDER BY id DESC LIMIT 1";
+    // a message saved in the meantime has already set its own preview
+    private static final String SET_PREVIEW_SQL = "UPDATE chat_sessions SET last_message_preview = ? " +
+            "WHERE id = ? AND last_message_at = ? AND last_message_preview IS NULL";
+
+    private final SessionArchiveService sessionArchiveService;
+    private final SessionActivityRecorder sessionActivityRecorder;
+    private final PayloadCodec payloadCodec;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SessionActivityBackfill(SessionArchiveService sessionArchiveService,
+                                   SessionActivityRecorder sessionActivityRecorder,
+                                   PayloadCodec payloadCodec,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        this.sessionArchiveService = sessionArchiveService;
+        this.sessionActivityRecorder = sessionActivityRecorder;
+        this.payloadCodec = payloadCodec;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::backfillQuietly, "session-activity-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void backfillQuietly() {
+        try {
+            int archived = backfillArchived();
+            int previews = backfillPreviews();
+            if (archived > 0 || previews > 0) {
+                log.info("Backfilled activity of {} archived sessions and {} message previews", archived, previews);
+            }
+        } catch (RuntimeException e) {
+            log.error("Session activity backfill failed; it is retried on the next start", e);
+        }
+    }
+
+    public int backfillArchived() {
+        int count = 0;
+        UUID last = new UUID(0, 0);
+        List<UUID> sessionIds;
+        do {
+            sessionIds = jdbcTemplate.queryForList(ARCHIVED_SQL, UUID.class, last, BATCH_SIZE);
+            for (UUID sessionId : sessionIds) {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> recordArchived(sessionId)))) {
+                    count++;
+                }
+                last = sessionId;
+            }
+        } while (sessionIds.size() == BATCH_SIZE);
+        return count;
+    }
+
+    // locked like a rehydration, so the session cannot be written to in between
+    private boolean recordArchived(UUID sessionId) {
+        List<UUID> userId = jdbcTemplate.queryForList(LOCK_ARCHIVED_SQL, UUID.class, sessionId);
+        if (userId.isEmpty()) {
+            return false;
+        }
+        ChatSession session = ChatSession.builder().id(sessionId).user(User.builder().id(userId.get(0)).build()).build();
+        List<ChatMessage> messages;
+        try {
+            messages = sessionArchiveService.readArchived(session);
+        } catch (ArchiveUnavailableException e) {
+            log.warn("{}; its activity is left unset", e.getMessage());
+            return false;
+        }
+        sessionActivityRecorder.record(messages);
+        return !messages.isEmpty();
+    }
+
+    public int backfillPreviews() {
+        int count = 0;
+        UUID last = new UUID(0, 0);
+        List<SessionTail> sessions;
+        do {
+            sessions = jdbcTemplate.query(MISSING_PREVIEW_SQL, (rs, rowNum) -> new SessionTail(rs.getObject(1, UUID.class),
+                    rs.getTimestamp(2)), last, BATCH_SIZE);
+            for (SessionTail session : sessions) {
+                List<String> content = jdbcTemplate.query(LAST_MESSAGE_SQL, (rs, rowNum) -> payloadCodec.resolveContent(
+                        ChatMessage.builder().content(rs.getString(1)).contentZstd(rs.getBytes(2)).build()),
+                        session.id(), session.lastMessageAt());
+                if (!content.isEmpty() && jdbcTemplate.update(SET_PREVIEW_SQL,
+                        SessionActivityRecorder.preview(content.get(0)), session.id(), session.lastMessageAt()) > 0) {
+                    count++;
+                }
+                last = session.id();
+            }
+        } while (sessions.size() == BATCH_SIZE);
+        return count;
+    }
+
+    private record SessionTail(UUID id, Timestamp lastMessageAt) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.rag.service.service;
+
+import com.rag.service.entity.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the activity columns of chat_sessions (message count, time and preview of the last message) in step with
+ * inserted messages, inside the inserting transaction. The same statements bump the session's message version and
+ * the owner's session list version, which validate conditional GETs.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionActivityRecorder {
+    public static final int PREVIEW_LENGTH = 160;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String RECORD_SQL = "UPDATE chat_sessions SET message_version = message_version + 1, " +
+            "message_count = message_count + ?, " +
+            "last_message_preview = CASE WHEN last_message_at IS NULL OR last_message_at <= ? THEN ? ELSE last_message_preview END, " +
+            "last_message_at = GREATEST(last_message_at, ?) WHERE id = ?";
+    private static final String BUMP_SESSIONS_VERSION_SQL = "UPDATE users SET sessions_version = sessions_version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PayloadCodec payloadCodec;
+
+    /**
+     * Records newly inserted messages. Rows are updated in key order, sessions before users, as the retention and
+     * import statements do, so concurrent writers cannot deadlock.
+     */
+    public void record(Collection<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<ChatMessage>> bySession = messages.stream().collect(Collectors.groupingBy(
+                message -> message.getSession().getId(), () -> new TreeMap<>(SessionArchiveService::compareUuids), Collectors.toList()));
+        List<Object[]> sessionRows = new ArrayList<>(bySession.size());
+        bySession.forEach((sessionId, sessionMessages) -> {
+            ChatMessage last = sessionMessages.stream().max(Comparator.comparing(ChatMessage::getCreatedAt)).orElseThrow();
+            Timestamp lastMessageAt = Timestamp.valueOf(last.getCreatedAt());
+            sessionRows.add(new Object[]{sessionMessages.size(), lastMessageAt, preview(payloadCodec.resolveContent(last)),
+                    lastMessageAt, sessionId});
+        });
+        jdbcTemplate.batchUpdate(RECORD_SQL, sessionRows);
+
+        List<Object[]> userRows = messages.stream()
+                .map(message -> message.getSession().getUser().getId())
+                .distinct()
+                .sorted(SessionArchiveService::compareUuids)
+                .map(userId -> new Object[]{userId})
+                .toList();
+        jdbcTemplate.batchUpdate(BUMP_SESSIONS_VERSION_SQL, userRows);
+    }
+
+    /**
+     * Message content on a single line, cut to {@link #PREVIEW_LENGTH} characters.
+     */
+    public static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        String preview = WHITESPACE.matcher(content).replaceAll(" ").strip();
+        if (preview.length() <= PREVIEW_LENGTH) {
+            return preview;
+        }
+        int end = Character.isHighSurrogate(preview.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return preview.substring(0, end);
+    }
+}
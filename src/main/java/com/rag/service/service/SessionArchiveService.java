@@ -0,0 +1,579 @@
+package com.rag.service.service;
+
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.event.ChatMessagesDeletedEvent;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.ChatSessionDeletedEvent;
+import com.rag.service.exception.ArchiveUnavailableException;
+import com.rag.service.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Tiers cold sessions out of PostgreSQL. Sessions without changes or new messages for {@code idle-days} have
+ * their messages (and embeddings) moved into the {@link SessionArchiveStore} and are marked archived_at, with the
+ * entry's location kept on the session row; reads of an archived session are served from the archive, and the next
+ * write moves it back into the database. Every instance reads entries written by the others, so with more than one
+ * instance the archive directory must be shared by all of them.
+ * Recently read entries are kept decoded, so paging through an archived session decodes it once. Archived
+ * messages expire under the retention policy like stored ones (see {@link RetentionSweeper}).
+ */
+@Slf4j
+@Service
+public class SessionArchiveService {
+    private static final byte FORMAT_VERSION = 1;
+    // newest first, ties broken by id as PostgreSQL orders uuids, matching the message page queries
+    static final Comparator<ChatMessage> NEWEST_FIRST = Comparator.comparing(ChatMessage::getCreatedAt).reversed()
+            .thenComparing(ChatMessage::getId, SessionArchiveService::compareUuids);
+
+    private static final String CANDIDATES_SQL = "SELECT s.id FROM chat_sessions s " +
+            "WHERE s.archived_at IS NULL AND s.updated_at < ? AND s.id > ? " +
+            "AND EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id AND m.created_at >= s.created_at) " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id AND m.created_at >= ?) " +
+            "ORDER BY s.id LIMIT ?";
+    // locking the session row waits for in-flight message inserts, which hold a key share lock on it
+    private static final String LOCK_ACTIVE_SQL = "SELECT created_at FROM chat_sessions " +
+            "WHERE id = ? AND archived_at IS NULL AND updated_at < ? FOR UPDATE";
+    private static final String RECENT_MESSAGE_SQL = "SELECT EXISTS (SELECT 1 FROM chat_messages " +
+            "WHERE session_id = ? AND created_at >= ?)";
+    private static final String LOAD_SQL = "SELECT m.id, m.sender, m.content, m.content_zstd, m.retrieved_context, " +
+            "m.context_chunk_hashes, m.created_at, e.embedding FROM chat_messages m " +
+            "LEFT JOIN message_embeddings e ON e.message_id = m.id AND e.session_id = m.session_id " +
+            "WHERE m.session_id = ? AND m.created_at >= ?";
+    private static final String DELETE_EMBEDDINGS_SQL = "DELETE FROM message_embeddings WHERE session_id = ?";
+    private static final String DELETE_MESSAGES_SQL = "DELETE FROM chat_messages WHERE session_id = ? AND created_at >= ?";
+    // archived_chunk_hashes keeps the entry's context chunks referenced once its rows are gone (see RetentionSweeper)
+    private static final String MARK_ARCHIVED_SQL = "UPDATE chat_sessions SET archived_at = LOCALTIMESTAMP, " +
+            "archive_oldest_at = COALESCE(?::timestamp, 'infinity'), archived_chunk_hashes = ?, " +
+            "archive_segment = ?, archive_offset = ?, archive_length = ? WHERE id = ?";
+    private static final String LOCK_ARCHIVED_SQL = "SELECT user_id FROM chat_sessions WHERE id = ? AND archived_at IS NOT NULL FOR UPDATE";
+    // archiving released the ids; one written since by a new message stays with that message
+    private static final String INSERT_SQL = "INSERT INTO chat_messages (id, session_id, content, content_zstd, sender, " +
+            "retrieved_context, context_chunk_hashes, created_at) SELECT ?, ?, ?, ?, ?, ?, ?, ?::timestamp " +
+            "WHERE NOT EXISTS (SELECT 1 FROM message_ids WHERE id = ?)";
+    private static final String INSERT_EMBEDDING_SQL = "INSERT INTO message_embeddings (message_id, session_id, embedding) " +
+            "VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String CLEAR_ARCHIVED_SQL = "UPDATE chat_sessions SET archived_at = NULL, archive_oldest_at = NULL, " +
+            "archived_chunk_hashes = NULL, archive_segment = NULL, archive_offset = NULL, archive_length = NULL WHERE id = ?";
+    // no location: archived before locations were stored, the entry is in sessions.idx
+    private static final String LOCATION_SQL = "SELECT archive_segment, archive_offset, archive_length FROM chat_sessions " +
+            "WHERE id = ? AND archive_segment IS NOT NULL";
+    private static final String EXPIRING_SQL = "SELECT id FROM chat_sessions WHERE archived_at IS NOT NULL " +
+            "AND (archive_oldest_at IS NULL OR archive_oldest_at < ?) AND id > ? ORDER BY id LIMIT ?";
+    private static final String UNREGISTERED_SQL = "SELECT id FROM chat_sessions WHERE archived_at IS NOT NULL " +
+            "AND archived_chunk_hashes IS NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String REGISTER_CHUNKS_SQL = "UPDATE chat_sessions SET archived_chunk_hashes = ? WHERE id = ?";
+    private static final String SET_OLDEST_SQL = "UPDATE chat_sessions SET archive_oldest_at = COALESCE(?::timestamp, 'infinity') WHERE id = ?";
+    // as RetentionSweeper un-counts deleted messages; every archived message is from the session's creation on
+    private static final String UNCOUNT_SQL = "WITH versioned AS (UPDATE chat_sessions s SET message_version = s.message_version + 1, " +
+            "message_count = GREATEST(s.message_count - ?, 0), " +
+            "last_message_at = CASE WHEN s.message_count > ? THEN s.last_message_at END, " +
+            "last_message_preview = CASE WHEN s.message_count > ? THEN s.last_message_preview END, " +
+            "archive_oldest_at = COALESCE(?::timestamp, 'infinity'), archived_chunk_hashes = ?, " +
+            "archive_segment = ?, archive_offset = ?, archive_length = ? WHERE s.id = ? RETURNING s.user_id) " +
+            "UPDATE users u SET sessions_version = u.sessions_version + 1 FROM versioned v WHERE u.id = v.user_id";
+
+    private final boolean enabled;
+    private final int idleDays;
+    private final int batchSize;
+    private final SessionArchiveStore store;
+    private final ChatMessageRepository messageRepository;
+    private final ContextChunkStore contextChunkStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter archived;
+    private final Counter rehydrated;
+    private final Map<UUID, Decoded> decoded;
+
+    // shared between reads, so pages hand out copies bound to the caller's session
+    private record Decoded(SessionArchiveStore.Location location, List<ChatMessage> messages, Set<UUID> ids) {
+    }
+
+    public SessionArchiveService(@Value("${chat.archive.enabled:false}") boolean enabled,
+                                 @Value("${chat.archive.idle-days:7}") int idleDays,
+                                 @Value("${chat.archive.batch-size:100}") int batchSize,
+                                 @Value("${chat.archive.cache-sessions:64}") int cacheSessions,
+                                 SessionArchiveStore store,
+                                 ChatMessageRepository messageRepository,
+                                 ContextChunkStore contextChunkStore,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.idleDays = idleDays;
+        this.batchSize = batchSize;
+        this.store = store;
+        this.messageRepository = messageRepository;
+        this.contextChunkStore = contextChunkStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.archived = Counter.builder("chat.archive.sessions").tag("operation", "archive")
+                .description("Sessions moved to or from the local archive").register(meterRegistry);
+        this.rehydrated = Counter.builder("chat.archive.sessions").tag("operation", "rehydrate")
+                .description("Sessions moved to or from the local archive").register(meterRegistry);
+        this.decoded = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Decoded> eldest) {
+                return size() > cacheSessions;
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${chat.archive.interval-ms:3600000}",
+            initialDelayString = "${chat.archive.initial-delay-ms:120000}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archiveIdleSessions();
+        }
+    }
+
+    /**
+     * Archives every session idle for longer than {@code idle-days}, one session per transaction.
+     */
+    public int archiveIdleSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+        int count = 0;
+        UUID last = new UUID(0, 0);
+        List<UUID> candidates;
+        do {
+            candidates = jdbcTemplate.queryForList(CANDIDATES_SQL, UUID.class, Timestamp.valueOf(cutoff), last,
+                    Timestamp.valueOf(cutoff), batchSize);
+            for (UUID sessionId : candidates) {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> archive(sessionId, cutoff)))) {
+                    count++;
+                }
+                last = sessionId;
+            }
+        } while (candidates.size() == batchSize);
+        if (count > 0) {
+            log.info("Archived {} idle sessions", count);
+        }
+        return count;
+    }
+
+    private boolean archive(UUID sessionId, LocalDateTime cutoff) {
+        List<Timestamp> createdAt = jdbcTemplate.queryForList(LOCK_ACTIVE_SQL, Timestamp.class, sessionId, Timestamp.valueOf(cutoff));
+        if (createdAt.isEmpty()
+                || Boolean.TRUE.equals(jdbcTemplate.queryForObject(RECENT_MESSAGE_SQL, Boolean.class, sessionId, Timestamp.valueOf(cutoff)))) {
+            return false;
+        }
+        List<ChatMessage> messages = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) -> ChatMessage.builder()
+                .id(rs.getObject(1, UUID.class))
+                .sender(rs.getString(2))
+                .content(rs.getString(3))
+                .contentZstd(rs.getBytes(4))
+                .retrievedContext(rs.getString(5))
+                .contextChunkHashes(rs.getBytes(6))
+                .createdAt(rs.getTimestamp(7).toLocalDateTime())
+                .embedding(toFloats(rs.getArray(8)))
+                .newMessage(false)
+                .build(), sessionId, createdAt.get(0));
+
+        // the archive entry is durable before the rows go; if the transaction then fails, archived_at stays null
+        // and the entry is ignored until the session is archived again
+        SessionArchiveStore.Location location = store.append(sessionId, encode(messages));
+        jdbcTemplate.update(DELETE_EMBEDDINGS_SQL, sessionId);
+        jdbcTemplate.update(DELETE_MESSAGES_SQL, sessionId, createdAt.get(0));
+        jdbcTemplate.update(MARK_ARCHIVED_SQL, oldest(messages), ContextChunkStore.distinctHashes(messages),
+                location.segment(), location.offset(), location.length(), sessionId);
+        eventPublisher.publishEvent(new ChatMessagesDeletedEvent(messages.stream().map(ChatMessage::getId).toList()));
+        archived.increment();
+        return true;
+    }
+
+    /**
+     * Moves an archived session back into chat_messages before it is written to; joins the caller's transaction.
+     */
+    public void rehydrateIfArchived(ChatSession session) {
+        if (session.getArchivedAt() != null) {
+            rehydrate(session.getId());
+        }
+    }
+
+    public void rehydrate(UUID sessionId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<UUID> userId = jdbcTemplate.queryForList(LOCK_ARCHIVED_SQL, UUID.class, sessionId);
+            if (userId.isEmpty()) {
+                return;
+            }
+            ChatSession session = ChatSession.builder().id(sessionId).user(User.builder().id(userId.get(0)).build()).build();
+            List<ChatMessage> messages = readArchived(session);
+            jdbcTemplate.batchUpdate(INSERT_SQL, messages, batchSize, (ps, message) -> {
+                ps.setObject(1, message.getId());
+                ps.setObject(2, sessionId);
+                ps.setString(3, message.getContent());
+                ps.setBytes(4, message.getContentZstd());
+                ps.setString(5, message.getSender());
+                ps.setString(6, message.getRetrievedContext());
+                ps.setBytes(7, message.getContextChunkHashes());
+                ps.setTimestamp(8, Timestamp.valueOf(message.getCreatedAt()));
+                ps.setObject(9, message.getId());
+            });
+            List<ChatMessage> withEmbedding = messages.stream().filter(message -> message.getEmbedding() != null).toList();
+            jdbcTemplate.batchUpdate(INSERT_EMBEDDING_SQL, withEmbedding, batchSize, (ps, message) -> {
+                float[] embedding = message.getEmbedding();
+                Float[] values = new Float[embedding.length];
+                for (int i = 0; i < embedding.length; i++) {
+                    values[i] = embedding[i];
+                }
+                ps.setObject(1, message.getId());
+                ps.setObject(2, sessionId);
+                ps.setArray(3, ps.getConnection().createArrayOf("float4", values));
+            });
+            jdbcTemplate.update(CLEAR_ARCHIVED_SQL, sessionId);
+            forget(sessionId);
+
+            // the search index takes context as text
+            contextChunkStore.prefetch(messages);
+            messages.forEach(message -> message.setRetrievedContext(contextChunkStore.resolveContext(message)));
+            eventPublisher.publishEvent(new ChatMessagesSavedEvent(messages, true));
+            rehydrated.increment();
+            log.debug("Rehydrated session {} with {} messages", sessionId, messages.size());
+        });
+    }
+
+    /**
+     * All messages archived for a session, newest first. A session marked archived without an archive entry has
+     * lost its messages to the archive directory (e.g. one not on persistent storage); that fails rather than
+     * reading as empty, so rehydrating never clears archived_at over messages that may still be restored.
+     */
+    public List<ChatMessage> readArchived(ChatSession session) {
+        return decoded(session.getId()).messages().stream()
+                .map(message -> copy(message, session))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // a message inserted while its session was being archived lands in the database, not in the archive; only as
+    // many database rows as the page can hold are read
+    public Page<ChatMessage> findMessages(ChatSession session, Pageable pageable) {
+        Decoded archive = decoded(session.getId());
+        int end = (int) Math.min(pageable.getOffset() + pageable.getPageSize(), Integer.MAX_VALUE);
+        List<ChatMessage> rows = messageRepository.findFirstKeysetPage(session.getId(), session.getCreatedAt(), end);
+        long databaseRows = rows.size() < end ? rows.size() :
+                messageRepository.countBySessionIdAndCreatedAtGreaterThanEqual(session.getId(), session.getCreatedAt());
+        long duplicates = rows.stream().filter(message -> archive.ids().contains(message.getId())).count();
+        List<ChatMessage> messages = merge(archive, archive.messages(), rows, end);
+        int from = (int) Math.min(pageable.getOffset(), messages.size());
+        return new PageImpl<>(bind(archive, messages.subList(from, messages.size()), session), pageable,
+                archive.messages().size() + databaseRows - duplicates);
+    }
+
+    public List<ChatMessage> findKeysetPage(ChatSession session, MessageCursor after, int limit) {
+        Decoded archive = decoded(session.getId());
+        List<ChatMessage> archived = archive.messages();
+        List<ChatMessage> rows;
+        if (after == null) {
+            rows = messageRepository.findFirstKeysetPage(session.getId(), session.getCreatedAt(), limit);
+        } else {
+            ChatMessage position = ChatMessage.builder().createdAt(after.createdAt()).id(after.id()).build();
+            int found = Collections.binarySearch(archived, position, NEWEST_FIRST);
+            archived = archived.subList(found >= 0 ? found + 1 : -found - 1, archived.size());
+            rows = messageRepository.findKeysetPageAfter(session.getId(), session.getCreatedAt(), after.createdAt(),
+                    after.id(), limit);
+        }
+        return bind(archive, merge(archive, archived, rows, limit), session);
+    }
+
+    /**
+     * Archived sessions that may hold messages created before the cutoff, in id order after the given one.
+     */
+    public List<UUID> findSessionsWithExpiredMessages(LocalDateTime cutoff, UUID after, int limit) {
+        return jdbcTemplate.queryForList(EXPIRING_SQL, UUID.class, Timestamp.valueOf(cutoff), after, limit);
+    }
+
+    /**
+     * Removes the messages created before the cutoff from a session's archive entry, in its own transaction, and
+     * returns how many there were. The session stays archived, with an empty entry if nothing is left.
+     */
+    public int expireMessages(UUID sessionId, LocalDateTime cutoff) {
+        Integer expired = transactionTemplate.execute(status -> {
+            if (jdbcTemplate.queryForList(LOCK_ARCHIVED_SQL, UUID.class, sessionId).isEmpty()) {
+                return 0;
+            }
+            List<ChatMessage> messages;
+            try {
+                messages = decoded(sessionId).messages();
+            } catch (ArchiveUnavailableException e) {
+                log.warn("{}; its messages cannot expire", e.getMessage());
+                return 0;
+            }
+            List<ChatMessage> kept = messages.stream().filter(message -> !message.getCreatedAt().isBefore(cutoff)).toList();
+            int count = messages.size() - kept.size();
+            if (count == 0) {
+                jdbcTemplate.update(SET_OLDEST_SQL, oldest(kept), sessionId);
+                return 0;
+            }
+            // the new entry is durable before the row points at it; if the transaction fails, the old one stays current
+            SessionArchiveStore.Location location = store.append(sessionId, encode(kept));
+            jdbcTemplate.update(UNCOUNT_SQL, count, count, count, oldest(kept), ContextChunkStore.distinctHashes(kept),
+                    location.segment(), location.offset(), location.length(), sessionId);
+            eventPublisher.publishEvent(new ChatMessagesDeletedEvent(messages.stream()
+                    .filter(message -> message.getCreatedAt().isBefore(cutoff)).map(ChatMessage::getId).toList()));
+            return count;
+        });
+        return expired != null ? expired : 0;
+    }
+
+    /**
+     * Records the context chunks of sessions archived before archived_chunk_hashes existed, one session per
+     * transaction, and returns how many could not be recorded because their archive entry is missing. Until that
+     * is zero, no context chunk is safe to remove.
+     */
+    public int registerArchivedChunks() {
+        int unavailable = 0;
+        UUID last = new UUID(0, 0);
+        List<UUID> sessionIds;
+        do {
+            sessionIds = jdbcTemplate.queryForList(UNREGISTERED_SQL, UUID.class, last, batchSize);
+            for (UUID sessionId : sessionIds) {
+                Boolean registered = transactionTemplate.execute(status -> {
+                    if (jdbcTemplate.queryForList(LOCK_ARCHIVED_SQL, UUID.class, sessionId).isEmpty()) {
+                        return true;
+                    }
+                    try {
+                        jdbcTemplate.update(REGISTER_CHUNKS_SQL, ContextChunkStore.distinctHashes(decoded(sessionId).messages()), sessionId);
+                        return true;
+                    } catch (ArchiveUnavailableException e) {
+                        log.warn("{}; its context chunks cannot be recorded", e.getMessage());
+                        return false;
+                    }
+                });
+                if (!Boolean.TRUE.equals(registered)) {
+                    unavailable++;
+                }
+                last = sessionId;
+            }
+        } while (sessionIds.size() == batchSize);
+        return unavailable;
+    }
+
+    private Decoded decoded(UUID sessionId) {
+        List<SessionArchiveStore.Location> located = jdbcTemplate.query(LOCATION_SQL, (rs, rowNum) ->
+                new SessionArchiveStore.Location(rs.getString(1), rs.getLong(2), rs.getInt(3)), sessionId);
+        SessionArchiveStore.Location location = located.isEmpty() ? store.locate(sessionId) : located.get(0);
+        if (location == null) {
+            throw new ArchiveUnavailableException("Archived messages of session " + sessionId + " are missing from "
+                    + store.getDirectory().toAbsolutePath());
+        }
+        synchronized (decoded) {
+            Decoded cached = decoded.get(sessionId);
+            if (cached != null && cached.location().equals(location)) {
+                return cached;
+            }
+        }
+        ByteBuffer payload;
+        try {
+            payload = store.read(location);
+        } catch (UncheckedIOException e) {
+            // written by an instance that does not share this archive directory
+            throw new ArchiveUnavailableException("Archived messages of session " + sessionId + " cannot be read from "
+                    + store.getDirectory().resolve(location.segment()).toAbsolutePath());
+        }
+        List<ChatMessage> messages = decode(payload, null);
+        messages.sort(NEWEST_FIRST);
+        Decoded entry = new Decoded(location, Collections.unmodifiableList(messages),
+                messages.stream().map(ChatMessage::getId).collect(Collectors.toUnmodifiableSet()));
+        synchronized (decoded) {
+            decoded.put(sessionId, entry);
+        }
+        return entry;
+    }
+
+    private void forget(UUID sessionId) {
+        synchronized (decoded) {
+            decoded.remove(sessionId);
+        }
+    }
+
+    // both newest first; database rows that are also archived are skipped
+    private static List<ChatMessage> merge(Decoded archive, List<ChatMessage> archived, List<ChatMessage> rows, int limit) {
+        List<ChatMessage> merged = new ArrayList<>(Math.min(limit, archived.size() + rows.size()));
+        int a = 0;
+        int r = 0;
+        while (merged.size() < limit && (a < archived.size() || r < rows.size())) {
+            if (r < rows.size() && archive.ids().contains(rows.get(r).getId())) {
+                r++;
+            } else if (r == rows.size() || a < archived.size() && NEWEST_FIRST.compare(archived.get(a), rows.get(r)) <= 0) {
+                merged.add(archived.get(a++));
+            } else {
+                merged.add(rows.get(r++));
+            }
+        }
+        return merged;
+    }
+
+    private static List<ChatMessage> bind(Decoded archive, List<ChatMessage> messages, ChatSession session) {
+        return messages.stream()
+                .map(message -> archive.ids().contains(message.getId()) ? copy(message, session) : message)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static ChatMessage copy(ChatMessage message, ChatSession session) {
+        return ChatMessage.builder()
+                .id(message.getId())
+                .session(session)
+                .sender(message.getSender())
+                .content(message.getContent())
+                .contentZstd(message.getContentZstd())
+                .retrievedContext(message.getRetrievedContext())
+                .contextChunkHashes(message.getContextChunkHashes())
+                .createdAt(message.getCreatedAt())
+                .embedding(message.getEmbedding())
+                .newMessage(false)
+                .build();
+    }
+
+    private static Timestamp oldest(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getCreatedAt).min(Comparator.naturalOrder())
+                .map(Timestamp::valueOf).orElse(null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSessionDeleted(ChatSessionDeletedEvent event) {
+        forget(event.sessionId());
+    }
+
+    static byte[] encode(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(messages.size());
+            for (ChatMessage message : messages) {
+                out.writeLong(message.getId().getMostSignificantBits());
+                out.writeLong(message.getId().getLeastSignificantBits());
+                LocalDateTime createdAt = message.getCreatedAt();
+                out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(createdAt.getNano());
+                writeString(out, message.getSender());
+                writeString(out, message.getContent());
+                writeBytes(out, message.getContentZstd());
+                writeString(out, message.getRetrievedContext());
+                writeBytes(out, message.getContextChunkHashes());
+                float[] embedding = message.getEmbedding();
+                out.writeInt(embedding != null ? embedding.length : -1);
+                if (embedding != null) {
+                    for (float value : embedding) {
+                        out.writeFloat(value);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ChatMessage> decode(ByteBuffer in, ChatSession session) {
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported archive format " + version);
+        }
+        int count = in.getInt();
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ChatMessage.ChatMessageBuilder message = ChatMessage.builder()
+                    .session(session)
+                    .newMessage(false)
+                    .id(new UUID(in.getLong(), in.getLong()))
+                    .createdAt(LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC))
+                    .sender(readString(in))
+                    .content(readString(in))
+                    .contentZstd(readBytes(in))
+                    .retrievedContext(readString(in))
+                    .contextChunkHashes(readBytes(in));
+            int dimensions = in.getInt();
+            if (dimensions >= 0) {
+                float[] embedding = new float[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    embedding[d] = in.getFloat();
+                }
+                message.embedding(embedding);
+            }
+            messages.add(message.build());
+        }
+        return messages;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value != null ? value.length : -1);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = readBytes(in);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    // the order PostgreSQL sorts uuids in
+    static int compareUuids(UUID a, UUID b) {
+        int order = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return order != 0 ? order : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    private static float[] toFloats(Array array) throws SQLException {
+        if (array == null) {
+            return null;
+        }
+        Float[] values = (Float[]) array.getArray();
+        float[] embedding = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            embedding[i] = values[i];
+        }
+        return embedding;
+    }
+}
@@ -0,0 +1,169 @@
+package com.rag.service.service;
+
+import com.github.luben.zstd.Zstd;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only file storage for archived sessions. Each session is one zstd frame in a segment file; the caller
+ * keeps the returned {@link Location} (SessionArchiveService stores it on the session row). Every store appends
+ * only to segment files named after its own random writer ID, so instances sharing the directory never write to
+ * the same file and each can read what the others wrote. Segments are read through memory mapping. Space of
+ * replaced frames is not reclaimed.
+ * <p>
+ * Sessions archived before locations were kept in the database are found through sessions.idx, whose fixed-size
+ * records map a session ID to its segment, offset and length; the last record for a session wins and a negative
+ * length removes it. It is read once at startup and no longer written.
+ */
+@Slf4j
+@Component
+public class SessionArchiveStore {
+    private static final String INDEX_FILE = "sessions.idx";
+    private static final int INDEX_RECORD_BYTES = 32;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final int level;
+    private final boolean fsync;
+    private final String writerId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    private final Map<UUID, Location> legacyLocations = new ConcurrentHashMap<>();
+    private final Map<String, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private FileChannel segment;
+    private int segmentNo;
+
+    /**
+     * A frame: the segment file name, and the frame's offset and length in it.
+     */
+    public record Location(String segment, long offset, int length) {
+    }
+
+    public SessionArchiveStore(@Value("${chat.archive.dir:data/archive}") String directory,
+                               @Value("${chat.archive.max-segment-bytes:1073741824}") long maxSegmentBytes,
+                               @Value("${chat.archive.level:9}") int level,
+                               @Value("${chat.archive.fsync:true}") boolean fsync) {
+        this.directory = Path.of(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.level = level;
+        this.fsync = fsync;
+        load();
+    }
+
+    private void load() {
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            long records = channel.size() / INDEX_RECORD_BYTES;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, records * INDEX_RECORD_BYTES);
+            for (long i = 0; i < records; i++) {
+                UUID sessionId = new UUID(buffer.getLong(), buffer.getLong());
+                Location location = new Location(String.format("segment-%05d.zst", buffer.getInt()), buffer.getLong(),
+                        buffer.getInt());
+                if (location.length() < 0) {
+                    legacyLocations.remove(sessionId);
+                } else {
+                    legacyLocations.put(sessionId, location);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the archive index " + indexFile, e);
+        }
+        log.info("Loaded archive index with {} sessions", legacyLocations.size());
+    }
+
+    /**
+     * Compresses and appends the payload and returns where it is, once it is durable.
+     */
+    public synchronized Location append(UUID sessionId, byte[] payload) {
+        byte[] frame = Zstd.compress(payload, level);
+        try {
+            if (segment == null) {
+                segment = openSegment();
+            } else if (segment.size() > 0 && segment.size() + frame.length > maxSegmentBytes) {
+                segment.close();
+                segmentNo++;
+                segment = openSegment();
+            }
+            // a frame left behind by a crash before its location is stored is simply never referenced
+            long offset = segment.size();
+            write(segment, ByteBuffer.wrap(frame));
+            return new Location(segmentName(segmentNo), offset, frame.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append session " + sessionId + " to the archive", e);
+        }
+    }
+
+    /**
+     * Where sessions.idx puts the session's entry, or null.
+     */
+    public Location locate(UUID sessionId) {
+        return legacyLocations.get(sessionId);
+    }
+
+    /**
+     * Returns the decompressed frame; fails with {@link UncheckedIOException} when its segment cannot be read.
+     */
+    public ByteBuffer read(Location location) {
+        ByteBuffer frame = mapping(location).slice((int) location.offset(), location.length());
+        long size = PayloadCodec.contentSize(Zstd.getFrameContentSize(frame));
+        if (size == PayloadCodec.CONTENT_SIZE_UNKNOWN) {
+            byte[] copy = new byte[frame.remaining()];
+            frame.get(copy);
+            return ByteBuffer.wrap(PayloadCodec.decompressStream(new ByteArrayInputStream(copy), null));
+        }
+        return Zstd.decompress(frame, (int) size);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    // segments only grow, so a mapping is renewed once a frame lies beyond its end
+    private MappedByteBuffer mapping(Location location) {
+        return mappings.compute(location.segment(), (name, current) ->
+                current != null && location.offset() + location.length() <= current.capacity() ? current : map(name));
+    }
+
+    private MappedByteBuffer map(String name) {
+        try (FileChannel channel = FileChannel.open(directory.resolve(name), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map archive segment " + name, e);
+        }
+    }
+
+    // CREATE_NEW: a segment of this writer is never shared, not even with an earlier process
+    private FileChannel openSegment() throws IOException {
+        Files.createDirectories(directory);
+        return FileChannel.open(directory.resolve(segmentName(segmentNo)), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private String segmentName(int number) {
+        return String.format("segment-%s-%05d.zst", writerId, number);
+    }
+}
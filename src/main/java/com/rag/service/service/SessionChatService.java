@@ -5,63 +5,111 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rag.service.dto.AddMessageRequest;
 import com.rag.service.dto.Message;
-import com.rag.service.entity.SessionChat;
-import com.rag.service.exception.BadRequestException;
+import com.rag.service.event.SessionChatMessageAddedEvent;
 import com.rag.service.mapper.SessionChatMapper;
+import com.rag.service.repository.SegmentTail;
 import com.rag.service.repository.SessionChatRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import static com.rag.service.repository.SessionChatRepository.PAGINATED_MESSAGES_SQL;
+import static com.rag.service.repository.SessionChatRepository.SEGMENTED_MESSAGES_SQL;
+import static com.rag.service.util.Constant.SESSION_CHAT_SEGMENT_SIZE;
+
 @Service
 @RequiredArgsConstructor
+@Timed("chat.service")
 public class SessionChatService {
+    private static final byte[] EMPTY_PAGE = "[]".getBytes(StandardCharsets.UTF_8);
+
     private final SessionChatRepository repository;
     private final ObjectMapper objectMapper;
     private final SessionChatMapper sessionChatMapper;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LiveMessageBus liveMessageBus;
+    private final ChatMetrics chatMetrics;
+
+    // new conversations are stored as fixed-size segments instead of one growing JSONB document
+    @Value("${session-chat.storage.segmented:false}")
+    private boolean segmentedStorage;
 
-    public List<Message> getPaginatedMessages(String sessionId, int page, int size) {
+    /**
+     * Returns the page exactly as Postgres renders it; the JSON is forwarded without being parsed.
+     */
+    public byte[] getPaginatedMessagesJson(String sessionId, int page, int size) {
         int offset = page * size;
         int end = offset + size - 1;
-        String jsonPath = String.format("$[%d to %d]", offset, end);
 
-        String pagedJson = repository.getPaginatedMessages(sessionId, jsonPath);
-        if (pagedJson == null) return new ArrayList<>();
-        try {
-            return Arrays.asList(objectMapper.readValue(pagedJson, Message[].class));
-        } catch (Exception e) {
-            throw new BadRequestException("Failed to parse paginated messages");
+        String sql;
+        MapSqlParameterSource params = new MapSqlParameterSource("sessionId", sessionId);
+        if (Boolean.TRUE.equals(repository.findSegmentedBySessionId(sessionId))) {
+            sql = SEGMENTED_MESSAGES_SQL;
+            params.addValue("firstSegment", offset / SESSION_CHAT_SEGMENT_SIZE)
+                    .addValue("lastSegment", end / SESSION_CHAT_SEGMENT_SIZE)
+                    .addValue("offset", offset)
+                    .addValue("end", end)
+                    .addValue("segmentSize", SESSION_CHAT_SEGMENT_SIZE);
+        } else {
+            sql = PAGINATED_MESSAGES_SQL;
+            params.addValue("jsonPath", String.format("$[%d to %d]", offset, end));
+        }
+
+        // text is sent as raw UTF-8 in both wire formats, so the bytes can be forwarded untouched
+        byte[] pagedJson = jdbcTemplate.query("SELECT cast(p.page AS text) FROM (" + sql + ") p(page)", params,
+                rs -> rs.next() ? rs.getBytes(1) : null);
+        if (pagedJson == null) {
+            return EMPTY_PAGE;
         }
+        // counting the items would mean parsing the page this method exists to avoid parsing
+        chatMetrics.recordPayloadBytes(ChatMetrics.JSONB, "page", pagedJson.length);
+        return pagedJson;
     }
 
     @Transactional
     public void addMessage(String sessionId, AddMessageRequest message) throws JsonProcessingException {
-        Optional<SessionChat> existing = repository.findBySessionId(sessionId);
+        chatMetrics.recordPayload(ChatMetrics.JSONB, message.getContent(), message.getContext());
         Message msg = sessionChatMapper.toMessage(
             message.getContent(),
             message.getSender(),
             LocalDateTime.now().toString()
         );
+        String newMessageJson = "[" + objectMapper.writeValueAsString(msg) + "]";
 
-        if (existing.isPresent()) {
-            String newMessageJson = "[" + objectMapper.writeValueAsString(msg) + "]";
-            repository.appendMessage(sessionId, newMessageJson);
-        } else {
-            List<Message> conversation = new ArrayList<>();
-            conversation.add(msg);
+        // the upsert row-locks the session until commit, which also serializes segment appends
+        if (repository.upsertMessage(sessionId, message.getContext(), newMessageJson, segmentedStorage)) {
+            appendToSegments(sessionId, newMessageJson);
+        }
+        eventPublisher.publishEvent(new SessionChatMessageAddedEvent(sessionId, msg));
+    }
 
-            SessionChat chat = sessionChatMapper.toSessionChat(
-                sessionId,
-                message.getContext(),
-                conversation
-            );
-            repository.save(chat);
+    /**
+     * Streams messages appended to the session from now on.
+     */
+    public SseEmitter streamMessages(String sessionId) {
+        return liveMessageBus.subscribe(LiveMessageBus.sessionChatTopic(sessionId)).start(List.of());
+    }
+
+    private void appendToSegments(String sessionId, String newMessageJson) {
+        Optional<SegmentTail> tail = repository.findTailSegment(sessionId);
+        if (tail.isEmpty()) {
+            repository.insertSegment(sessionId, 0, newMessageJson);
+        } else if (tail.get().getMessageCount() >= SESSION_CHAT_SEGMENT_SIZE) {
+            repository.insertSegment(sessionId, tail.get().getSegmentNo() + 1, newMessageJson);
+        } else {
+            repository.appendToSegment(sessionId, tail.get().getSegmentNo(), newMessageJson);
         }
     }
 }
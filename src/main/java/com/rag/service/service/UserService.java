@@ -6,6 +6,7 @@ import com.rag.service.entity.User;
 import com.rag.service.exception.NotFoundException;
 import com.rag.service.mapper.UserMapper;
 import com.rag.service.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +18,7 @@ import static com.rag.service.util.Constant.USER_NOT_FOUND;
 
 @Service
 @RequiredArgsConstructor
+@Timed("chat.service")
 public class UserService {
     private final UserRepository userRepository;
     private final UserMapper userMapper;
@@ -10,4 +10,23 @@ public class Constant {
     public static final String RATE_LIMIT_EXCEED_MSG="Rate limit exceeded";
     public static final String USER_NOT_FOUND="User not found with id: ";
     public static final String EMAIL_ALREADY_EXIST="Email already exists";
+    public static final String INVALID_CURSOR_MSG="Invalid pagination cursor";
+    public static final String INVALID_PAGE_SIZE_MSG="Page size must be between 1 and ";
+    public static final String DUPLICATE_MESSAGE_ID_MSG="Duplicate message id in batch: ";
+    public static final String MESSAGE_ID_EXISTS_MSG="Messages already exist with ids: ";
+    public static final String CONFLICT_MSG="The request conflicts with stored data";
+    public static final String INGEST_QUEUE_FULL_MSG="Message ingest queue is full, retry later";
+    public static final String INGEST_QUEUE_STOPPED_MSG="Message ingest queue is shutting down, retry later";
+    public static final String SEARCH_UNAVAILABLE_MSG="Message search is not available";
+    public static final String INVALID_SEARCH_QUERY_MSG="Search query must not be blank";
+    public static final String INVALID_SEARCH_LIMIT_MSG="Search result limit must be between 1 and ";
+    public static final String INVALID_EMBEDDING_MSG="Embedding must contain finite values, not all zero, with length ";
+    public static final String INVALID_IMPORT_LINE_MSG="Invalid import line ";
+    public static final String IMPORT_JOB_NOT_FOUND_MSG="Import job not found";
+    public static final String IMPORT_JOB_RUNNING_MSG="Import job is already running or completed";
+    public static final String USER_ID_REQUIRED_MSG="User ID is required";
+    public static final String INVALID_STREAM_LIMIT_MSG="Limit must be greater than zero";
+    public static final int SESSION_CHAT_SEGMENT_SIZE=128;
+    public static final int MAX_SEARCH_RESULTS=100;
+    public static final int MAX_CURSOR_PAGE_SIZE=100;
 }
@@ -0,0 +1,79 @@
+-- chat_messages becomes a monthly range-partitioned table on created_at. Queries that bound created_at
+-- only touch the matching partitions, and old months can be dropped instead of deleted row by row.
+-- Partitioned tables need the partition key in every unique constraint, so the primary key becomes (id, created_at);
+-- ids stay unique across partitions through message_ids (V15).
+-- The existing table is not copied: it becomes chat_messages_legacy, the partition of everything before the bound
+-- checked by chat_messages_before_partitions, whose (id, created_at) index and check constraint were built beforehand
+-- without blocking writes (changeset 10-prepare). The attach then needs neither an index build nor a scan.
+ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+ALTER TABLE chat_messages_legacy DROP CONSTRAINT chat_messages_pkey;
+ALTER TABLE chat_messages_legacy ADD CONSTRAINT chat_messages_legacy_pkey PRIMARY KEY USING INDEX chat_messages_id_created_at;
+ALTER INDEX idx_messages_session_created RENAME TO chat_messages_legacy_session_created_id_idx;
+
+CREATE TABLE chat_messages (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    session_id UUID NOT NULL REFERENCES chat_sessions(id) ON DELETE CASCADE,
+    content TEXT NOT NULL,
+    sender VARCHAR(255) NOT NULL,
+    retrieved_context TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    context_chunk_hashes BYTEA,
+    content_zstd BYTEA,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_messages_session_created ON chat_messages(session_id, created_at DESC, id);
+
+-- the existing indexes and foreign key of chat_messages_legacy are attached, not rebuilt
+DO $$
+BEGIN
+    EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                   date_trunc('month', LOCALTIMESTAMP) + INTERVAL '1 month');
+END
+$$;
+
+-- catches rows outside the prepared months; ensure_chat_message_partitions moves them out again
+CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT;
+
+-- Creates a partition per month from the month of from_ts (or of the oldest row in the default partition)
+-- up to months_ahead months after the current one, starting after chat_messages_legacy if there is one.
+-- Safe to call concurrently and repeatedly.
+CREATE OR REPLACE FUNCTION ensure_chat_message_partitions(from_ts TIMESTAMP, months_ahead INT) RETURNS INT AS $$
+DECLARE
+    last_month DATE := (date_trunc('month', LOCALTIMESTAMP) + make_interval(months => months_ahead))::date;
+    legacy_until DATE;
+    month_start DATE;
+    next_month DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('chat_messages_partitions'));
+
+    SELECT substring(pg_get_expr(c.relpartbound, c.oid) FROM 'TO \(''([^'']+)''\)')::date
+    INTO legacy_until
+    FROM pg_class c
+    WHERE c.oid = to_regclass('chat_messages_legacy');
+
+    SELECT date_trunc('month', LEAST(COALESCE(min(created_at), from_ts), from_ts, LOCALTIMESTAMP))::date
+    INTO month_start
+    FROM chat_messages_default;
+    month_start := GREATEST(month_start, legacy_until);
+
+    WHILE month_start <= last_month LOOP
+        next_month := (month_start + INTERVAL '1 month')::date;
+        partition_name := 'chat_messages_' || to_char(month_start, 'YYYYMM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE chat_messages INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM chat_messages_default WHERE created_at >= %L AND created_at < %L RETURNING *) '
+                               || 'INSERT INTO %I SELECT * FROM moved', month_start, next_month, partition_name);
+            EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, month_start, next_month);
+            created := created + 1;
+        END IF;
+        month_start := next_month;
+    END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT ensure_chat_message_partitions(LOCALTIMESTAMP::timestamp, 3);
@@ -0,0 +1,5 @@
+-- retention deletes walk these indexes oldest first in small keyset batches
+ALTER TABLE session_chat ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_session_chat_updated ON session_chat(updated_at, id);
+CREATE INDEX IF NOT EXISTS idx_messages_created ON chat_messages(created_at, id);
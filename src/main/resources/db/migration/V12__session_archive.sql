@@ -0,0 +1,4 @@
+-- set while a session's messages live in the local archive instead of chat_messages
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_sessions_active_updated ON chat_sessions(updated_at) WHERE archived_at IS NULL;
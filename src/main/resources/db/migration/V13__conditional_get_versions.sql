@@ -0,0 +1,3 @@
+-- validators for conditional GETs, bumped in the transaction of every write that changes the representation
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS message_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS sessions_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,24 @@
+-- activity of a session's messages, maintained by every message insert and delete
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS message_count INT NOT NULL DEFAULT 0;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_at TIMESTAMP;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_preview VARCHAR(160);
+
+UPDATE chat_sessions s SET
+    message_count = a.total,
+    last_message_at = a.last_message_at
+FROM (
+    SELECT m.session_id, COUNT(*) AS total, MAX(m.created_at) AS last_message_at
+    FROM chat_messages m
+    JOIN chat_sessions c ON c.id = m.session_id AND m.created_at >= c.created_at
+    GROUP BY m.session_id
+) a
+WHERE s.id = a.session_id;
+
+-- compressed content cannot be read here; those previews stay empty until the next message
+UPDATE chat_sessions s SET last_message_preview = LEFT(BTRIM(REGEXP_REPLACE(m.content, '\s+', ' ', 'g')), 160)
+FROM chat_messages m
+WHERE m.session_id = s.id AND m.created_at = s.last_message_at AND m.content_zstd IS NULL;
+
+-- sessions of a user by recent activity as one index range, in either direction; with PostgreSQL's default null
+-- ordering, sessions without messages come first when newest first
+CREATE INDEX IF NOT EXISTS idx_sessions_user_last_message ON chat_sessions(user_id, last_message_at DESC);
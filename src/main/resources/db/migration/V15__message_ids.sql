@@ -0,0 +1,51 @@
+-- chat_messages can only be unique on (id, created_at), as partitioned tables need the partition key in every unique
+-- constraint. Every id in chat_messages is also claimed here, by statement triggers on every insert and delete, so
+-- writing an id that is already stored fails with a unique violation whichever partition either row is in.
+-- Rows moved or dropped partition by partition bypass the triggers: the partition maintenance function moves rows
+-- out of the default partition without changing them, and RetentionSweeper releases a partition's ids before dropping it.
+CREATE TABLE IF NOT EXISTS message_ids (
+    id UUID PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION claim_message_ids() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO message_ids (id) SELECT id FROM inserted;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION release_message_ids() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM message_ids m USING deleted d WHERE m.id = d.id;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER chat_messages_claim_ids AFTER INSERT ON chat_messages
+    REFERENCING NEW TABLE AS inserted FOR EACH STATEMENT EXECUTE FUNCTION claim_message_ids();
+CREATE TRIGGER chat_messages_release_ids AFTER DELETE ON chat_messages
+    REFERENCING OLD TABLE AS deleted FOR EACH STATEMENT EXECUTE FUNCTION release_message_ids();
+
+-- Claims the ids of the rows stored so far, in keyset batches committed one by one. A message stored more than once
+-- under the same id, before ids were claimed, keeps only its first row; deleting the others releases the id, which
+-- is why it is claimed after them.
+CREATE OR REPLACE PROCEDURE backfill_message_ids(batch_size INT) AS $$
+DECLARE
+    last_id UUID := '00000000-0000-0000-0000-000000000000';
+    batch_last UUID;
+BEGIN
+    LOOP
+        SELECT id INTO batch_last
+        FROM (SELECT id FROM chat_messages WHERE id > last_id ORDER BY id LIMIT batch_size) batch
+        ORDER BY id DESC LIMIT 1;
+        EXIT WHEN batch_last IS NULL;
+        DELETE FROM chat_messages m USING chat_messages kept
+        WHERE m.id > last_id AND m.id <= batch_last AND kept.id = m.id AND kept.created_at < m.created_at;
+        INSERT INTO message_ids (id)
+        SELECT DISTINCT id FROM chat_messages WHERE id > last_id AND id <= batch_last
+        ON CONFLICT DO NOTHING;
+        last_id := batch_last;
+        COMMIT;
+    END LOOP;
+END
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,5 @@
+-- oldest message kept in a session's archive entry, so the retention sweeper only decodes entries with expired
+-- messages; NULL for sessions archived before it was recorded, which the sweeper checks once and then sets
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS archive_oldest_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_sessions_archive_oldest ON chat_sessions(archive_oldest_at) WHERE archived_at IS NOT NULL;
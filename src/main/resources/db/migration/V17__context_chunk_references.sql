@@ -0,0 +1,15 @@
+-- context_chunk_hashes holds 32-byte hashes back to back; as an array they can be indexed, so the retention
+-- sweeper can tell whether any message still references a chunk
+CREATE OR REPLACE FUNCTION context_chunk_hash_array(hashes BYTEA) RETURNS BYTEA[] AS $$
+    SELECT COALESCE(array_agg(substring(hashes FROM i * 32 + 1 FOR 32) ORDER BY i), '{}')
+    FROM generate_series(0, length(hashes) / 32 - 1) AS i
+$$ LANGUAGE sql IMMUTABLE PARALLEL SAFE;
+
+-- distinct chunk hashes of the messages in a session's archive entry, which no chat_messages row references;
+-- NULL for sessions archived before it was recorded
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS archived_chunk_hashes BYTEA;
+
+-- only the parent: MessagePartitionMaintainer builds each partition's index concurrently and attaches it, and the
+-- index becomes valid once every partition has one
+CREATE INDEX IF NOT EXISTS idx_messages_context_chunks ON ONLY chat_messages
+    USING gin (context_chunk_hash_array(context_chunk_hashes)) WHERE context_chunk_hashes IS NOT NULL;
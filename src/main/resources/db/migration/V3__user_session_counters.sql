@@ -0,0 +1,12 @@
+ALTER TABLE users ADD COLUMN IF NOT EXISTS session_count INT NOT NULL DEFAULT 0;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS favorite_session_count INT NOT NULL DEFAULT 0;
+
+UPDATE users u SET
+    session_count = c.total,
+    favorite_session_count = c.favorites
+FROM (
+    SELECT user_id, COUNT(*) AS total, COUNT(*) FILTER (WHERE favorite) AS favorites
+    FROM chat_sessions
+    GROUP BY user_id
+) c
+WHERE u.id = c.user_id;
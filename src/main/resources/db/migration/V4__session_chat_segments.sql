@@ -0,0 +1,9 @@
+ALTER TABLE session_chat ADD COLUMN IF NOT EXISTS segmented BOOLEAN NOT NULL DEFAULT false;
+
+CREATE TABLE IF NOT EXISTS session_chat_segment (
+    session_id VARCHAR(255) NOT NULL REFERENCES session_chat(session_id) ON DELETE CASCADE,
+    segment_no INT NOT NULL,
+    message_count INT NOT NULL,
+    messages JSONB NOT NULL DEFAULT '[]'::jsonb,
+    PRIMARY KEY (session_id, segment_no)
+);
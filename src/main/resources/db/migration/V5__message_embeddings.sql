@@ -0,0 +1,8 @@
+-- kept out of chat_messages so message pages never read the vectors
+CREATE TABLE IF NOT EXISTS message_embeddings (
+    message_id UUID PRIMARY KEY,
+    session_id UUID NOT NULL REFERENCES chat_sessions(id) ON DELETE CASCADE,
+    embedding REAL[] NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_embeddings_session ON message_embeddings(session_id);
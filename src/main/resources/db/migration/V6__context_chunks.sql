@@ -0,0 +1,8 @@
+-- retrieved context is stored once per distinct chunk, keyed by its SHA-256
+CREATE TABLE IF NOT EXISTS context_chunks (
+    hash BYTEA PRIMARY KEY,
+    content TEXT NOT NULL
+);
+
+-- ordered 32-byte chunk hashes; retrieved_context is kept only for rows written before this change
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_chunk_hashes BYTEA;
@@ -0,0 +1,3 @@
+-- zstd-compressed copies of large values; the plain column is left empty when one is set
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS content_zstd BYTEA;
+ALTER TABLE context_chunks ADD COLUMN IF NOT EXISTS content_zstd BYTEA;
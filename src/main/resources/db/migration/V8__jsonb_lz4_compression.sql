@@ -0,0 +1,15 @@
+-- JSONB conversations are compressed by TOAST; lz4 (PostgreSQL 14+) is much faster than the default pglz.
+-- Only newly written values use it, and servers without lz4 support keep pglz.
+DO $$
+BEGIN
+    ALTER TABLE session_chat ALTER COLUMN conversation SET COMPRESSION lz4;
+    ALTER TABLE session_chat_segment ALTER COLUMN messages SET COMPRESSION lz4;
+EXCEPTION
+    WHEN syntax_error OR feature_not_supported OR invalid_parameter_value THEN
+        RAISE NOTICE 'lz4 column compression is not available, keeping pglz';
+END
+$$;
+
+-- compress and move conversations out of line once a row passes ~256 bytes instead of the default ~2 kB
+ALTER TABLE session_chat SET (toast_tuple_target = 256);
+ALTER TABLE session_chat_segment SET (toast_tuple_target = 256);
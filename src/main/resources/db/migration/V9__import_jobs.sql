@@ -0,0 +1,13 @@
+-- bulk history imports; lines_committed is the resume point of a failed or interrupted import
+CREATE TABLE IF NOT EXISTS import_jobs (
+    id UUID PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    lines_committed BIGINT NOT NULL DEFAULT 0,
+    users_imported BIGINT NOT NULL DEFAULT 0,
+    sessions_imported BIGINT NOT NULL DEFAULT 0,
+    messages_imported BIGINT NOT NULL DEFAULT 0,
+    rows_skipped BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
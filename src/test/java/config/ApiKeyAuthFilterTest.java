@@ -1,6 +1,8 @@
 package config;
 
 import com.rag.service.config.ApiKeyAuthFilter;
+import com.rag.service.service.ChatMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,11 +23,13 @@ import static org.mockito.Mockito.verify;
 
 class ApiKeyAuthFilterTest {
     private ApiKeyAuthFilter filter;
+    private SimpleMeterRegistry meterRegistry;
     private final String validApiKey = "test-api-key1,test-api-key2";
 
     @BeforeEach
     void setUp() {
-        filter = new ApiKeyAuthFilter();
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ApiKeyAuthFilter(new ChatMetrics(meterRegistry));
         try {
 
             var field = ApiKeyAuthFilter.class.getDeclaredField("apiKeys");
@@ -107,6 +111,10 @@ class ApiKeyAuthFilterTest {
             }
 
         }
+        assertEquals(5, meterRegistry.get("chat.ratelimit.rejected")
+                .tag("limit", ChatMetrics.API_KEY_LIMIT)
+                .tag("api.key", ChatMetrics.fingerprint("test-api-key1"))
+                .counter().count());
 
     }
 
@@ -0,0 +1,89 @@
+package config;
+
+import com.rag.service.config.ReadYourWritesFilter;
+import com.rag.service.config.ReplicaRoutingDataSource;
+import com.rag.service.service.ChatMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReadYourWritesFilterTest {
+    private final ReplicaRoutingDataSource routingDataSource = mock(ReplicaRoutingDataSource.class);
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(routingDataSource);
+
+    private MockHttpServletRequest write(String fingerprint) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/sessions");
+        request.addHeader("X-API-Key", "test-api-key1");
+        if (fingerprint != null) {
+            request.setAttribute(ChatMetrics.API_KEY_FINGERPRINT_ATTRIBUTE, fingerprint);
+        }
+        return request;
+    }
+
+    @Test
+    void doFilterInternal_ShouldRecordSuccessfulWriteOfAcceptedKey() throws ServletException, IOException {
+        when(routingDataSource.getReadYourWritesMillis()).thenReturn(3000L);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long before = System.currentTimeMillis();
+
+        filter.doFilter(write("0a1b2c3d"), response, mock(FilterChain.class));
+
+        verify(routingDataSource).recordWrite("0a1b2c3d");
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE);
+        assertTrue(Long.parseLong(cookie.getValue()) >= before);
+        assertEquals(3, cookie.getMaxAge());
+    }
+
+    @Test
+    void doFilterInternal_ShouldCheckWriteTimeSentByClient() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+        request.setAttribute(ChatMetrics.API_KEY_FINGERPRINT_ATTRIBUTE, "0a1b2c3d");
+        request.setCookies(new Cookie(ReadYourWritesFilter.LAST_WRITE_COOKIE, "1700000000000"));
+
+        filter.doFilter(request, new MockHttpServletResponse(), mock(FilterChain.class));
+
+        verify(routingDataSource).wroteRecently(1700000000000L);
+        verify(routingDataSource, never()).recordWrite(anyString());
+    }
+
+    @Test
+    void doFilterInternal_ShouldNotRecordUnauthenticatedWrite() throws ServletException, IOException {
+        filter.doFilter(write(null), new MockHttpServletResponse(), mock(FilterChain.class));
+
+        verify(routingDataSource, never()).recordWrite(anyString());
+    }
+
+    @Test
+    void doFilterInternal_ShouldNotRecordFailedWrite() throws ServletException, IOException {
+        FilterChain chain = mock(FilterChain.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletRequest request = write("0a1b2c3d");
+        doAnswer(invocation -> {
+            invocation.<HttpServletResponse>getArgument(1).setStatus(409);
+            return null;
+        }).when(chain).doFilter(eq(request), any());
+
+        filter.doFilter(request, response, chain);
+
+        verify(routingDataSource, never()).recordWrite(anyString());
+        assertNull(response.getCookie(ReadYourWritesFilter.LAST_WRITE_COOKIE));
+    }
+}
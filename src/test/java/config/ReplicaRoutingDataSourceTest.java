@@ -0,0 +1,116 @@
+package config;
+
+import com.rag.service.config.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaConnection = mock(Connection.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        routing = new ReplicaRoutingDataSource(primary, List.of(replica), 1000, 60_000, meterRegistry);
+        routing.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.pinToPrimary(false);
+    }
+
+    @Test
+    void getConnection_ShouldUseReplicaForReadOnlyTransactions() throws SQLException {
+        replicaReportsLag(10);
+        routing.checkReplicas();
+
+        assertSame(primaryConnection, routing.getConnection());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(replicaConnection, routing.getConnection());
+    }
+
+    @Test
+    void getConnection_ShouldUsePrimaryWhileReplicaLagsOrIsPinned() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        replicaReportsLag(5000);
+        routing.checkReplicas();
+        assertSame(primaryConnection, routing.getConnection());
+
+        replicaReportsLag(10);
+        routing.checkReplicas();
+        ReplicaRoutingDataSource.pinToPrimary(true);
+        assertSame(primaryConnection, routing.getConnection());
+    }
+
+    @Test
+    void getConnection_ShouldFallBackToPrimaryWhenReplicaFails() throws SQLException {
+        replicaReportsLag(10);
+        routing.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        assertSame(primaryConnection, routing.getConnection());
+        assertEquals(1.0, meterRegistry.counter("chat.datasource.replica.fallbacks").count());
+        assertEquals(0.0, meterRegistry.get("chat.datasource.replicas.healthy").gauge().value());
+    }
+
+    @Test
+    void wroteRecently_ShouldHoldForTheReadYourWritesWindow() {
+        assertFalse(routing.wroteRecently("key-1"));
+        routing.recordWrite("key-1");
+        assertTrue(routing.wroteRecently("key-1"));
+        assertFalse(routing.wroteRecently("key-2"));
+    }
+
+    @Test
+    void wroteRecently_ShouldHoldForWriteTimeWithinTheWindow() {
+        long now = System.currentTimeMillis();
+        assertTrue(routing.wroteRecently(now - 1000));
+        assertFalse(routing.wroteRecently(now - 120_000));
+        assertFalse(routing.wroteRecently(now + 120_000));
+    }
+
+    @Test
+    void getConnection_WithCredentials_ShouldUsePrimary() throws SQLException {
+        replicaReportsLag(10);
+        routing.checkReplicas();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(primary.getConnection("reader", "secret")).thenReturn(primaryConnection);
+
+        assertSame(primaryConnection, routing.getConnection("reader", "secret"));
+    }
+
+    private void replicaReportsLag(long lagMillis) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        when(replicaConnection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenReturn(lagMillis);
+    }
+}
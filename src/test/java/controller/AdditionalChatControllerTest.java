@@ -12,12 +12,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.Arrays;
-import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.any;
@@ -55,15 +56,17 @@ class AdditionalChatControllerTest {
 
     @Test
     void getMessages_ShouldReturnPaginatedMessages() {
-        List<Message> messages = Arrays.asList(message1, message2);
-        when(service.getPaginatedMessages(sessionId, 0, 10)).thenReturn(messages);
+        byte[] json = ("[{\"sender\":\"" + message1.getSender() + "\"},{\"sender\":\"" + message2.getSender() + "\"}]")
+                .getBytes(StandardCharsets.UTF_8);
+        when(service.getPaginatedMessagesJson(sessionId, 0, 10)).thenReturn(json);
 
-        ResponseEntity<List<Message>> response = controller.getMessages(sessionId, 0, 10);
+        ResponseEntity<byte[]> response = controller.getMessages(sessionId, 0, 10);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(messages, response.getBody());
-        verify(service).getPaginatedMessages(sessionId, 0, 10);
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertArrayEquals(json, response.getBody());
+        verify(service).getPaginatedMessagesJson(sessionId, 0, 10);
     }
 
     @Test
@@ -2,11 +2,22 @@ package controller;
 
 import com.rag.service.controller.ChatController;
 import com.rag.service.dto.AddMessageRequest;
+import com.rag.service.dto.BatchAddMessageRequest;
+import com.rag.service.dto.BatchAddMessageResponse;
+import com.rag.service.dto.BatchMessageItem;
 import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.ConditionalResponse;
 import com.rag.service.dto.CreateSessionRequest;
+import com.rag.service.dto.CursorPageResponse;
+import com.rag.service.dto.ImportJobResponse;
 import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.dto.MessageSearchResult;
 import com.rag.service.dto.PageableResponse;
+import com.rag.service.dto.SimilarMessagesRequest;
+import com.rag.service.dto.SliceResponse;
 import com.rag.service.dto.UpdateSessionRequest;
+import com.rag.service.service.ChatExportService;
+import com.rag.service.service.ChatImportService;
 import com.rag.service.service.ChatService;
 import io.github.bucket4j.Bucket;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,16 +30,23 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -38,6 +56,12 @@ class ChatControllerTest {
     @Mock
     private ChatService chatService;
 
+    @Mock
+    private ChatExportService chatExportService;
+
+    @Mock
+    private ChatImportService chatImportService;
+
     @Mock
     private Bucket rateLimitBucket;
 
@@ -128,17 +152,18 @@ class ChatControllerTest {
         Pageable pageable = PageRequest.of(0, 10);
         Page<ChatSessionResponse> sessionPage = new PageImpl<>(Collections.singletonList(mockSessionResponse));
 
-        when(chatService.getAllSessions(userIdStr, pageable, rateLimitBucket))
-                .thenReturn(sessionPage);
+        when(chatService.getAllSessions(userIdStr, pageable, null, rateLimitBucket))
+                .thenReturn(new ConditionalResponse<>("\"1\"", sessionPage));
 
 
-        ResponseEntity<Page<ChatSessionResponse>> response = chatController.getSessions(userIdStr, null, pageable);
+        ResponseEntity<Page<ChatSessionResponse>> response = chatController.getSessions(userIdStr, null, pageable, null);
 
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(sessionPage, response.getBody());
-        verify(chatService).getAllSessions(userIdStr, pageable, rateLimitBucket);
+        assertEquals("\"1\"", response.getHeaders().getETag());
+        verify(chatService).getAllSessions(userIdStr, pageable, null, rateLimitBucket);
     }
 
     @Test
@@ -147,17 +172,17 @@ class ChatControllerTest {
         Pageable pageable = PageRequest.of(0, 10);
         Page<ChatSessionResponse> sessionPage = new PageImpl<>(Collections.singletonList(mockSessionResponse));
 
-        when(chatService.getFavoriteSessions(userIdStr, pageable, rateLimitBucket))
-                .thenReturn(sessionPage);
+        when(chatService.getFavoriteSessions(userIdStr, pageable, null, rateLimitBucket))
+                .thenReturn(new ConditionalResponse<>("\"1\"", sessionPage));
 
 
-        ResponseEntity<Page<ChatSessionResponse>> response = chatController.getSessions(userIdStr, true, pageable);
+        ResponseEntity<Page<ChatSessionResponse>> response = chatController.getSessions(userIdStr, true, pageable, null);
 
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(sessionPage, response.getBody());
-        verify(chatService).getFavoriteSessions(userIdStr, pageable, rateLimitBucket);
+        verify(chatService).getFavoriteSessions(userIdStr, pageable, null, rateLimitBucket);
     }
 
     @Test
@@ -203,16 +228,177 @@ class ChatControllerTest {
                 .totalElements(1L)
                 .build();
 
-        when(chatService.getSessionMessages(sessionIdStr, pageable, rateLimitBucket))
+        when(chatService.getSessionMessages(sessionIdStr, pageable, null, rateLimitBucket))
+                .thenReturn(new ConditionalResponse<>("\"2-0\"", mockResponse));
+
+
+        ResponseEntity<PageableResponse> response = chatController.getMessages(sessionIdStr, pageable, null);
+
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(mockResponse, response.getBody());
+        verify(chatService).getSessionMessages(sessionIdStr, pageable, null, rateLimitBucket);
+    }
+
+    @Test
+    void getMessages_ShouldReturnNotModifiedWithoutBody() {
+
+        Pageable pageable = PageRequest.of(0, 10);
+        List<String> ifNoneMatch = List.of("\"2-0\"");
+        when(chatService.getSessionMessages(sessionIdStr, pageable, ifNoneMatch, rateLimitBucket))
+                .thenReturn(ConditionalResponse.notModified("\"2-0\""));
+
+
+        ResponseEntity<PageableResponse> response = chatController.getMessages(sessionIdStr, pageable, ifNoneMatch);
+
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"2-0\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void getMessagesByCursor_ShouldReturnKeysetPage() {
+
+        CursorPageResponse mockResponse = CursorPageResponse.builder()
+                .data(Collections.emptyList())
+                .nextCursor("next")
+                .hasNext(true)
+                .build();
+
+        when(chatService.getSessionMessagesByCursor(sessionIdStr, null, 20, rateLimitBucket))
                 .thenReturn(mockResponse);
 
 
-        ResponseEntity<PageableResponse> response = chatController.getMessages(sessionIdStr, pageable);
+        ResponseEntity<CursorPageResponse> response = chatController.getMessagesByCursor(sessionIdStr, null, 20);
+
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(mockResponse, response.getBody());
+        verify(chatService).getSessionMessagesByCursor(sessionIdStr, null, 20, rateLimitBucket);
+    }
+
+    @Test
+    void getSessionsSlice_ShouldReturnSlice() {
+
+        Pageable pageable = PageRequest.of(0, 10);
+        SliceResponse<ChatSessionResponse> slice = SliceResponse.<ChatSessionResponse>builder()
+                .data(Collections.singletonList(mockSessionResponse))
+                .page(0)
+                .size(10)
+                .hasNext(false)
+                .build();
+
+        when(chatService.getSessionsSlice(userIdStr, false, false, pageable, null, rateLimitBucket))
+                .thenReturn(new ConditionalResponse<>("\"1\"", slice));
+
+
+        ResponseEntity<SliceResponse<ChatSessionResponse>> response = chatController.getSessionsSlice(userIdStr, null, false, pageable, null);
+
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(slice, response.getBody());
+        verify(chatService).getSessionsSlice(userIdStr, false, false, pageable, null, rateLimitBucket);
+    }
+
+    @Test
+    void addMessages_ShouldReturnStoredIds() {
+
+        BatchAddMessageRequest request = BatchAddMessageRequest.builder()
+                .userId(userIdStr)
+                .messages(Collections.singletonList(BatchMessageItem.builder()
+                        .sessionId(sessionIdStr)
+                        .content("Test message")
+                        .sender("user")
+                        .build()))
+                .build();
+        BatchAddMessageResponse mockResponse = BatchAddMessageResponse.builder()
+                .messageIds(Collections.singletonList(UUID.randomUUID().toString()))
+                .build();
+        when(chatService.saveMessages(request, rateLimitBucket)).thenReturn(mockResponse);
+
+
+        ResponseEntity<BatchAddMessageResponse> response = chatController.addMessages(request);
 
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(mockResponse, response.getBody());
-        verify(chatService).getSessionMessages(sessionIdStr, pageable, rateLimitBucket);
+        verify(chatService).saveMessages(request, rateLimitBucket);
+    }
+
+    @Test
+    void searchMessages_ShouldReturnRankedResults() {
+        List<MessageSearchResult> results = Collections.singletonList(MessageSearchResult.builder()
+                .sessionId(sessionIdStr)
+                .score(1.5f)
+                .message(MessageResponseDto.builder().content("Test message").sender("user").build())
+                .build());
+        when(chatService.searchMessages(userIdStr, "test", 10, rateLimitBucket)).thenReturn(results);
+
+
+        ResponseEntity<List<MessageSearchResult>> response = chatController.searchMessages(userIdStr, "test", 10);
+
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+        verify(chatService).searchMessages(userIdStr, "test", 10, rateLimitBucket);
+    }
+
+    @Test
+    void searchSimilarMessages_ShouldReturnNearestMessages() {
+        SimilarMessagesRequest request = SimilarMessagesRequest.builder()
+                .userId(userIdStr)
+                .embedding(new float[]{0.1f, 0.2f})
+                .k(5)
+                .build();
+        List<MessageSearchResult> results = Collections.singletonList(MessageSearchResult.builder()
+                .sessionId(sessionIdStr)
+                .score(0.98f)
+                .build());
+        when(chatService.searchSimilarMessages(request, rateLimitBucket)).thenReturn(results);
+
+
+        ResponseEntity<List<MessageSearchResult>> response = chatController.searchSimilarMessages(request);
+
+
+        assertNotNull(response);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(results, response.getBody());
+        verify(chatService).searchSimilarMessages(request, rateLimitBucket);
+    }
+
+    @Test
+    void export_ShouldStreamNdjsonAttachment() {
+        StreamingResponseBody body = out -> out.write('\n');
+        when(chatExportService.export(userIdStr, null, rateLimitBucket)).thenReturn(body);
+
+
+        ResponseEntity<StreamingResponseBody> response = chatController.export(userIdStr, null);
+
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertEquals("attachment; filename=\"chat-export-" + userIdStr + ".ndjson\"",
+                response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals(body, response.getBody());
+    }
+
+    @Test
+    void importHistory_ShouldReturnJobProgress() {
+        InputStream body = new ByteArrayInputStream(new byte[0]);
+        ImportJobResponse job = ImportJobResponse.builder().id(UUID.randomUUID()).status("COMPLETED").build();
+        when(chatImportService.importHistory(null, body, rateLimitBucket)).thenReturn(job);
+
+
+        ResponseEntity<ImportJobResponse> response = chatController.importHistory(null, body);
+
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(job, response.getBody());
     }
 }
@@ -0,0 +1,96 @@
+package controller;
+
+import com.rag.service.controller.ReactiveChatHandler;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.service.ReactiveChatReader;
+import io.github.bucket4j.Bucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static com.rag.service.util.Constant.RATE_LIMIT_EXCEED_MSG;
+import static com.rag.service.util.Constant.SESSION_NOT_FOUND_MSG;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveChatHandlerTest {
+    @Mock
+    private ReactiveChatReader reader;
+
+    @Mock
+    private Bucket bucket;
+
+    private WebTestClient client;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToRouterFunction(new ReactiveChatHandler(reader, bucket).routes()).build();
+        sessionId = UUID.randomUUID();
+    }
+
+    @Test
+    void getMessages_ShouldStreamUpToLimit() {
+        ChatSession session = ChatSession.builder().id(sessionId).createdAt(LocalDateTime.now()).build();
+        when(bucket.tryConsume(1)).thenReturn(true);
+        when(reader.findSession(sessionId)).thenReturn(Mono.just(session));
+        when(reader.streamMessages(any(ChatSession.class), isNull())).thenReturn(Flux.just(
+                MessageResponseDto.builder().id("1").content("Hello").build(),
+                MessageResponseDto.builder().id("2").content("World").build(),
+                MessageResponseDto.builder().id("3").content("!").build()));
+
+        client.get().uri("/sessions/{id}/messages?limit=2", sessionId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MessageResponseDto.class)
+                .hasSize(2)
+                .contains(MessageResponseDto.builder().id("1").content("Hello").build());
+    }
+
+    @Test
+    void getMessages_ShouldReturnNotFoundForUnknownSession() {
+        when(bucket.tryConsume(1)).thenReturn(true);
+        when(reader.findSession(sessionId)).thenReturn(Mono.empty());
+
+        client.get().uri("/sessions/{id}/messages", sessionId)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.message").isEqualTo(SESSION_NOT_FOUND_MSG);
+    }
+
+    @Test
+    void getMessages_ShouldRejectInvalidLimit() {
+        when(bucket.tryConsume(1)).thenReturn(true);
+
+        client.get().uri("/sessions/{id}/messages?limit=0", sessionId)
+                .exchange()
+                .expectStatus().isBadRequest();
+        verify(reader, never()).findSession(any());
+    }
+
+    @Test
+    void getSessions_ShouldReturnTooManyRequestsWhenRateLimited() {
+        when(bucket.tryConsume(1)).thenReturn(false);
+
+        client.get().uri("/sessions?userId={id}", UUID.randomUUID())
+                .exchange()
+                .expectStatus().isEqualTo(429)
+                .expectBody().jsonPath("$.message").isEqualTo(RATE_LIMIT_EXCEED_MSG);
+        verify(reader, never()).streamSessions(any());
+    }
+}
@@ -0,0 +1,129 @@
+package repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.Liquibase;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the changelog against an embedded PostgreSQL, with rows written before chat_messages was partitioned and
+ * before message ids were claimed, and checks that ids stay unique across partitions afterwards.
+ */
+class MessageIdUniquenessTest {
+    private static final String INSERT_SQL = "INSERT INTO chat_messages (id, session_id, content, sender, created_at) " +
+            "VALUES (?, ?, ?, 'USER', ?)";
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static UUID sessionId;
+    private static UUID legacyId;
+    private static UUID duplicatedId;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+            Liquibase liquibase = new Liquibase("db/changelog/db.changelog-master.xml",
+                    new ClassLoaderResourceAccessor(), new JdbcConnection(connection));
+            // up to 9: chat_messages is still a plain table
+            liquibase.update(9, "");
+            UUID userId = UUID.randomUUID();
+            sessionId = UUID.randomUUID();
+            legacyId = UUID.randomUUID();
+            duplicatedId = UUID.randomUUID();
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update("INSERT INTO users (id, name, email) VALUES (?, 'user', 'user@example.com')", userId);
+            jdbcTemplate.update("INSERT INTO chat_sessions (id, name, user_id, created_at) VALUES (?, 'session', ?, ?)",
+                    sessionId, userId, Timestamp.valueOf(now.minusMonths(2)));
+            insert(legacyId, now.minusMonths(1));
+            insert(duplicatedId, now.minusMonths(1));
+
+            // up to 14: partitioned, ids not yet claimed, so an id can be stored twice in different months
+            liquibase.update(7, "");
+            insert(duplicatedId, now.plusMonths(1));
+
+            liquibase.update("");
+        }
+    }
+
+    @AfterAll
+    static void shutdown() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    void migration_ShouldAttachExistingTableAndClaimItsIds() {
+        assertEquals("chat_messages", jdbcTemplate.queryForObject(
+                "SELECT parent.relname FROM pg_inherits JOIN pg_class parent ON parent.oid = inhparent " +
+                        "WHERE inhrelid = 'chat_messages_legacy'::regclass", String.class));
+        assertEquals(1, count("SELECT count(*) FROM message_ids WHERE id = ?", legacyId));
+        assertEquals(1, count("SELECT count(*) FROM chat_messages WHERE id = ?", legacyId));
+    }
+
+    @Test
+    void migration_ShouldKeepFirstRowOfDuplicatedId() {
+        List<Timestamp> createdAt = jdbcTemplate.queryForList(
+                "SELECT created_at FROM chat_messages WHERE id = ?", Timestamp.class, duplicatedId);
+
+        assertEquals(1, createdAt.size());
+        assertTrue(createdAt.get(0).toLocalDateTime().isBefore(LocalDateTime.now()));
+        assertEquals(1, count("SELECT count(*) FROM message_ids WHERE id = ?", duplicatedId));
+    }
+
+    @Test
+    void replayedBatch_ShouldBeRejectedInAnyPartition() {
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        LocalDateTime createdAt = LocalDateTime.now();
+        batchInsert(ids, createdAt);
+        int before = count("SELECT count(*) FROM chat_messages WHERE session_id = ?", sessionId);
+
+        assertThrows(DuplicateKeyException.class, () -> batchInsert(ids, createdAt));
+        // a replay stamped later would otherwise land in another partition, where (id, created_at) does not clash
+        assertThrows(DuplicateKeyException.class, () -> batchInsert(ids, createdAt.plusMonths(2)));
+        assertEquals(before, count("SELECT count(*) FROM chat_messages WHERE session_id = ?", sessionId));
+    }
+
+    @Test
+    void deletedId_ShouldBeReleased() {
+        UUID id = UUID.randomUUID();
+        insert(id, LocalDateTime.now());
+        jdbcTemplate.update("DELETE FROM chat_messages WHERE id = ?", id);
+
+        assertEquals(0, count("SELECT count(*) FROM message_ids WHERE id = ?", id));
+        insert(id, LocalDateTime.now().plusMonths(1));
+        assertEquals(1, count("SELECT count(*) FROM chat_messages WHERE id = ?", id));
+    }
+
+    private static void insert(UUID id, LocalDateTime createdAt) {
+        jdbcTemplate.update(INSERT_SQL, id, sessionId, "content", Timestamp.valueOf(createdAt));
+    }
+
+    private static void batchInsert(List<UUID> ids, LocalDateTime createdAt) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, ids, ids.size(), (ps, id) -> {
+            ps.setObject(1, id);
+            ps.setObject(2, sessionId);
+            ps.setString(3, "content");
+            ps.setTimestamp(4, Timestamp.valueOf(createdAt));
+        });
+    }
+
+    private static int count(String sql, UUID id) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, id);
+    }
+}
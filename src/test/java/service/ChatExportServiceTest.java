@@ -0,0 +1,151 @@
+package service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.dto.UserResponse;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.exception.NotFoundException;
+import com.rag.service.exception.RateLimitException;
+import com.rag.service.mapper.ChatMessageMapper;
+import com.rag.service.mapper.ChatSessionMapper;
+import com.rag.service.mapper.UserMapper;
+import com.rag.service.repository.ChatSessionRepository;
+import com.rag.service.repository.UserRepository;
+import com.rag.service.service.ChatExportService;
+import com.rag.service.service.ChatMetrics;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.SessionArchiveService;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatExportServiceTest {
+    @Mock ChatSessionRepository sessionRepository;
+    @Mock UserRepository userRepository;
+    @Mock ChatSessionMapper chatSessionMapper;
+    @Mock ChatMessageMapper chatMessageMapper;
+    @Mock UserMapper userMapper;
+    @Mock ContextChunkStore contextChunkStore;
+    @Mock SessionArchiveService sessionArchiveService;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock Bucket rateLimitBucket;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ChatExportService exportService;
+    private UUID userId;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ChatExportService(sessionRepository, userRepository, chatSessionMapper, chatMessageMapper,
+                userMapper, contextChunkStore, sessionArchiveService, jdbcTemplate, transactionManager, objectMapper,
+                new ChatMetrics(new SimpleMeterRegistry()), 1);
+        userId = UUID.randomUUID();
+        sessionId = UUID.randomUUID();
+    }
+
+    @Test
+    void export_ShouldWriteUserSessionsThenMessagesOnePerLine() throws Exception {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        User user = User.builder().id(userId).name("Test User").email("test@example.com").build();
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userMapper.toUserResponse(user)).thenReturn(UserResponse.builder().id(userId).build());
+        ResultSet sessionRow = mock(ResultSet.class);
+        when(sessionRow.getObject(1, UUID.class)).thenReturn(sessionId);
+        when(sessionRow.getString(2)).thenReturn("Session");
+        when(sessionRow.getTimestamp(4)).thenReturn(Timestamp.valueOf(LocalDateTime.now()));
+        ResultSet messageRow = mock(ResultSet.class);
+        when(messageRow.getObject(1, UUID.class)).thenReturn(UUID.randomUUID(), UUID.randomUUID());
+        when(messageRow.getObject(2, UUID.class)).thenReturn(sessionId);
+        when(messageRow.getTimestamp(8)).thenReturn(Timestamp.valueOf(LocalDateTime.now()));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(sessionRow);
+            return null;
+        }).doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(messageRow);
+            handler.processRow(messageRow);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        when(chatSessionMapper.toChatSessionResponse(any(ChatSession.class)))
+                .thenReturn(ChatSessionResponse.builder().id(sessionId).name("Session").userId(userId).build());
+        when(chatMessageMapper.toMessageResponseDto(any(ChatMessage.class)))
+                .thenReturn(MessageResponseDto.builder().content("first").build(), MessageResponseDto.builder().content("second").build());
+
+        StreamingResponseBody body = exportService.export(userId.toString(), null, rateLimitBucket);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, lines.length);
+        assertEquals(userId.toString(), objectMapper.readTree(lines[0]).get("user").get("id").asText());
+        JsonNode session = objectMapper.readTree(lines[1]);
+        assertEquals("session", session.get("type").asText());
+        assertEquals(sessionId.toString(), session.get("session").get("id").asText());
+        JsonNode message = objectMapper.readTree(lines[3]);
+        assertEquals("message", message.get("type").asText());
+        assertEquals(sessionId.toString(), message.get("sessionId").asText());
+        assertEquals("second", message.get("message").get("content").asText());
+        verify(contextChunkStore, times(2)).prefetch(ArgumentMatchers.<Collection<ChatMessage>>any());
+    }
+
+    @Test
+    void export_ShouldRejectSessionOfAnotherUser() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        ChatSession session = ChatSession.builder().id(sessionId).user(User.builder().id(UUID.randomUUID()).build()).build();
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+
+        assertThrows(NotFoundException.class, () -> exportService.export(userId.toString(), sessionId.toString(), rateLimitBucket));
+        verify(jdbcTemplate, never()).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void export_ShouldRejectUnknownUser() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> exportService.export(userId.toString(), null, rateLimitBucket));
+    }
+
+    @Test
+    void export_ShouldFailWhenRateLimitExceeded() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(false);
+
+        assertThrows(RateLimitException.class, () -> exportService.export(userId.toString(), null, rateLimitBucket));
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.rag.service.dto.ImportJobResponse;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ImportJob;
+import com.rag.service.exception.RateLimitException;
+import com.rag.service.mapper.ImportJobMapper;
+import com.rag.service.repository.ImportJobRepository;
+import com.rag.service.service.ChatImportService;
+import com.rag.service.service.ChatMetrics;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.PayloadCodec;
+import com.rag.service.service.SessionArchiveService;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatImportServiceTest {
+    @Mock ImportJobRepository importJobRepository;
+    @Mock ImportJobMapper importJobMapper;
+    @Mock ContextChunkStore contextChunkStore;
+    @Mock PayloadCodec payloadCodec;
+    @Mock SessionArchiveService sessionArchiveService;
+    @Mock ApplicationEventPublisher eventPublisher;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock Bucket rateLimitBucket;
+
+    private ChatImportService importService;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        importService = new ChatImportService(importJobRepository, importJobMapper, contextChunkStore, payloadCodec,
+                sessionArchiveService, eventPublisher, jdbcTemplate, transactionManager, new ObjectMapper().registerModule(new JavaTimeModule()),
+                new ChatMetrics(new SimpleMeterRegistry()), 100, 300);
+        sessionId = UUID.randomUUID();
+    }
+
+    private static InputStream lines(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String messageLine(String content) {
+        return "{\"type\":\"message\",\"sessionId\":\"" + sessionId + "\",\"message\":{\"id\":\"" + UUID.randomUUID() +
+                "\",\"content\":\"" + content + "\",\"sender\":\"user\",\"createdAt\":\"2024-05-01T10:00:00\"}}";
+    }
+
+    @Test
+    void importHistory_ShouldFailJobAtFirstInvalidLine() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(importJobRepository.save(any(ImportJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () ->
+                importService.importHistory(null, lines(messageLine("hi"), "{\"type\":\"message\",\"message\":{}}"), rateLimitBucket));
+
+        assertTrue(error.getMessage().contains("line 2"));
+        ArgumentCaptor<UUID> jobId = ArgumentCaptor.forClass(UUID.class);
+        verify(importJobRepository).finish(jobId.capture(), eq(ImportJob.Status.FAILED.name()), eq(error.getMessage()));
+        verify(importJobRepository, never()).recordProgress(any(), anyLong(),
+                anyLong(), anyLong(),
+                anyLong(), anyLong());
+    }
+
+    @Test
+    void importHistory_ShouldResumeAfterCommittedLines() {
+        UUID jobId = UUID.randomUUID();
+        ImportJob job = ImportJob.builder().id(jobId).status(ImportJob.Status.RUNNING).linesCommitted(1).build();
+        ImportJobResponse response = ImportJobResponse.builder().id(jobId).status("COMPLETED").build();
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(importJobRepository.claimForResume(eq(jobId), any(LocalDateTime.class))).thenReturn(1);
+        when(importJobRepository.findById(jobId)).thenReturn(Optional.of(job));
+        when(importJobMapper.toImportJobResponse(job)).thenReturn(response);
+
+        // the first line was committed by the failed attempt and is not parsed again
+        ImportJobResponse result = importService.importHistory(jobId.toString(), lines("not json", messageLine("resumed")), rateLimitBucket);
+
+        assertEquals(response, result);
+        verify(contextChunkStore).storeAll(org.mockito.ArgumentMatchers.<Collection<ChatMessage>>any());
+        verify(jdbcTemplate).execute(org.mockito.ArgumentMatchers.<ConnectionCallback<Void>>any());
+        verify(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        // the mocked merge inserts nothing, so the staged message counts as skipped
+        verify(importJobRepository).recordProgress(jobId, 2, 0, 0, 0, 1);
+        verify(importJobRepository).finish(eq(jobId), eq(ImportJob.Status.COMPLETED.name()), isNull());
+    }
+
+    @Test
+    void importHistory_ShouldRejectResumingRunningJob() {
+        UUID jobId = UUID.randomUUID();
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(importJobRepository.claimForResume(eq(jobId), any(LocalDateTime.class))).thenReturn(0);
+        when(importJobRepository.findById(jobId)).thenReturn(Optional.of(ImportJob.builder().id(jobId).build()));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                importService.importHistory(jobId.toString(), lines(messageLine("hi")), rateLimitBucket));
+        verify(jdbcTemplate, never()).execute(org.mockito.ArgumentMatchers.<ConnectionCallback<Void>>any());
+    }
+
+    @Test
+    void importHistory_ShouldFailWhenRateLimitExceeded() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(false);
+
+        assertThrows(RateLimitException.class, () -> importService.importHistory(null, lines(), rateLimitBucket));
+    }
+}
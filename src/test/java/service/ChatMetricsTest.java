@@ -0,0 +1,90 @@
+package service;
+
+import com.rag.service.service.ChatMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMetricsTest {
+    private SimpleMeterRegistry meterRegistry;
+    private ChatMetrics chatMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        chatMetrics = new ChatMetrics(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void recordPayload_ShouldRecordUtf8BytesPerPart() {
+        // 1 + 2 + 3 + 4 bytes
+        chatMetrics.recordPayload(ChatMetrics.RELATIONAL, "aé€😀", "context");
+
+        DistributionSummary content = meterRegistry.get("chat.payload.size")
+                .tags("store", ChatMetrics.RELATIONAL, "part", "content").summary();
+        assertEquals(1, content.count());
+        assertEquals(10, content.totalAmount());
+        assertEquals(7, meterRegistry.get("chat.payload.size").tag("part", "context").summary().totalAmount());
+    }
+
+    @Test
+    void recordPayload_ShouldSkipMissingContext() {
+        chatMetrics.recordPayload(ChatMetrics.JSONB, "hello", null);
+
+        assertNull(meterRegistry.find("chat.payload.size").tag("part", "context").summary());
+    }
+
+    @Test
+    void recordPage_ShouldTagResource() {
+        chatMetrics.recordPage("messages", 20);
+        chatMetrics.recordPage("messages", 5);
+
+        DistributionSummary pages = meterRegistry.get("chat.page.size").tag("resource", "messages").summary();
+        assertEquals(2, pages.count());
+        assertEquals(20, pages.max());
+    }
+
+    @Test
+    void rateLimited_ShouldAttributeToApiKeyOfCurrentRequest() {
+        String fingerprint = ChatMetrics.fingerprint("test-api-key1");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(ChatMetrics.API_KEY_FINGERPRINT_ATTRIBUTE, fingerprint);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        chatMetrics.rateLimited(ChatMetrics.SHARED_LIMIT);
+
+        assertEquals(1, meterRegistry.get("chat.ratelimit.rejected")
+                .tags("limit", ChatMetrics.SHARED_LIMIT, "api.key", fingerprint).counter().count());
+    }
+
+    @Test
+    void rateLimited_ShouldCountOutsideRequests() {
+        chatMetrics.rateLimited(ChatMetrics.SHARED_LIMIT);
+
+        assertEquals(1, meterRegistry.get("chat.ratelimit.rejected").tag("api.key", "unknown").counter().count());
+    }
+
+    @Test
+    void fingerprint_ShouldNotExposeKey() {
+        String fingerprint = ChatMetrics.fingerprint("test-api-key1");
+
+        assertTrue(fingerprint.matches("[0-9a-f]{8}"));
+        assertEquals(fingerprint, ChatMetrics.fingerprint("test-api-key1"));
+        assertNotEquals(fingerprint, ChatMetrics.fingerprint("test-api-key2"));
+    }
+}
@@ -1,15 +1,44 @@
 package service;
 
+import com.rag.service.dto.AddMessageRequest;
+import com.rag.service.dto.BatchAddMessageRequest;
+import com.rag.service.dto.BatchAddMessageResponse;
+import com.rag.service.dto.BatchMessageItem;
 import com.rag.service.dto.ChatSessionResponse;
+import com.rag.service.dto.ConditionalResponse;
 import com.rag.service.dto.CreateSessionRequest;
+import com.rag.service.dto.CursorPageResponse;
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.dto.MessageResponseDto;
+import com.rag.service.dto.MessageSearchResult;
+import com.rag.service.dto.PageableResponse;
+import com.rag.service.dto.SimilarMessagesRequest;
+import com.rag.service.dto.SliceResponse;
+import com.rag.service.entity.ChatMessage;
 import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.MessageEmbedding;
 import com.rag.service.entity.User;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.ChatSessionDeletedEvent;
+import com.rag.service.exception.ConflictException;
 import com.rag.service.exception.NotFoundException;
 import com.rag.service.exception.RateLimitException;
+import com.rag.service.mapper.ChatMessageMapper;
 import com.rag.service.mapper.ChatSessionMapper;
+import com.rag.service.repository.ChatMessageRepository;
 import com.rag.service.repository.ChatSessionRepository;
+import com.rag.service.repository.MessageEmbeddingRepository;
+import com.rag.service.repository.SessionVersion;
 import com.rag.service.repository.UserRepository;
+import com.rag.service.service.ChatMetrics;
 import com.rag.service.service.ChatService;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.LiveMessageBus;
+import com.rag.service.service.MessageIngestQueue;
+import com.rag.service.service.MessageSearchIndex;
+import com.rag.service.service.PayloadCodec;
+import com.rag.service.service.SessionActivityRecorder;
+import com.rag.service.service.SessionArchiveService;
 import io.github.bucket4j.Bucket;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,18 +47,35 @@ import org.junit.jupiter.api.function.Executable;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +84,18 @@ class ChatServiceTest {
     @Mock UserRepository userRepository;
     @Mock Bucket rateLimitBucket;
     @Mock ChatSessionMapper chatSessionMapper;
+    @Mock ChatMessageRepository messageRepository;
+    @Mock ChatMessageMapper chatMessageMapper;
+    @Mock MessageIngestQueue messageIngestQueue;
+    @Mock MessageSearchIndex messageSearchIndex;
+    @Mock ApplicationEventPublisher eventPublisher;
+    @Mock MessageEmbeddingRepository embeddingRepository;
+    @Mock ContextChunkStore contextChunkStore;
+    @Mock PayloadCodec payloadCodec;
+    @Mock SessionArchiveService sessionArchiveService;
+    @Mock LiveMessageBus liveMessageBus;
+    @Mock SessionActivityRecorder sessionActivityRecorder;
+    @Mock ChatMetrics chatMetrics;
     @InjectMocks ChatService chatService;
 
     private UUID userId;
@@ -50,7 +108,10 @@ class ChatServiceTest {
         userId = UUID.randomUUID();
         sessionId = UUID.randomUUID();
         user = User.builder().id(userId).name("Test User").email("test@example.com").build();
-        session = ChatSession.builder().id(sessionId).name("Session").user(user).favorite(false).build();
+        session = ChatSession.builder().id(sessionId).name("Session").user(user).favorite(false)
+                .createdAt(LocalDateTime.now().minusDays(30)).build();
+        ReflectionTestUtils.setField(chatService, "embeddingDimensions", 3);
+        ReflectionTestUtils.setField(chatService, "streamReplayLimit", 2);
     }
 
     @Test
@@ -69,6 +130,7 @@ class ChatServiceTest {
         when(chatSessionMapper.toChatSessionResponse(session)).thenReturn(ChatSessionResponse.builder().id(sessionId).name(session.getName()).build());
 
         ChatSessionResponse response = chatService.createSession(request, rateLimitBucket);
+        verify(userRepository).adjustSessionCounts(userId, 1, 0);
         assertNotNull(response);
         assertEquals(sessionId, response.getId());
         assertEquals("Session", response.getName());
@@ -83,6 +145,7 @@ class ChatServiceTest {
                 .build();
         Executable executable = () ->  chatService.createSession(request, rateLimitBucket);
         assertThrows(RateLimitException.class, executable);
+        verify(chatMetrics).rateLimited(ChatMetrics.SHARED_LIMIT);
     }
 
     @Test
@@ -118,18 +181,411 @@ class ChatServiceTest {
         Pageable pageable = PageRequest.of(0, 10);
         Page<ChatSession> sessionPage = new PageImpl<>(java.util.List.of(session));
         when(sessionRepository.findByUserId(userId, pageable)).thenReturn(sessionPage);
-        Page<ChatSessionResponse> result = chatService.getAllSessions(userId.toString(), pageable, rateLimitBucket);
+        Page<ChatSessionResponse> result = chatService.getAllSessions(userId.toString(), pageable, null, rateLimitBucket).body();
         assertNotNull(result);
         assertEquals(1, result.getTotalElements());
     }
 
+    @Test
+    void getAllSessions_ShouldSortSessionsWithoutMessagesLast() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        Pageable pageable = PageRequest.of(1, 10, Sort.by(Sort.Order.desc("lastMessageAt"), Sort.Order.asc("name")));
+        when(sessionRepository.findByUserId(any(), any())).thenReturn(Page.empty());
+
+        chatService.getAllSessions(userId.toString(), pageable, null, rateLimitBucket);
+
+        verify(sessionRepository).findByUserId(userId,
+                PageRequest.of(1, 10, Sort.by(Sort.Order.desc("lastActivityAt"), Sort.Order.asc("name"))));
+    }
+
+    @Test
+    void getAllSessions_ShouldReturnNotModifiedWhileSessionsVersionIsUnchanged() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(userRepository.findSessionsVersion(userId)).thenReturn(7L);
+
+        ConditionalResponse<Page<ChatSessionResponse>> result =
+                chatService.getAllSessions(userId.toString(), PageRequest.of(0, 10), List.of("W/\"7\""), rateLimitBucket);
+
+        assertTrue(result.isNotModified());
+        assertEquals("\"7\"", result.etag());
+        verify(sessionRepository, never()).findByUserId(any(), any());
+    }
+
+    @Test
+    void getSessionMessages_ShouldReturnNotModifiedWithoutLoadingMessages() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        SessionVersion version = mock(SessionVersion.class);
+        when(version.getMessageVersion()).thenReturn(3L);
+        when(version.getUpdatedAt()).thenReturn(LocalDateTime.of(2025, 1, 1, 0, 0, 0, 1_000));
+        when(sessionRepository.findVersionById(sessionId)).thenReturn(Optional.of(version));
+
+        ConditionalResponse<PageableResponse> result = chatService.getSessionMessages(sessionId.toString(),
+                PageRequest.of(0, 10), List.of("\"1\"", "\"3-1735689600000001\""), rateLimitBucket);
+
+        assertTrue(result.isNotModified());
+        verify(sessionRepository, never()).findById(any());
+        verify(messageRepository, never()).findBySessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(any(), any(), any());
+        verify(chatMessageMapper, never()).toMessageResponseDtoList(anyList());
+    }
+
+    @Test
+    void getSessionMessages_ShouldReturnPageWithEtagWhenVersionChanged() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        SessionVersion version = mock(SessionVersion.class);
+        when(version.getMessageVersion()).thenReturn(4L);
+        when(version.getUpdatedAt()).thenReturn(LocalDateTime.of(2025, 1, 1, 0, 0));
+        when(sessionRepository.findVersionById(sessionId)).thenReturn(Optional.of(version));
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        Pageable pageable = PageRequest.of(0, 10);
+        when(messageRepository.findBySessionIdAndCreatedAtGreaterThanEqualOrderByCreatedAtDesc(sessionId, session.getCreatedAt(), pageable))
+                .thenReturn(Page.empty(pageable));
+
+        ConditionalResponse<PageableResponse> result = chatService.getSessionMessages(sessionId.toString(), pageable,
+                List.of("\"3-1735689600000000\""), rateLimitBucket);
+
+        assertFalse(result.isNotModified());
+        assertEquals("\"4-1735689600000000\"", result.etag());
+    }
+
     @Test
     void getAllSessions_ShouldThrowRateLimitException() {
         when(rateLimitBucket.tryConsume(1)).thenReturn(false);
         Pageable pageable = PageRequest.of(0, 10);
-        Executable executable = () -> chatService.getAllSessions(userId.toString(), pageable, rateLimitBucket);
+        Executable executable = () -> chatService.getAllSessions(userId.toString(), pageable, null, rateLimitBucket);
         assertThrows(RateLimitException.class, executable);
 
     }
-}
 
+    @Test
+    void getSessionMessagesByCursor_ShouldReturnNextCursorWhenMoreRowsExist() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        LocalDateTime now = LocalDateTime.now();
+        ChatMessage newest = ChatMessage.builder().id(UUID.randomUUID()).createdAt(now).build();
+        ChatMessage older = ChatMessage.builder().id(UUID.randomUUID()).createdAt(now.minusSeconds(1)).build();
+        ChatMessage oldest = ChatMessage.builder().id(UUID.randomUUID()).createdAt(now.minusSeconds(2)).build();
+        when(messageRepository.findFirstKeysetPage(sessionId, session.getCreatedAt(), 3)).thenReturn(List.of(newest, older, oldest));
+
+        CursorPageResponse result = chatService.getSessionMessagesByCursor(sessionId.toString(), "", 2, rateLimitBucket);
+
+        assertTrue(result.isHasNext());
+        MessageCursor next = MessageCursor.decode(result.getNextCursor());
+        assertEquals(older.getId(), next.id());
+        assertEquals(older.getCreatedAt(), next.createdAt());        verify(contextChunkStore).prefetch(List.of(newest, older));
+    }
+
+    @Test
+    void streamMessages_ShouldReplayMessagesSinceLastEvent() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        LiveMessageBus.Subscription subscription = mock(LiveMessageBus.Subscription.class);
+        when(liveMessageBus.subscribe(sessionId.toString())).thenReturn(subscription);
+        MessageCursor last = new MessageCursor(LocalDateTime.now().minusMinutes(1), UUID.randomUUID());
+        ChatMessage missed = ChatMessage.builder().id(UUID.randomUUID()).createdAt(LocalDateTime.now()).build();
+        when(messageRepository.findNewerThan(sessionId, last.createdAt(), last.id(), 3)).thenReturn(List.of(missed));
+        List<LiveMessageBus.LiveEvent> backlog = List.of(new LiveMessageBus.LiveEvent("id", LiveMessageBus.MESSAGE_EVENT, "data"));
+        when(liveMessageBus.toEvents(List.of(missed))).thenReturn(backlog);
+
+        chatService.streamMessages(sessionId.toString(), last.encode(), rateLimitBucket);
+
+        verify(subscription).start(backlog);
+    }
+
+    @Test
+    void streamMessages_ShouldResetWhenMoreThanTheReplayLimitWasMissed() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        LiveMessageBus.Subscription subscription = mock(LiveMessageBus.Subscription.class);
+        when(liveMessageBus.subscribe(sessionId.toString())).thenReturn(subscription);
+        MessageCursor last = new MessageCursor(LocalDateTime.now().minusMinutes(1), UUID.randomUUID());
+        when(messageRepository.findNewerThan(sessionId, last.createdAt(), last.id(), 3)).thenReturn(List.of(
+                ChatMessage.builder().build(), ChatMessage.builder().build(), ChatMessage.builder().build()));
+
+        chatService.streamMessages(sessionId.toString(), last.encode(), rateLimitBucket);
+
+        verify(subscription).start(List.of(LiveMessageBus.RESET));
+        verify(liveMessageBus, never()).toEvents(anyList());
+    }
+
+    @Test
+    void getSessionMessagesByCursor_ShouldReadArchivedSessionFromArchive() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        session.setArchivedAt(LocalDateTime.now().minusDays(1));
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        ChatMessage archived = ChatMessage.builder().id(UUID.randomUUID()).createdAt(LocalDateTime.now().minusDays(10)).build();
+        when(sessionArchiveService.findKeysetPage(session, null, 11)).thenReturn(List.of(archived));
+
+        CursorPageResponse result = chatService.getSessionMessagesByCursor(sessionId.toString(), null, 10, rateLimitBucket);
+
+        assertFalse(result.isHasNext());
+        verify(contextChunkStore).prefetch(List.of(archived));
+        verify(messageRepository, never()).findFirstKeysetPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void getSessionMessagesByCursor_ShouldContinueAfterCursor() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        MessageCursor cursor = new MessageCursor(LocalDateTime.now(), UUID.randomUUID());
+        ChatMessage last = ChatMessage.builder().id(UUID.randomUUID()).createdAt(LocalDateTime.now().minusDays(1)).build();
+        when(messageRepository.findKeysetPageAfter(sessionId, session.getCreatedAt(), cursor.createdAt(), cursor.id(), 11)).thenReturn(List.of(last));
+
+        CursorPageResponse result = chatService.getSessionMessagesByCursor(sessionId.toString(), cursor.encode(), 10, rateLimitBucket);
+
+        assertFalse(result.isHasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getSessionMessagesByCursor_ShouldRejectMalformedCursor() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        Executable executable = () -> chatService.getSessionMessagesByCursor(sessionId.toString(), "not-a-cursor", 10, rateLimitBucket);
+        assertThrows(IllegalArgumentException.class, executable);
+    }
+
+    @Test
+    void getSessionMessagesByCursor_ShouldRejectPagesOverLimit() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        Executable executable = () -> chatService.getSessionMessagesByCursor(sessionId.toString(), null, 101, rateLimitBucket);
+        assertThrows(IllegalArgumentException.class, executable);
+        verify(messageRepository, never()).findFirstKeysetPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void getSessionsSlice_ShouldSkipCountByDefault() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        Pageable pageable = PageRequest.of(0, 1);
+        when(sessionRepository.findSliceByUserId(userId, pageable))
+                .thenReturn(new SliceImpl<>(List.of(session), pageable, true));
+
+        SliceResponse<ChatSessionResponse> result = chatService.getSessionsSlice(userId.toString(), false, false, pageable, null, rateLimitBucket).body();
+
+        assertTrue(result.isHasNext());
+        assertNull(result.getApproximateTotal());
+        verify(userRepository, never()).findSessionCount(userId);
+    }
+
+    @Test
+    void getSessionsSlice_ShouldReturnApproximateFavoriteCountWhenRequested() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        Pageable pageable = PageRequest.of(0, 10);
+        when(sessionRepository.findSliceByUserIdAndFavoriteTrue(userId, pageable))
+                .thenReturn(new SliceImpl<>(List.of(session), pageable, false));
+        when(userRepository.findFavoriteSessionCount(userId)).thenReturn(1L);
+
+        SliceResponse<ChatSessionResponse> result = chatService.getSessionsSlice(userId.toString(), true, true, pageable, null, rateLimitBucket).body();
+
+        assertFalse(result.isHasNext());
+        assertEquals(1L, result.getApproximateTotal());
+    }
+
+    @Test
+    void deleteSession_ShouldDecrementSessionCounts() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        session.setFavorite(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+
+        chatService.deleteSession(sessionId.toString(), userId.toString(), rateLimitBucket);
+
+        verify(sessionRepository).delete(session);
+        verify(userRepository).adjustSessionCounts(userId, -1, -1);
+        verify(eventPublisher).publishEvent(new ChatSessionDeletedEvent(sessionId));
+    }
+
+    @Test
+    void saveMessages_ShouldKeepClientIdsAndSaveInOneCall() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findAllById(any())).thenReturn(List.of(session));
+        UUID clientId = UUID.randomUUID();
+        BatchMessageItem first = BatchMessageItem.builder().id(clientId.toString()).sessionId(sessionId.toString()).content("a").sender("user").build();
+        BatchMessageItem second = BatchMessageItem.builder().sessionId(sessionId.toString()).content("b").sender("assistant").build();
+        when(chatMessageMapper.toEntity(first, session)).thenReturn(ChatMessage.builder().id(clientId).session(session).build());
+        when(chatMessageMapper.toEntity(second, session)).thenReturn(ChatMessage.builder().session(session).build());
+        BatchAddMessageRequest request = BatchAddMessageRequest.builder()
+                .userId(userId.toString())
+                .messages(List.of(first, second))
+                .build();
+
+        BatchAddMessageResponse response = chatService.saveMessages(request, rateLimitBucket);
+
+        assertEquals(2, response.getMessageIds().size());
+        assertEquals(clientId.toString(), response.getMessageIds().get(0));
+        assertNotNull(response.getMessageIds().get(1));
+        verify(contextChunkStore).storeAll(anyList());
+        verify(messageRepository).saveAll(anyList());
+        verify(sessionActivityRecorder).record(anyList());
+        verify(eventPublisher).publishEvent(any(ChatMessagesSavedEvent.class));
+    }
+
+    @Test
+    void saveMessages_ShouldRejectReplayedIdsWithOneLookup() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findAllById(any())).thenReturn(List.of(session));
+        UUID stored = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+        BatchMessageItem first = BatchMessageItem.builder().id(stored.toString()).sessionId(sessionId.toString()).content("a").sender("user").build();
+        BatchMessageItem second = BatchMessageItem.builder().id(fresh.toString()).sessionId(sessionId.toString()).content("b").sender("user").build();
+        when(chatMessageMapper.toEntity(first, session)).thenReturn(ChatMessage.builder().id(stored).session(session).build());
+        when(chatMessageMapper.toEntity(second, session)).thenReturn(ChatMessage.builder().id(fresh).session(session).build());
+        when(messageRepository.findExistingIds(Set.of(stored, fresh))).thenReturn(List.of(stored));
+        BatchAddMessageRequest request = BatchAddMessageRequest.builder()
+                .userId(userId.toString())
+                .messages(List.of(first, second))
+                .build();
+
+        ConflictException exception = assertThrows(ConflictException.class, () -> chatService.saveMessages(request, rateLimitBucket));
+
+        assertTrue(exception.getMessage().contains(stored.toString()));
+        verify(messageRepository).findExistingIds(any());
+        verify(contextChunkStore, never()).storeAll(anyList());
+        verify(messageRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void saveMessages_ShouldRejectSessionOwnedByAnotherUser() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findAllById(any())).thenReturn(List.of(session));
+        BatchAddMessageRequest request = BatchAddMessageRequest.builder()
+                .userId(UUID.randomUUID().toString())
+                .messages(List.of(BatchMessageItem.builder().sessionId(sessionId.toString()).content("a").sender("user").build()))
+                .build();
+        Executable executable = () -> chatService.saveMessages(request, rateLimitBucket);
+        assertThrows(IllegalArgumentException.class, executable);
+        verify(messageRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void saveMessage_ShouldPersistSynchronouslyByDefault() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        AddMessageRequest request = AddMessageRequest.builder().content("hi").sender("user").userId(userId.toString()).build();
+        ChatMessage message = ChatMessage.builder().session(session).content("hi").build();
+        when(chatMessageMapper.toEntity(request, session)).thenReturn(message);
+
+        chatService.saveMessage(sessionId.toString(), request, rateLimitBucket);
+
+        verify(sessionArchiveService).rehydrateIfArchived(session);
+        verify(contextChunkStore).storeAll(List.of(message));
+        verify(payloadCodec).compressAll(List.of(message));
+        verify(messageRepository).save(message);
+        verify(messageIngestQueue, never()).enqueue(message);
+        verify(eventPublisher).publishEvent(new ChatMessagesSavedEvent(List.of(message)));
+    }
+
+    @Test
+    void saveMessage_ShouldEnqueueWhenWriteBehindIsEnabled() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(messageIngestQueue.isEnabled()).thenReturn(true);
+        AddMessageRequest request = AddMessageRequest.builder().content("hi").sender("user").userId(userId.toString()).build();
+        ChatMessage message = ChatMessage.builder().session(session).content("hi").build();
+        when(chatMessageMapper.toEntity(request, session)).thenReturn(message);
+
+        chatService.saveMessage(sessionId.toString(), request, rateLimitBucket);
+
+        verify(messageIngestQueue).enqueue(message);
+        verify(messageRepository, never()).save(message);
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void saveMessage_ShouldEnqueueOnlyAfterTheTransactionCommits() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(messageIngestQueue.isEnabled()).thenReturn(true);
+        AddMessageRequest request = AddMessageRequest.builder().content("hi").sender("user").userId(userId.toString()).build();
+        ChatMessage message = ChatMessage.builder().session(session).content("hi").build();
+        when(chatMessageMapper.toEntity(request, session)).thenReturn(message);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            chatService.saveMessage(sessionId.toString(), request, rateLimitBucket);
+            verify(messageIngestQueue, never()).enqueue(message);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(messageIngestQueue).enqueue(message);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void searchMessages_ShouldKeepIndexRankingAndDropStaleHits() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        UUID best = UUID.randomUUID();
+        UUID stale = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(messageSearchIndex.search(userId, "hello", 3)).thenReturn(List.of(
+                new MessageSearchIndex.Hit(best, 2.0f),
+                new MessageSearchIndex.Hit(stale, 1.5f),
+                new MessageSearchIndex.Hit(second, 1.0f)));
+        ChatMessage bestMessage = ChatMessage.builder().id(best).session(session).content("hello there").build();
+        ChatMessage secondMessage = ChatMessage.builder().id(second).session(session).content("hello").build();
+        when(messageRepository.findAllById(List.of(best, stale, second))).thenReturn(List.of(secondMessage, bestMessage));
+        when(chatMessageMapper.toMessageResponseDto(any(ChatMessage.class)))
+                .thenAnswer(invocation -> MessageResponseDto.builder()
+                        .id(invocation.<ChatMessage>getArgument(0).getId().toString())
+                        .build());
+
+        List<MessageSearchResult> results = chatService.searchMessages(userId.toString(), "hello", 3, rateLimitBucket);
+
+        assertEquals(2, results.size());
+        assertEquals(best.toString(), results.get(0).getMessage().getId());
+        assertEquals(second.toString(), results.get(1).getMessage().getId());
+        assertEquals(sessionId.toString(), results.get(0).getSessionId());
+    }
+
+    @Test
+    void searchMessages_ShouldRejectLimitAboveMaximum() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        Executable executable = () -> chatService.searchMessages(userId.toString(), "hello", 101, rateLimitBucket);
+        assertThrows(IllegalArgumentException.class, executable);
+        verify(messageSearchIndex, never()).search(any(), any(), anyInt());
+    }
+
+    @Test
+    void saveMessage_ShouldStoreEmbeddingNextToMessage() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        float[] embedding = {0.1f, 0.2f, 0.3f};
+        AddMessageRequest request = AddMessageRequest.builder().content("hi").sender("user").userId(userId.toString())
+                .embedding(embedding).build();
+        ChatMessage message = ChatMessage.builder().id(UUID.randomUUID()).session(session).content("hi").embedding(embedding).build();
+        when(chatMessageMapper.toEntity(request, session)).thenReturn(message);
+
+        chatService.saveMessage(sessionId.toString(), request, rateLimitBucket);
+
+        verify(embeddingRepository).save(MessageEmbedding.builder()
+                .messageId(message.getId()).sessionId(sessionId).embedding(embedding).build());
+    }
+
+    @Test
+    void saveMessage_ShouldRejectEmbeddingWithWrongDimensions() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        AddMessageRequest request = AddMessageRequest.builder().content("hi").sender("user").userId(userId.toString())
+                .embedding(new float[]{0.1f, 0.2f}).build();
+
+        Executable executable = () -> chatService.saveMessage(sessionId.toString(), request, rateLimitBucket);
+
+        assertThrows(IllegalArgumentException.class, executable);
+        verify(messageRepository, never()).save(any());
+    }
+
+    @Test
+    void searchSimilarMessages_ShouldRejectSessionOfAnotherUser() {
+        when(rateLimitBucket.tryConsume(1)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        SimilarMessagesRequest request = SimilarMessagesRequest.builder()
+                .userId(UUID.randomUUID().toString())
+                .sessionId(sessionId.toString())
+                .embedding(new float[]{1f, 0f, 0f})
+                .build();
+
+        Executable executable = () -> chatService.searchSimilarMessages(request, rateLimitBucket);
+
+        assertThrows(NotFoundException.class, executable);
+        verify(messageSearchIndex, never()).searchSimilar(any(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,106 @@
+package service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.PayloadCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ContextChunkStoreTest {
+    private static final String SHARED = "Chunk about refunds.\n\n";
+
+    @Mock JdbcTemplate jdbcTemplate;
+    @Captor ArgumentCaptor<Collection<String>> chunks;
+
+    private ContextChunkStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ContextChunkStore(jdbcTemplate, new PayloadCodec(true, 1024, 3, "", ""), 100);
+    }
+
+    private static ChatMessage message(String context) {
+        return ChatMessage.builder().id(UUID.randomUUID()).retrievedContext(context).build();
+    }
+
+    @Test
+    void storeAll_ShouldWriteEachDistinctChunkOnce() {
+        ChatMessage first = message(SHARED + "Chunk about shipping.");
+        ChatMessage second = message(SHARED + SHARED + "Chunk about shipping.");
+        ChatMessage none = message(null);
+
+        store.storeAll(List.of(first, second, none));
+
+        verify(jdbcTemplate).batchUpdate(anyString(), chunks.capture(), eq(2),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<String>>any());
+        assertEquals(2, chunks.getValue().size());
+        assertEquals(2 * 32, first.getContextChunkHashes().length);
+        assertEquals(3 * 32, second.getContextChunkHashes().length);
+        assertNull(none.getContextChunkHashes());
+    }
+
+    @Test
+    void resolveContext_ShouldReassembleContextExactly() {
+        String context = SHARED + "\n\nodd spacing\n\n\n" + SHARED;
+        ChatMessage written = message(context);
+        store.storeAll(List.of(written));
+
+        ChatMessage read = ChatMessage.builder().id(written.getId()).contextChunkHashes(written.getContextChunkHashes()).build();
+
+        assertEquals(context, store.resolveContext(read));
+        verify(jdbcTemplate, never()).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void resolveContext_ShouldLoadChunksMissingFromCache() throws Exception {
+        ChatMessage written = message("only chunk");
+        new ContextChunkStore(mock(JdbcTemplate.class), new PayloadCodec(true, 1024, 3, "", ""), 100).storeAll(List.of(written));
+        ResultSet row = mock(ResultSet.class);
+        when(row.getBytes(1)).thenReturn(written.getContextChunkHashes());
+        when(row.getString(2)).thenReturn("only chunk");
+        when(row.getBytes(3)).thenReturn(null);
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(2).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+
+        ChatMessage read = ChatMessage.builder().contextChunkHashes(written.getContextChunkHashes()).build();
+
+        assertEquals("only chunk", store.resolveContext(read));
+    }
+
+    @Test
+    void resolveContext_ShouldReturnInlineContextOfOlderRows() {
+        assertEquals("legacy", store.resolveContext(message("legacy")));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), ArgumentMatchers.<Collection<String>>any(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<String>>any());
+    }
+}
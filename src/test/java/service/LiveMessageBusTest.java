@@ -0,0 +1,83 @@
+package service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.mapper.ChatMessageMapper;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.LiveMessageBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class LiveMessageBusTest {
+    private final ChatMessageMapper chatMessageMapper = mock(ChatMessageMapper.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LiveMessageBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bus = new LiveMessageBus(2, 1, 60000, chatMessageMapper, mock(ContextChunkStore.class), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.close();
+    }
+
+    @Test
+    void publish_ShouldDropSubscriberWhoseBufferOverflows() {
+        bus.subscribe("topic");
+        bus.subscribe("other");
+
+        for (int i = 0; i < 3; i++) {
+            bus.publish("topic", new LiveMessageBus.LiveEvent(String.valueOf(i), LiveMessageBus.MESSAGE_EVENT, "data"));
+        }
+
+        assertFalse(bus.hasSubscribers("topic"));
+        assertTrue(bus.hasSubscribers("other"));
+        assertEquals(1, bus.getSubscriberCount());
+        assertEquals(1.0, meterRegistry.get("chat.stream.dropped").counter().count());
+    }
+
+    @Test
+    void onMessagesSaved_ShouldSkipRestoredMessages() {
+        UUID sessionId = UUID.randomUUID();
+        bus.subscribe(LiveMessageBus.chatSessionTopic(sessionId));
+        ChatMessage message = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(ChatSession.builder().id(sessionId).build())
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        bus.onMessagesSaved(new ChatMessagesSavedEvent(List.of(message), true));
+        verify(chatMessageMapper, never()).toMessageResponseDto(any());
+
+        bus.onMessagesSaved(new ChatMessagesSavedEvent(List.of(message)));
+        verify(chatMessageMapper).toMessageResponseDto(message);
+    }
+
+    @Test
+    void cancel_ShouldRemoveSubscriber() {
+        LiveMessageBus.Subscription subscription = bus.subscribe("topic");
+
+        subscription.cancel();
+        subscription.cancel();
+
+        assertFalse(bus.hasSubscribers("topic"));
+        assertEquals(0, bus.getSubscriberCount());
+    }
+}
@@ -0,0 +1,143 @@
+package service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.exception.IngestQueueFullException;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.MessageIngestQueue;
+import com.rag.service.service.PayloadCodec;
+import com.rag.service.service.SessionActivityRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIngestQueueTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock ApplicationEventPublisher eventPublisher;
+    @Mock ContextChunkStore contextChunkStore;
+    @Mock PayloadCodec payloadCodec;
+    @Mock SessionActivityRecorder sessionActivityRecorder;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatSession session;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        session = ChatSession.builder().id(UUID.randomUUID()).build();
+    }
+
+    // without writers, messages stay queued
+    private MessageIngestQueue queue(int capacity, int writerThreads, long maxLingerMillis) {
+        MessageIngestQueue ingestQueue = new MessageIngestQueue(true, capacity, writerThreads, 10, maxLingerMillis, false, 0, 5000,
+                jdbcTemplate, transactionManager, eventPublisher, contextChunkStore, payloadCodec, sessionActivityRecorder, meterRegistry);
+        ingestQueue.start();
+        return ingestQueue;
+    }
+
+    @Test
+    void enqueue_ShouldAssignIdAndTimestamp() {
+        MessageIngestQueue ingestQueue = queue(10, 0, 5);
+        ChatMessage message = ChatMessage.builder().session(session).content("hi").sender("user").build();
+
+        ingestQueue.enqueue(message);
+
+        assertNotNull(message.getId());
+        assertNotNull(message.getCreatedAt());
+        assertEquals(1.0, meterRegistry.get("chat.ingest.queue.depth").gauge().value());
+    }
+
+    @Test
+    void enqueue_ShouldRejectWhenQueueIsFull() {
+        MessageIngestQueue ingestQueue = queue(1, 0, 5);
+        ingestQueue.enqueue(ChatMessage.builder().session(session).build());
+
+        assertThrows(IngestQueueFullException.class,
+                () -> ingestQueue.enqueue(ChatMessage.builder().session(session).build()));
+        assertEquals(1.0, meterRegistry.get("chat.ingest.rejected").counter().count());
+    }
+
+    @Test
+    void stop_ShouldFlushQueuedMessages() {
+        // lingers long enough to take all three into one batch
+        MessageIngestQueue ingestQueue = queue(10, 1, 200);
+        for (int i = 0; i < 3; i++) {
+            ingestQueue.enqueue(ChatMessage.builder().session(session).content("m" + i).sender("user").build());
+        }
+
+        ingestQueue.stop();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), ArgumentMatchers.<Collection<ChatMessage>>any(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<ChatMessage>>any());
+        assertEquals(0.0, meterRegistry.get("chat.ingest.queue.depth").gauge().value());
+        assertEquals(1, meterRegistry.get("chat.ingest.commit.latency").timer().count());
+        verify(eventPublisher).publishEvent(any(ChatMessagesSavedEvent.class));
+        verify(contextChunkStore).storeAll(ArgumentMatchers.<Collection<ChatMessage>>any());
+        verify(payloadCodec).compressAll(ArgumentMatchers.<Collection<ChatMessage>>any());
+        verify(sessionActivityRecorder).record(ArgumentMatchers.<Collection<ChatMessage>>any());
+    }
+
+    @Test
+    void enqueue_ShouldRejectWhileStopping() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), ArgumentMatchers.<Collection<ChatMessage>>any(), anyInt(),
+                ArgumentMatchers.<ParameterizedPreparedStatementSetter<ChatMessage>>any());
+        MessageIngestQueue ingestQueue = queue(10, 1, 0);
+        ingestQueue.enqueue(ChatMessage.builder().session(session).content("first").sender("user").build());
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        Thread stopping = new Thread(ingestQueue::stop);
+        stopping.start();
+        while (ingestQueue.isRunning()) {
+            Thread.onSpinWait();
+        }
+        assertThrows(IngestQueueFullException.class,
+                () -> ingestQueue.enqueue(ChatMessage.builder().session(session).content("late").sender("user").build()));
+        release.countDown();
+        stopping.join(5000);
+
+        assertFalse(stopping.isAlive());
+        assertEquals(0.0, meterRegistry.get("chat.ingest.queue.depth").gauge().value());
+        assertEquals(0.0, meterRegistry.get("chat.ingest.rejected").counter().count());
+    }
+
+    @Test
+    void getPhase_ShouldStopAfterGracefulShutdown() {
+        MessageIngestQueue ingestQueue = queue(10, 0, 5);
+
+        assertTrue(ingestQueue.getPhase() < WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE);
+    }
+}
@@ -0,0 +1,64 @@
+package service;
+
+import com.rag.service.service.MessagePartitionMaintainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionMaintainerTest {
+    @Mock JdbcTemplate jdbcTemplate;
+
+    private MessagePartitionMaintainer maintainer;
+
+    @BeforeEach
+    void setUp() {
+        maintainer = new MessagePartitionMaintainer(jdbcTemplate, 3);
+    }
+
+    @Test
+    void ensurePartitions_ShouldPrepareConfiguredMonthsAhead() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(3))).thenReturn(1);
+
+        maintainer.ensurePartitions();
+
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Integer.class), eq(3));
+    }
+
+    @Test
+    void ensurePartitions_ShouldNotFailWhenDatabaseIsUnavailable() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(3)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        assertDoesNotThrow(() -> maintainer.ensurePartitions());
+    }
+
+    @Test
+    void ensurePartitions_ShouldIndexChunkReferencesOfNewPartitions() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(3))).thenReturn(0);
+        when(jdbcTemplate.queryForList(contains("idx_messages_context_chunks"), eq(String.class)))
+                .thenReturn(List.of("chat_messages_default"));
+        when(jdbcTemplate.queryForObject(contains("NOT indisvalid"), eq(Long.class), any())).thenReturn(1L);
+
+        maintainer.ensurePartitions();
+
+        verify(jdbcTemplate).execute("DROP INDEX CONCURRENTLY IF EXISTS chat_messages_default_context_chunks_idx");
+        verify(jdbcTemplate).execute(startsWith("CREATE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_default_context_chunks_idx"));
+        verify(jdbcTemplate).execute("ALTER INDEX idx_messages_context_chunks ATTACH PARTITION chat_messages_default_context_chunks_idx");
+    }
+}
@@ -0,0 +1,202 @@
+package service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.event.ChatMessagesSavedEvent;
+import com.rag.service.event.ChatSessionDeletedEvent;
+import com.rag.service.exception.SearchUnavailableException;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.MessageSearchIndex;
+import com.rag.service.service.PayloadCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class MessageSearchIndexTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock ContextChunkStore contextChunkStore;
+    @TempDir Path indexDir;
+
+    private MessageSearchIndex index;
+    private ChatSession session;
+    private ChatSession otherUserSession;
+
+    @BeforeEach
+    void setUp() {
+        session = ChatSession.builder().id(UUID.randomUUID())
+                .user(User.builder().id(UUID.randomUUID()).build()).build();
+        otherUserSession = ChatSession.builder().id(UUID.randomUUID())
+                .user(User.builder().id(UUID.randomUUID()).build()).build();
+        index = start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.stop();
+    }
+
+    private MessageSearchIndex start() {
+        return start(60000);
+    }
+
+    private MessageSearchIndex start(long catchUpIntervalMillis) {
+        MessageSearchIndex searchIndex = new MessageSearchIndex(true, indexDir.toString(), 60000, 100, catchUpIntervalMillis,
+                jdbcTemplate, transactionManager, new PayloadCodec(true, 64, 3, "", ""), contextChunkStore);
+        searchIndex.start();
+        return searchIndex;
+    }
+
+    private ChatMessage message(ChatSession owner, String content, String context) {
+        return ChatMessage.builder().id(UUID.randomUUID()).session(owner).content(content)
+                .retrievedContext(context).sender("user").createdAt(LocalDateTime.now()).build();
+    }
+
+    @Test
+    void search_ShouldRankMatchesAndScopeToUser() {
+        ChatMessage strong = message(session, "how do I rotate postgres credentials", "postgres credentials guide");
+        ChatMessage weak = message(session, "rotate the logs", "postgres");
+        ChatMessage unrelated = message(session, "hello there", null);
+        ChatMessage foreign = message(otherUserSession, "rotate postgres credentials", null);
+        index.onMessagesSaved(new ChatMessagesSavedEvent(List.of(strong, weak, unrelated, foreign)));
+
+        List<MessageSearchIndex.Hit> hits = index.search(session.getUser().getId(), "postgres rotate", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals(strong.getId(), hits.get(0).messageId());
+        assertEquals(weak.getId(), hits.get(1).messageId());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void onSessionDeleted_ShouldRemoveSessionMessages() {
+        index.onMessagesSaved(new ChatMessagesSavedEvent(List.of(message(session, "invoice overdue", null))));
+
+        index.onSessionDeleted(new ChatSessionDeletedEvent(session.getId()));
+
+        assertTrue(index.search(session.getUser().getId(), "invoice", 10).isEmpty());
+    }
+
+    @Test
+    void start_ShouldReopenCommittedIndex() {
+        ChatMessage saved = message(session, "quarterly revenue report", null);
+        index.onMessagesSaved(new ChatMessagesSavedEvent(List.of(saved)));
+        index.stop();
+
+        index = start();
+
+        List<MessageSearchIndex.Hit> hits = index.search(session.getUser().getId(), "revenue", 10);
+        assertEquals(1, hits.size());
+        assertEquals(saved.getId(), hits.get(0).messageId());
+    }
+
+    @Test
+    void onMessagesSaved_ShouldIndexCompressedContent() {
+        PayloadCodec codec = new PayloadCodec(true, 64, 3, "", "");
+        ChatMessage saved = message(session, "invoice ".repeat(10) + "reconciliation", null);
+        codec.compressAll(List.of(saved));
+        index.onMessagesSaved(new ChatMessagesSavedEvent(List.of(saved)));
+
+        List<MessageSearchIndex.Hit> hits = index.search(session.getUser().getId(), "reconciliation", 10);
+
+        assertEquals("", saved.getContent());
+        assertEquals(List.of(saved.getId()), hits.stream().map(MessageSearchIndex.Hit::messageId).toList());
+    }
+
+    @Test
+    void catchUp_ShouldRepeatPeriodically() {
+        index.stop();
+
+        index = start(50);
+
+        verify(jdbcTemplate, timeout(5000).atLeast(2)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void catchUp_ShouldRetryAfterFailureAndReportIt() throws Exception {
+        index.stop();
+        CountDownLatch retried = new CountDownLatch(1);
+        AtomicReference<Map<String, Object>> stateWhileRetrying = new AtomicReference<>();
+        doThrow(new DataAccessResourceFailureException("connection refused"))
+                .doAnswer(invocation -> {
+                    stateWhileRetrying.set(index.catchUpState());
+                    retried.countDown();
+                    return null;
+                })
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        index = start();
+
+        assertTrue(retried.await(5, TimeUnit.SECONDS));
+        assertEquals("retrying", stateWhileRetrying.get().get("state"));
+        assertEquals(1, stateWhileRetrying.get().get("failures"));
+        assertEquals("connection refused", stateWhileRetrying.get().get("error"));
+    }
+
+    @Test
+    void search_ShouldFailWhenIndexIsStopped() {
+        index.stop();
+        UUID userId = session.getUser().getId();
+        assertThrows(SearchUnavailableException.class, () -> index.search(userId, "anything", 10));
+    }
+
+    private static float[] embedding(int hotDimension, float noise) {
+        float[] vector = new float[1536];
+        vector[hotDimension] = 1f;
+        vector[(hotDimension + 1) % vector.length] = noise;
+        return vector;
+    }
+
+    @Test
+    void searchSimilar_ShouldReturnNearestWithinScopeAcrossRestart() {
+        ChatMessage nearest = message(session, "a", null);
+        nearest.setEmbedding(embedding(7, 0.1f));
+        ChatMessage farther = message(session, "b", null);
+        farther.setEmbedding(embedding(7, 0.9f));
+        ChatMessage orthogonal = message(session, "c", null);
+        orthogonal.setEmbedding(embedding(900, 0f));
+        ChatMessage foreign = message(otherUserSession, "d", null);
+        foreign.setEmbedding(embedding(7, 0f));
+        index.onMessagesSaved(new ChatMessagesSavedEvent(List.of(nearest, farther, orthogonal, foreign)));
+        index.stop();
+
+        index = start();
+        List<MessageSearchIndex.Hit> hits = index.searchSimilar(session.getUser().getId(), null, embedding(7, 0f), 2);
+
+        assertEquals(2, hits.size());
+        assertEquals(nearest.getId(), hits.get(0).messageId());
+        assertEquals(farther.getId(), hits.get(1).messageId());
+        List<MessageSearchIndex.Hit> sessionHits = index.searchSimilar(otherUserSession.getUser().getId(),
+                otherUserSession.getId(), embedding(7, 0f), 2);
+        assertEquals(1, sessionHits.size());
+        assertEquals(foreign.getId(), sessionHits.get(0).messageId());
+    }
+}
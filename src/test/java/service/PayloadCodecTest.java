@@ -0,0 +1,103 @@
+package service;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.service.PayloadCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayloadCodecTest {
+    private static final String LARGE = "Retrieved passage about postgres vacuum tuning, héllo ✓. ".repeat(40);
+
+    @TempDir Path dictionaryDir;
+
+    @Test
+    void compress_ShouldSkipValuesBelowThreshold() {
+        PayloadCodec codec = new PayloadCodec(true, 1024, 3, "", "");
+
+        assertNull(codec.compress("short"));
+        assertNull(codec.compress(null));
+        assertNull(new PayloadCodec(false, 1024, 3, "", "").compress(LARGE));
+    }
+
+    @Test
+    void compress_ShouldRoundTripLargeValues() {
+        PayloadCodec codec = new PayloadCodec(true, 1024, 3, "", "");
+
+        byte[] compressed = codec.compress(LARGE);
+
+        assertNotNull(compressed);
+        assertEquals(LARGE, codec.decompress(compressed));
+    }
+
+    @Test
+    void compressAll_ShouldMoveLargeContentAndResolveItBack() {
+        PayloadCodec codec = new PayloadCodec(true, 1024, 3, "", "");
+        ChatMessage large = ChatMessage.builder().content(LARGE).build();
+        ChatMessage small = ChatMessage.builder().content("hi").build();
+
+        codec.compressAll(List.of(large, small));
+        byte[] compressed = large.getContentZstd();
+        codec.compressAll(List.of(large));
+
+        assertEquals("", large.getContent());
+        assertArrayEquals(compressed, large.getContentZstd());
+        assertEquals(LARGE, codec.resolveContent(large));
+        assertNull(small.getContentZstd());
+        assertEquals("hi", codec.resolveContent(small));
+    }
+
+    @Test
+    void decompress_ShouldSelectDictionaryFromFrame() throws Exception {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(("{\"sender\":\"assistant\",\"content\":\"Answer " + i + " citing document " + (i * 7 % 13) +
+                    " about retention policy and vacuum settings\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] dictionary = PayloadCodec.trainDictionary(samples, 4096);
+        Files.write(dictionaryDir.resolve("v1" + PayloadCodec.DICTIONARY_SUFFIX), dictionary);
+        PayloadCodec writer = new PayloadCodec(true, 64, 3, dictionaryDir.toString(), "v1" + PayloadCodec.DICTIONARY_SUFFIX);
+        PayloadCodec withoutActive = new PayloadCodec(true, 64, 3, dictionaryDir.toString(), "");
+
+        byte[] compressed = writer.compress(LARGE);
+
+        assertNotEquals(0, Zstd.getDictIdFromFrame(compressed));
+        assertEquals(LARGE, withoutActive.decompress(compressed));
+        assertThrows(IllegalStateException.class, () -> new PayloadCodec(true, 64, 3, "", "").decompress(compressed));
+    }
+
+    @Test
+    void decompress_ShouldReadFramesWithoutDeclaredSize() throws Exception {
+        PayloadCodec codec = new PayloadCodec(true, 1024, 3, "", "");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZstdOutputStream out = new ZstdOutputStream(bytes)) {
+            out.write(LARGE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // ZSTD_CONTENTSIZE_UNKNOWN
+        assertEquals(-1, Zstd.getFrameContentSize(bytes.toByteArray()));
+        assertEquals(LARGE, codec.decompress(bytes.toByteArray()));
+    }
+
+    @Test
+    void decompress_ShouldRejectInvalidFrames() {
+        PayloadCodec codec = new PayloadCodec(true, 1024, 3, "", "");
+
+        assertThrows(IllegalStateException.class, () -> codec.decompress(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}));
+    }
+}
@@ -0,0 +1,163 @@
+package service;
+
+import com.rag.service.dto.RetentionStatus;
+import com.rag.service.event.ChatMessagesDeletedEvent;
+import com.rag.service.service.RetentionSweeper;
+import com.rag.service.service.SessionArchiveService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionSweeperTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock SessionArchiveService sessionArchiveService;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    private RetentionSweeper sweeper(int messageDays, int sessionChatDays) {
+        return new RetentionSweeper(true, messageDays, sessionChatDays, 2, 0, 5000,
+                jdbcTemplate, sessionArchiveService, transactionManager, eventPublisher, new SimpleMeterRegistry());
+    }
+
+    private static RowCallbackHandler rows(RowCallbackHandler handler, ResultSet row, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            handler.processRow(row);
+        }
+        return handler;
+    }
+
+    @Test
+    void sweep_ShouldDeleteExpiredMessagesInBatchesUntilOneIsShort() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("chat_messages_default"));
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now().minusDays(90));
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject(1, UUID.class)).thenReturn(first, second, UUID.randomUUID());
+        when(row.getTimestamp(2)).thenReturn(createdAt);
+        doAnswer(invocation -> rows(invocation.getArgument(1), row, 2))
+                .doAnswer(invocation -> rows(invocation.getArgument(1), row, 1))
+                .when(jdbcTemplate).query(contains("DELETE FROM chat_messages"), any(RowCallbackHandler.class), any(), any(), any(), any());
+
+        assertTrue(sweeper(30, 0).sweep());
+
+        ArgumentCaptor<Object> keyset = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate, times(2)).query(contains("DELETE FROM chat_messages"), any(RowCallbackHandler.class),
+                any(), keyset.capture(), keyset.capture(), eq(2));
+        assertEquals(createdAt, keyset.getAllValues().get(2));
+        assertEquals(second, keyset.getAllValues().get(3));
+        verify(eventPublisher, times(2)).publishEvent(any(ChatMessagesDeletedEvent.class));
+    }
+
+    @Test
+    void sweep_ShouldDropOnlyFullyExpiredPartitions() {
+        String expired = "chat_messages_200001";
+        String current = "chat_messages_" + YearMonth.now().toString().replace("-", "");
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of(expired, current, "chat_messages_default"));
+        UUID messageId = UUID.randomUUID();
+        when(jdbcTemplate.queryForList(contains("FROM " + expired), eq(UUID.class), any(), any())).thenReturn(List.of(messageId));
+
+        RetentionSweeper sweeper = sweeper(30, 0);
+        sweeper.sweep();
+
+        verify(jdbcTemplate).execute("ALTER TABLE chat_messages DETACH PARTITION " + expired);
+        verify(jdbcTemplate).execute("DROP TABLE " + expired);
+        verify(jdbcTemplate, never()).execute("DROP TABLE " + current);
+        verify(eventPublisher).publishEvent(new ChatMessagesDeletedEvent(List.of(messageId)));
+        assertEquals(1, sweeper.getStatus().getPartitionsDropped());
+        assertEquals(1, sweeper.getStatus().getMessagesDeleted());
+    }
+
+    @Test
+    void sweep_ShouldExpireArchivedMessages() {
+        UUID sessionId = UUID.randomUUID();
+        when(sessionArchiveService.findSessionsWithExpiredMessages(any(), eq(new UUID(0, 0)), eq(2)))
+                .thenReturn(List.of(sessionId));
+        when(sessionArchiveService.expireMessages(eq(sessionId), any())).thenReturn(3);
+
+        RetentionSweeper sweeper = sweeper(30, 0);
+        sweeper.sweep();
+
+        assertEquals(3, sweeper.getStatus().getMessagesDeleted());
+        verify(sessionArchiveService).findSessionsWithExpiredMessages(any(), any(), anyInt());
+    }
+
+    @Test
+    void sweep_ShouldRecordFailureAndFinish() {
+        doThrow(new QueryTimeoutException("canceling statement due to lock timeout"))
+                .when(jdbcTemplate).query(contains("DELETE FROM session_chat"), any(RowCallbackHandler.class), any(), any(), any(), any());
+
+        RetentionSweeper sweeper = sweeper(0, 7);
+        sweeper.sweep();
+
+        RetentionStatus status = sweeper.getStatus();
+        assertFalse(status.isRunning());
+        assertEquals("failed", status.getPhase());
+        assertEquals("canceling statement due to lock timeout", status.getError());
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class));
+    }
+
+    @Test
+    void sweep_ShouldDeleteOrphanedChunksUnderLock() throws Exception {
+        when(jdbcTemplate.queryForObject(contains("idx_messages_context_chunks"), eq(Boolean.class))).thenReturn(true);
+        ResultSet row = mock(ResultSet.class);
+        when(row.getBytes(1)).thenReturn(new byte[]{1}, new byte[]{2}, new byte[]{3});
+        when(row.getBoolean(2)).thenReturn(true, false, true);
+        doAnswer(invocation -> rows(invocation.getArgument(1), row, 2))
+                .doAnswer(invocation -> rows(invocation.getArgument(1), row, 1))
+                .when(jdbcTemplate).query(contains("DELETE FROM context_chunks"), any(RowCallbackHandler.class), any(), any());
+
+        RetentionSweeper sweeper = sweeper(0, 0);
+        sweeper.sweep();
+
+        verify(jdbcTemplate, times(2)).execute("LOCK TABLE context_chunks IN SHARE ROW EXCLUSIVE MODE");
+        ArgumentCaptor<Object> keyset = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate, times(2)).query(contains("DELETE FROM context_chunks"), any(RowCallbackHandler.class),
+                keyset.capture(), eq(2));
+        assertArrayEquals(new byte[]{2}, (byte[]) keyset.getAllValues().get(1));
+        assertEquals(2, sweeper.getStatus().getChunksDeleted());
+    }
+
+    @Test
+    void sweep_ShouldKeepChunksWhileArchivedSessionsAreUnrecorded() {
+        when(jdbcTemplate.queryForObject(contains("idx_messages_context_chunks"), eq(Boolean.class))).thenReturn(true);
+        when(sessionArchiveService.registerArchivedChunks()).thenReturn(1);
+
+        sweeper(0, 0).sweep();
+
+        verify(jdbcTemplate, never()).query(contains("DELETE FROM context_chunks"), any(RowCallbackHandler.class), any(), any());
+    }
+}
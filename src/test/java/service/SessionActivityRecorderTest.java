@@ -0,0 +1,78 @@
+package service;
+
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.entity.User;
+import com.rag.service.service.PayloadCodec;
+import com.rag.service.service.SessionActivityRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionActivityRecorderTest {
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PayloadCodec payloadCodec;
+    @InjectMocks SessionActivityRecorder recorder;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_ShouldUpdateEachSessionOnceInKeyOrderWithItsLatestMessage() {
+        User user = User.builder().id(UUID.randomUUID()).build();
+        // 8... sorts after 1... for PostgreSQL, but before it as a signed Java long
+        ChatSession high = ChatSession.builder().id(UUID.fromString("80000000-0000-0000-0000-000000000000")).user(user).build();
+        ChatSession low = ChatSession.builder().id(UUID.fromString("10000000-0000-0000-0000-000000000000")).user(user).build();
+        LocalDateTime now = LocalDateTime.now();
+        ChatMessage older = ChatMessage.builder().session(high).content("first").createdAt(now.minusSeconds(1)).build();
+        ChatMessage newer = ChatMessage.builder().session(high).content("second").createdAt(now).build();
+        ChatMessage other = ChatMessage.builder().session(low).content("other").createdAt(now).build();
+        when(payloadCodec.resolveContent(any())).thenAnswer(invocation -> ((ChatMessage) invocation.getArgument(0)).getContent());
+
+        recorder.record(List.of(newer, other, older));
+
+        ArgumentCaptor<List<Object[]>> sessionRows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE chat_sessions"), sessionRows.capture());
+        assertEquals(2, sessionRows.getValue().size());
+        assertArrayEquals(new Object[]{1, Timestamp.valueOf(now), "other", Timestamp.valueOf(now), low.getId()},
+                sessionRows.getValue().get(0));
+        assertArrayEquals(new Object[]{2, Timestamp.valueOf(now), "second", Timestamp.valueOf(now), high.getId()},
+                sessionRows.getValue().get(1));
+        ArgumentCaptor<List<Object[]>> userRows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE users"), userRows.capture());
+        assertEquals(1, userRows.getValue().size());
+        assertArrayEquals(new Object[]{user.getId()}, userRows.getValue().get(0));
+    }
+
+    @Test
+    void record_ShouldSkipEmptyBatches() {
+        recorder.record(List.of());
+
+        verify(jdbcTemplate, never()).batchUpdate(any(String.class), anyList());
+    }
+
+    @Test
+    void preview_ShouldCollapseWhitespaceAndKeepSurrogatePairsWhole() {
+        assertEquals("a b c", SessionActivityRecorder.preview("  a\n\tb   c \n"));
+
+        String cut = SessionActivityRecorder.preview("x".repeat(SessionActivityRecorder.PREVIEW_LENGTH - 1) + "😀 tail");
+        assertEquals(SessionActivityRecorder.PREVIEW_LENGTH - 1, cut.length());
+    }
+}
@@ -0,0 +1,237 @@
+package service;
+
+import com.rag.service.dto.MessageCursor;
+import com.rag.service.entity.ChatMessage;
+import com.rag.service.entity.ChatSession;
+import com.rag.service.event.ChatMessagesDeletedEvent;
+import com.rag.service.exception.ArchiveUnavailableException;
+import com.rag.service.repository.ChatMessageRepository;
+import com.rag.service.service.ContextChunkStore;
+import com.rag.service.service.SessionArchiveService;
+import com.rag.service.service.SessionArchiveStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionArchiveServiceTest {
+    @TempDir Path directory;
+    @Mock ChatMessageRepository messageRepository;
+    @Mock ContextChunkStore contextChunkStore;
+    @Mock JdbcTemplate jdbcTemplate;
+    @Mock PlatformTransactionManager transactionManager;
+    @Mock ApplicationEventPublisher eventPublisher;
+
+    private SessionArchiveService archiveService;
+    private ChatSession session;
+    private LocalDateTime now;
+    // the archive location on the session row, as the last update left it
+    private SessionArchiveStore.Location location;
+
+    @BeforeEach
+    void setUp() {
+        archiveService = archiveService();
+        now = LocalDateTime.now();
+        session = ChatSession.builder().id(UUID.randomUUID()).createdAt(now.minusDays(60)).archivedAt(now).build();
+    }
+
+    // an instance of its own, sharing the archive directory and the database
+    private SessionArchiveService archiveService() {
+        return new SessionArchiveService(true, 7, 100, 4, new SessionArchiveStore(directory.toString(), 1 << 20, 3, false),
+                messageRepository, contextChunkStore, jdbcTemplate, transactionManager, eventPublisher, new SimpleMeterRegistry());
+    }
+
+    private ChatMessage message(String content, LocalDateTime createdAt) {
+        return ChatMessage.builder().id(UUID.randomUUID()).sender("user").content(content).createdAt(createdAt).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void archive(List<ChatMessage> messages) {
+        when(jdbcTemplate.queryForList(contains("ORDER BY s.id"), eq(UUID.class), any(), any(), any(), any()))
+                .thenReturn(List.of(session.getId()));
+        when(jdbcTemplate.queryForList(contains("FOR UPDATE"), eq(Timestamp.class), any(), any()))
+                .thenReturn(List.of(Timestamp.valueOf(session.getCreatedAt())));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Boolean.class), any(), any())).thenReturn(false);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any())).thenReturn(messages);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            if (invocation.<String>getArgument(0).contains("archive_segment = ?")) {
+                int n = args.length;
+                location = new SessionArchiveStore.Location((String) args[n - 4], (Long) args[n - 3], (Integer) args[n - 2]);
+            }
+            return 1;
+        });
+        when(jdbcTemplate.query(contains("SELECT archive_segment"), any(RowMapper.class), eq(session.getId())))
+                .thenAnswer(invocation -> location != null ? List.of(location) : List.of());
+
+        assertEquals(1, archiveService.archiveIdleSessions());
+    }
+
+    @Test
+    void archiveIdleSessions_ShouldMoveMessagesIntoArchive() {
+        ChatMessage older = message("older", now.minusDays(30));
+        ChatMessage newer = message("newer", now.minusDays(20));
+        newer.setContextChunkHashes(new byte[]{1, 2, 3});
+        newer.setEmbedding(new float[]{0.5f, 0.25f});
+
+        archive(List.of(older, newer));
+
+        verify(jdbcTemplate).update(contains("DELETE FROM chat_messages"), eq(session.getId()), any());
+        // a partial hash is not a chunk reference
+        verify(jdbcTemplate).update(contains("SET archived_at = LOCALTIMESTAMP"), eq(Timestamp.valueOf(older.getCreatedAt())),
+                aryEq(new byte[0]), anyString(), eq(0L), anyInt(), eq(session.getId()));
+        verify(eventPublisher).publishEvent(new ChatMessagesDeletedEvent(List.of(older.getId(), newer.getId())));
+
+        List<ChatMessage> read = archiveService.readArchived(session);
+        assertEquals(List.of(newer.getId(), older.getId()), read.stream().map(ChatMessage::getId).toList());
+        assertEquals("newer", read.get(0).getContent());
+        assertEquals(newer.getCreatedAt(), read.get(0).getCreatedAt());
+        assertArrayEquals(new byte[]{1, 2, 3}, read.get(0).getContextChunkHashes());
+        assertArrayEquals(new float[]{0.5f, 0.25f}, read.get(0).getEmbedding());
+        assertEquals(session, read.get(0).getSession());
+    }
+
+    @Test
+    void readArchived_ShouldReadSessionArchivedByAnotherInstance() {
+        ChatMessage older = message("older", now.minusDays(30));
+        ChatMessage newer = message("newer", now.minusDays(20));
+        archive(List.of(older, newer));
+
+        List<ChatMessage> read = archiveService().readArchived(session);
+
+        assertEquals(List.of(newer.getId(), older.getId()), read.stream().map(ChatMessage::getId).toList());
+    }
+
+    @Test
+    void findKeysetPage_ShouldContinueAfterCursorIncludingDatabaseRows() {
+        ChatMessage first = message("first", now.minusDays(30));
+        ChatMessage second = message("second", now.minusDays(29));
+        archive(List.of(first, second));
+        ChatMessage written = message("written while archiving", now.minusDays(1));
+        when(messageRepository.findFirstKeysetPage(session.getId(), session.getCreatedAt(), 2)).thenReturn(List.of(written));
+
+        List<ChatMessage> firstPage = archiveService.findKeysetPage(session, null, 2);
+        List<ChatMessage> page = archiveService.findKeysetPage(session, new MessageCursor(written.getCreatedAt(), written.getId()), 1);
+
+        assertEquals(List.of(written.getId(), second.getId()), firstPage.stream().map(ChatMessage::getId).toList());
+        assertEquals(List.of(second.getId()), page.stream().map(ChatMessage::getId).toList());
+        assertEquals(session, page.get(0).getSession());
+        verify(messageRepository).findKeysetPageAfter(session.getId(), session.getCreatedAt(), written.getCreatedAt(),
+                written.getId(), 1);
+    }
+
+    @Test
+    void findMessages_ShouldPageNewestFirst() {
+        ChatMessage first = message("first", now.minusDays(30));
+        ChatMessage second = message("second", now.minusDays(29));
+        ChatMessage third = message("third", now.minusDays(28));
+        archive(List.of(first, second, third));
+        when(messageRepository.findFirstKeysetPage(session.getId(), session.getCreatedAt(), 4)).thenReturn(List.of());
+
+        Page<ChatMessage> page = archiveService.findMessages(session, PageRequest.of(1, 2));
+
+        assertEquals(List.of(first.getId()), page.getContent().stream().map(ChatMessage::getId).toList());
+        assertEquals(3, page.getTotalElements());
+        verify(messageRepository, never()).countBySessionIdAndCreatedAtGreaterThanEqual(any(), any());
+    }
+
+    @Test
+    void rehydrate_ShouldSkipSessionThatIsNotArchived() {
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any())).thenReturn(List.of());
+
+        archiveService.rehydrate(session.getId());
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void rehydrate_ShouldKeepSessionArchivedWhenArchiveEntryIsMissing() {
+        when(jdbcTemplate.queryForList(anyString(), eq(UUID.class), any())).thenReturn(List.of(UUID.randomUUID()));
+
+        assertThrows(ArchiveUnavailableException.class, () -> archiveService.rehydrate(session.getId()));
+
+        verify(jdbcTemplate, never()).update(contains("archived_at = NULL"), any(Object[].class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void expireMessages_ShouldKeepOnlyMessagesFromCutoffOn() {
+        ChatMessage expired = message("expired", now.minusDays(40));
+        ChatMessage kept = message("kept", now.minusDays(20));
+        archive(List.of(expired, kept));
+        when(jdbcTemplate.queryForList(contains("archived_at IS NOT NULL FOR UPDATE"), eq(UUID.class), any()))
+                .thenReturn(List.of(UUID.randomUUID()));
+
+        assertEquals(1, archiveService.expireMessages(session.getId(), now.minusDays(30)));
+
+        assertEquals(List.of(kept.getId()), archiveService.readArchived(session).stream().map(ChatMessage::getId).toList());
+        verify(jdbcTemplate).update(contains("message_count - ?"), eq(1), eq(1), eq(1),
+                eq(Timestamp.valueOf(kept.getCreatedAt())), any(byte[].class), anyString(), anyLong(), anyInt(), eq(session.getId()));
+        verify(eventPublisher).publishEvent(new ChatMessagesDeletedEvent(List.of(expired.getId())));
+    }
+
+    @Test
+    void registerArchivedChunks_ShouldRecordDistinctChunksOfEarlierEntries() {
+        byte[] hash = new byte[32];
+        hash[0] = 7;
+        byte[] twice = new byte[64];
+        System.arraycopy(hash, 0, twice, 0, 32);
+        System.arraycopy(hash, 0, twice, 32, 32);
+        ChatMessage first = message("first", now.minusDays(30));
+        first.setContextChunkHashes(hash);
+        ChatMessage second = message("second", now.minusDays(20));
+        second.setContextChunkHashes(twice);
+        archive(List.of(first, second));
+        when(jdbcTemplate.queryForList(contains("archived_chunk_hashes IS NULL"), eq(UUID.class), any(), any()))
+                .thenReturn(List.of(session.getId()));
+        when(jdbcTemplate.queryForList(contains("archived_at IS NOT NULL FOR UPDATE"), eq(UUID.class), any()))
+                .thenReturn(List.of(UUID.randomUUID()));
+
+        assertEquals(0, archiveService.registerArchivedChunks());
+
+        verify(jdbcTemplate).update(contains("SET archived_chunk_hashes = ?"), aryEq(hash), eq(session.getId()));
+    }
+
+    @Test
+    void registerArchivedChunks_ShouldCountSessionsWithoutArchiveEntry() {
+        when(jdbcTemplate.queryForList(contains("archived_chunk_hashes IS NULL"), eq(UUID.class), any(), any()))
+                .thenReturn(List.of(session.getId()));
+        when(jdbcTemplate.queryForList(contains("archived_at IS NOT NULL FOR UPDATE"), eq(UUID.class), any()))
+                .thenReturn(List.of(UUID.randomUUID()));
+
+        assertEquals(1, archiveService.registerArchivedChunks());
+
+        verify(jdbcTemplate, never()).update(contains("SET archived_chunk_hashes = ?"), any(Object[].class));
+    }
+}
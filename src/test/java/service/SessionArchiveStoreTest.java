@@ -0,0 +1,96 @@
+package service;
+
+import com.github.luben.zstd.Zstd;
+import com.rag.service.service.SessionArchiveStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionArchiveStoreTest {
+    @TempDir Path directory;
+
+    private SessionArchiveStore store(long maxSegmentBytes) {
+        return new SessionArchiveStore(directory.toString(), maxSegmentBytes, 3, false);
+    }
+
+    private static byte[] payload(String text) {
+        return text.repeat(50).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void read_ShouldReturnPayloadAtAppendedLocation() {
+        SessionArchiveStore store = store(1 << 20);
+        UUID sessionId = UUID.randomUUID();
+
+        SessionArchiveStore.Location first = store.append(sessionId, payload("first "));
+        store.append(UUID.randomUUID(), payload("other "));
+        SessionArchiveStore.Location second = store.append(sessionId, payload("second "));
+
+        assertEquals("first ".repeat(50), text(store.read(first)));
+        assertEquals("second ".repeat(50), text(store.read(second)));
+    }
+
+    @Test
+    void read_ShouldReadEntriesOfAnotherWriterSharingTheDirectory() {
+        SessionArchiveStore writer = store(1 << 20);
+        SessionArchiveStore other = store(1 << 20);
+
+        SessionArchiveStore.Location written = writer.append(UUID.randomUUID(), payload("shared "));
+        SessionArchiveStore.Location own = other.append(UUID.randomUUID(), payload("own "));
+
+        assertNotEquals(written.segment(), own.segment());
+        assertEquals("shared ".repeat(50), text(other.read(written)));
+        assertEquals("own ".repeat(50), text(writer.read(own)));
+    }
+
+    @Test
+    void locate_ShouldFindEntriesOfTheLegacyIndex() throws IOException {
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        byte[] frame = Zstd.compress(payload("kept "), 3);
+        Files.write(directory.resolve("segment-00000.zst"), frame);
+        Files.write(directory.resolve("sessions.idx"), ByteBuffer.allocate(96)
+                .put(record(kept, frame.length)).put(record(removed, frame.length)).put(record(removed, -1)).array());
+
+        SessionArchiveStore store = store(1 << 20);
+
+        assertEquals(new SessionArchiveStore.Location("segment-00000.zst", 0, frame.length), store.locate(kept));
+        assertEquals("kept ".repeat(50), text(store.read(store.locate(kept))));
+        assertNull(store.locate(removed));
+    }
+
+    private static ByteBuffer record(UUID sessionId, int length) {
+        return ByteBuffer.allocate(32).putLong(sessionId.getMostSignificantBits())
+                .putLong(sessionId.getLeastSignificantBits()).putInt(0).putLong(0).putInt(length).flip();
+    }
+
+    @Test
+    void append_ShouldStartNewSegmentWhenCurrentIsFull() {
+        SessionArchiveStore store = store(1);
+
+        SessionArchiveStore.Location first = store.append(UUID.randomUUID(), payload("first "));
+        SessionArchiveStore.Location second = store.append(UUID.randomUUID(), payload("second "));
+
+        assertTrue(second.segment().endsWith("-00001.zst"));
+        assertTrue(Files.exists(directory.resolve(second.segment())));
+        assertEquals("first ".repeat(50), text(store.read(first)));
+        assertEquals("second ".repeat(50), text(store.read(second)));
+    }
+}
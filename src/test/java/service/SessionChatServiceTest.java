@@ -5,29 +5,44 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rag.service.dto.AddMessageRequest;
 import com.rag.service.dto.Message;
 import com.rag.service.entity.SessionChat;
+import com.rag.service.event.SessionChatMessageAddedEvent;
 import com.rag.service.mapper.SessionChatMapper;
+import com.rag.service.repository.SegmentTail;
 import com.rag.service.repository.SessionChatRepository;
+import com.rag.service.service.ChatMetrics;
+import com.rag.service.service.LiveMessageBus;
 import com.rag.service.service.SessionChatService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
 
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
+import static com.rag.service.repository.SessionChatRepository.PAGINATED_MESSAGES_SQL;
+import static com.rag.service.repository.SessionChatRepository.SEGMENTED_MESSAGES_SQL;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.contains;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,11 +51,15 @@ class SessionChatServiceTest {
     @Mock SessionChatRepository repository;
     @Mock ObjectMapper objectMapper;
     @Mock SessionChatMapper sessionChatMapper;
+    @Mock NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock ApplicationEventPublisher eventPublisher;
+    @Mock LiveMessageBus liveMessageBus;
+    @Mock ChatMetrics chatMetrics;
     @InjectMocks SessionChatService service;
+    @Captor ArgumentCaptor<SqlParameterSource> params;
 
     private String sessionId;
     private AddMessageRequest addMessageRequest;
-    private Message message;
     private SessionChat sessionChat;
 
     @BeforeEach
@@ -49,57 +68,117 @@ class SessionChatServiceTest {
         addMessageRequest = new AddMessageRequest();
         addMessageRequest.setSender("user1");
         addMessageRequest.setContent("Hello");
-        message = Message.builder().sender("user1").messageContent("Hello").time("2025-09-16T10:00:00").build();
         sessionChat = new SessionChat();
         sessionChat.setSessionId(sessionId);
         sessionChat.setConversation(java.util.Collections.emptyList());
     }
 
     @Test
-    void getPaginatedMessages_ShouldReturnMessages() throws Exception {
-        String json = "[{'sender':'user1','message':'Hello','time':'2025-09-16T10:00:00'}]";
-        when(repository.getPaginatedMessages(sessionId, "$[0 to 9]"))
-                .thenReturn(json);
-        when(objectMapper.readValue(json, Message[].class))
-                .thenReturn(new Message[]{message});
-        List<Message> result = service.getPaginatedMessages(sessionId, 0, 10);
-        assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("Hello", result.get(0).getMessageContent());
+    void addMessage_ShouldUpsertDocumentInSingleStatement() throws Exception {
+        doReturn("{}").when(objectMapper).writeValueAsString(any());
+        service.addMessage(sessionId, addMessageRequest);
+        verify(repository).upsertMessage(sessionId, null, "[{}]", false);
+        verify(repository, never()).findTailSegment(anyString());
+        verify(eventPublisher).publishEvent(any(SessionChatMessageAddedEvent.class));
     }
 
+
     @Test
-    void getPaginatedMessages_ShouldReturnEmptyListIfNull() {
-        when(repository.getPaginatedMessages(sessionId, "$[0 to 9]"))
-                .thenReturn(null);
-        List<Message> result = service.getPaginatedMessages(sessionId, 0, 10);
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
+    void addMessage_ShouldThrowJsonProcessingException() throws Exception {
+        doThrow(new JsonProcessingException("error") {}).when(objectMapper).writeValueAsString(any());
+        assertThrows(JsonProcessingException.class, () -> service.addMessage(sessionId, addMessageRequest));
     }
 
     @Test
-    void getPaginatedMessages_ShouldThrowOnJsonParseError() throws Exception {
-        String json = "invalid json";
-        when(repository.getPaginatedMessages(sessionId, "$[0 to 9]"))
-                .thenReturn(json);
-        when(objectMapper.readValue(json, Message[].class))
-                .thenThrow(new JsonProcessingException("Parse error") {});
-        assertThrows(RuntimeException.class, () -> service.getPaginatedMessages(sessionId, 0, 10));
+    void addMessage_ShouldAppendToTailSegment() throws Exception {
+        when(repository.upsertMessage(sessionId, null, "[{}]", false)).thenReturn(true);
+        when(repository.findTailSegment(sessionId)).thenReturn(Optional.of(tail(2, 5)));
+        doReturn("{}").when(objectMapper).writeValueAsString(any());
+
+        service.addMessage(sessionId, addMessageRequest);
+
+        verify(repository).appendToSegment(sessionId, 2, "[{}]");
     }
 
     @Test
-    void addMessage_ShouldUpdateExistingSession() throws Exception {
-        when(repository.findBySessionId(sessionId)).thenReturn(Optional.of(sessionChat));
-        doReturn("[]").when(objectMapper).writeValueAsString(any());
+    void addMessage_ShouldOpenNewSegmentWhenTailIsFull() throws Exception {
+        when(repository.upsertMessage(sessionId, null, "[{}]", false)).thenReturn(true);
+        when(repository.findTailSegment(sessionId)).thenReturn(Optional.of(tail(2, 128)));
+        doReturn("{}").when(objectMapper).writeValueAsString(any());
+
+        service.addMessage(sessionId, addMessageRequest);
+
+        verify(repository).insertSegment(sessionId, 3, "[{}]");
+    }
+
+    @Test
+    void addMessage_ShouldStartNewSegmentedConversationAtSegmentZero() throws Exception {
+        ReflectionTestUtils.setField(service, "segmentedStorage", true);
+        when(repository.upsertMessage(sessionId, null, "[{}]", true)).thenReturn(true);
+        when(repository.findTailSegment(sessionId)).thenReturn(Optional.empty());
+        doReturn("{}").when(objectMapper).writeValueAsString(any());
+
         service.addMessage(sessionId, addMessageRequest);
-        verify(repository).appendMessage(eq(sessionId), anyString());
+
+        verify(repository).insertSegment(sessionId, 0, "[{}]");
+    }
+
+    private static SegmentTail tail(int segmentNo, int messageCount) {
+        return new SegmentTail() {
+            @Override
+            public Integer getSegmentNo() {
+                return segmentNo;
+            }
+
+            @Override
+            public Integer getMessageCount() {
+                return messageCount;
+            }
+        };
     }
 
+    @Test
+    void getPaginatedMessagesJson_ShouldForwardDatabaseBytes() throws Exception {
+        byte[] json = "[{\"sender\":\"user1\"}]".getBytes(StandardCharsets.UTF_8);
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), Mockito.<ResultSetExtractor<byte[]>>any()))
+                .thenReturn(json);
+
+        byte[] result = service.getPaginatedMessagesJson(sessionId, 0, 10);
+
+        assertArrayEquals(json, result);
+        verify(objectMapper, never()).readValue(anyString(), eq(Message[].class));
+    }
 
     @Test
-    void addMessage_ShouldThrowJsonProcessingException() throws Exception {
-        when(repository.findBySessionId(sessionId)).thenReturn(Optional.of(sessionChat));
-        doThrow(new JsonProcessingException("error") {}).when(objectMapper).writeValueAsString(any());
-        assertThrows(JsonProcessingException.class, () -> service.addMessage(sessionId, addMessageRequest));
+    void getPaginatedMessagesJson_ShouldSliceDocumentByJsonPath() {
+        service.getPaginatedMessagesJson(sessionId, 0, 10);
+
+        verify(jdbcTemplate).query(contains(PAGINATED_MESSAGES_SQL), params.capture(),
+                Mockito.<ResultSetExtractor<byte[]>>any());
+        assertEquals("$[0 to 9]", params.getValue().getValue("jsonPath"));
+    }
+
+    @Test
+    void getPaginatedMessagesJson_ShouldReadOnlyCoveredSegments() {
+        when(repository.findSegmentedBySessionId(sessionId)).thenReturn(true);
+
+        service.getPaginatedMessagesJson(sessionId, 1, 100);
+
+        verify(jdbcTemplate).query(contains(SEGMENTED_MESSAGES_SQL), params.capture(),
+                Mockito.<ResultSetExtractor<byte[]>>any());
+        assertEquals(0, params.getValue().getValue("firstSegment"));
+        assertEquals(1, params.getValue().getValue("lastSegment"));
+        assertEquals(100, params.getValue().getValue("offset"));
+        assertEquals(199, params.getValue().getValue("end"));
+    }
+
+    @Test
+    void getPaginatedMessagesJson_ShouldReturnEmptyArrayForUnknownSession() {
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), Mockito.<ResultSetExtractor<byte[]>>any()))
+                .thenReturn(null);
+
+        byte[] result = service.getPaginatedMessagesJson(sessionId, 0, 10);
+
+        assertArrayEquals("[]".getBytes(StandardCharsets.UTF_8), result);
     }
 }